@@ -1,15 +1,23 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.dto.PageCursor;
 import ru.yandex.practicum.filmorate.dto.mappers.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -17,10 +25,12 @@ import java.util.List;
 public class FilmController {
 
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, ObjectMapper objectMapper) {
         this.filmService = filmService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -29,6 +39,11 @@ public class FilmController {
         return ResponseEntity.status(HttpStatus.CREATED).body(FilmMapper.toFilmDTO(createdFilm));
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<Integer>> addFilms(@RequestBody @NotEmpty List<@Valid Film> films) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(filmService.addFilms(films));
+    }
+
     @PutMapping
     public ResponseEntity<FilmDTO> updateFilm(@RequestBody @Valid Film film) {
         Film updatedFilm = filmService.updateFilm(film);
@@ -36,8 +51,28 @@ public class FilmController {
     }
 
     @GetMapping
-    public ResponseEntity<List<FilmDTO>> getFilmsList() {
-        return ResponseEntity.ok(FilmMapper.toFilmDTOList(filmService.getFilmsList()));
+    public ResponseEntity<List<FilmDTO>> getFilmsList(@RequestParam(required = false) Integer limit,
+                                                      @RequestParam(required = false) String after) {
+        if (!PageCursor.isPageRequested(limit, after)) {
+            return ResponseEntity.ok(FilmMapper.toFilmDTOList(filmService.getFilmsList()));
+        }
+        int pageLimit = PageCursor.resolveLimit(limit);
+        List<Film> page = filmService.getFilmsPage(PageCursor.decodeAfterId(after), pageLimit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        String nextCursor = PageCursor.nextCursor(page, pageLimit, Film::getId);
+        if (nextCursor != null) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(FilmMapper.toFilmDTOList(page));
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportFilms() {
+        StreamingResponseBody body = outputStream ->
+                filmService.exportFilms(film -> writeNdjsonLine(outputStream, film));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -59,4 +94,13 @@ public class FilmController {
     public ResponseEntity<List<FilmDTO>> getPopularFilms(@RequestParam(defaultValue = "10") int count) {
         return ResponseEntity.ok(FilmMapper.toFilmDTOList(filmService.getMostLikedFilms(count)));
     }
+
+    private void writeNdjsonLine(OutputStream outputStream, Film film) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(FilmMapper.toFilmDTO(film)));
+            outputStream.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
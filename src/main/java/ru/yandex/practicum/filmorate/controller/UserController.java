@@ -1,26 +1,41 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.dto.FilmDTO;
 import ru.yandex.practicum.filmorate.dto.FriendDTO;
+import ru.yandex.practicum.filmorate.dto.FriendSuggestionDTO;
+import ru.yandex.practicum.filmorate.dto.PageCursor;
+import ru.yandex.practicum.filmorate.dto.UserAvailabilityDTO;
 import ru.yandex.practicum.filmorate.dto.UserDTO;
+import ru.yandex.practicum.filmorate.dto.mappers.FilmMapper;
 import ru.yandex.practicum.filmorate.dto.mappers.UserMapper;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserImportReport;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserImportService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
 @RequestMapping("/users")
 public class UserController {
     private final UserService userService;
+    private final FilmService filmService;
+    private final UserImportService userImportService;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, FilmService filmService, UserImportService userImportService) {
         this.userService = userService;
+        this.filmService = filmService;
+        this.userImportService = userImportService;
     }
 
     @GetMapping("/{id}")
@@ -36,6 +51,13 @@ public class UserController {
         return ResponseEntity.status(HttpStatus.CREATED).body(UserMapper.toUserDTO(createdUser));
     }
 
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<UserImportReport> importUsers(HttpServletRequest request) throws IOException {
+        UserImportReport report = userImportService.importUsers(request.getInputStream(),
+                MediaType.parseMediaType(request.getContentType()));
+        return ResponseEntity.ok(report);
+    }
+
     @PutMapping
     public ResponseEntity<UserDTO> updateUser(@RequestBody @Valid User user) {
         User updatedUser = userService.updateUser(user);
@@ -43,15 +65,25 @@ public class UserController {
     }
 
     @GetMapping
-    public ResponseEntity<List<UserDTO>> getUsersList() {
-        List<User> users = userService.getUsersList();
-        List<UserDTO> userDTOs = users.stream()
-                .map(user -> {
-                    List<User> friendUsers = userService.getFriendsList(user.getId());
-                    return new UserDTO(user, friendUsers);
-                })
-                .toList();
-        return ResponseEntity.ok(userDTOs);
+    public ResponseEntity<List<UserDTO>> getUsersList(@RequestParam(required = false) Integer limit,
+                                                      @RequestParam(required = false) String after) {
+        if (!PageCursor.isPageRequested(limit, after)) {
+            return ResponseEntity.ok(toUserDTOs(userService.getUsersList()));
+        }
+        int pageLimit = PageCursor.resolveLimit(limit);
+        List<User> page = userService.getUsersPage(PageCursor.decodeAfterId(after), pageLimit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        String nextCursor = PageCursor.nextCursor(page, pageLimit, User::getId);
+        if (nextCursor != null) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(toUserDTOs(page));
+    }
+
+    @GetMapping("/availability")
+    public ResponseEntity<UserAvailabilityDTO> getAvailability(@RequestParam(required = false) String login,
+                                                               @RequestParam(required = false) String email) {
+        return ResponseEntity.ok(UserMapper.toUserAvailabilityDTO(userService.checkAvailability(login, email)));
     }
 
     @PutMapping("/{id}/friends/{friendId}")
@@ -68,7 +100,11 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends")
-    public ResponseEntity<List<FriendDTO>> getFriends(@PathVariable int id) {
+    public ResponseEntity<List<FriendDTO>> getFriends(@PathVariable int id,
+                                                     @RequestParam(defaultValue = "false") boolean withMutualCount) {
+        if (withMutualCount) {
+            return ResponseEntity.ok(UserMapper.toFriendWithMutualCountDTOs(userService.getFriendsWithMutualCounts(id)));
+        }
         return ResponseEntity.ok(UserMapper.toFriendDTOs(userService.getFriendsList(id)));
     }
 
@@ -76,4 +112,23 @@ public class UserController {
     public ResponseEntity<List<FriendDTO>> getFriendsCommon(@PathVariable int id, @PathVariable int otherId) {
         return ResponseEntity.ok(UserMapper.toFriendDTOs(userService.getFriendsIntersect(id, otherId)));
     }
+
+    @GetMapping("/{id}/friends/suggestions")
+    public ResponseEntity<List<FriendSuggestionDTO>> getFriendSuggestions(@PathVariable int id,
+                                                                          @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(UserMapper.toFriendSuggestionDTOs(userService.getFriendSuggestions(id, limit)));
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public ResponseEntity<List<FilmDTO>> getRecommendations(@PathVariable int id,
+                                                            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(FilmMapper.toFilmDTOList(filmService.getRecommendedFilms(id, limit)));
+    }
+
+    private List<UserDTO> toUserDTOs(List<User> users) {
+        List<Integer> userIds = users.stream()
+                .map(User::getId)
+                .toList();
+        return UserMapper.toUserDTOs(users, userService.getFriendsLists(userIds));
+    }
 }
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Getter;
+import ru.yandex.practicum.filmorate.model.User;
+
+@Getter
+public class FriendSuggestionDTO extends FriendDTO {
+    private final int mutualFriends;
+
+    public FriendSuggestionDTO(User user, int mutualFriends) {
+        super(user);
+        this.mutualFriends = mutualFriends;
+    }
+}
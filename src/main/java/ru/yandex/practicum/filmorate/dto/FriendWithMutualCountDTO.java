@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Getter;
+import ru.yandex.practicum.filmorate.model.User;
+
+@Getter
+public class FriendWithMutualCountDTO extends FriendDTO {
+    private final int mutualFriends;
+
+    public FriendWithMutualCountDTO(User user, int mutualFriends) {
+        super(user);
+        this.mutualFriends = mutualFriends;
+    }
+}
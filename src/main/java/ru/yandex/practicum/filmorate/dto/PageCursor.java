@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+public class PageCursor {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+    private static final String CURSOR_PREFIX = "id:";
+
+    public static boolean isPageRequested(Integer limit, String after) {
+        return Objects.nonNull(limit) || Objects.nonNull(after);
+    }
+
+    public static int resolveLimit(Integer limit) {
+        if (Objects.isNull(limit)) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ValidationException("Параметр limit должен быть в диапазоне от 1 до " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    public static int decodeAfterId(String after) {
+        if (Objects.isNull(after) || after.isBlank()) {
+            return 0;
+        }
+        int afterId;
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+            afterId = decoded.startsWith(CURSOR_PREFIX) ? Integer.parseInt(decoded.substring(CURSOR_PREFIX.length())) : -1;
+        } catch (IllegalArgumentException e) {
+            afterId = -1;
+        }
+        if (afterId < 0) {
+            throw new ValidationException("Некорректный курсор страницы: " + after);
+        }
+        return afterId;
+    }
+
+    public static String encode(int lastId) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((CURSOR_PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static <T> String nextCursor(List<T> page, int limit, ToIntFunction<T> idExtractor) {
+        if (page.size() < limit) {
+            return null;
+        }
+        return encode(idExtractor.applyAsInt(page.getLast()));
+    }
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Свободны ли логин и email. Поле равно null, если значение не проверялось.
+ */
+@Getter
+@AllArgsConstructor
+public class UserAvailabilityDTO {
+    private final Boolean loginAvailable;
+    private final Boolean emailAvailable;
+}
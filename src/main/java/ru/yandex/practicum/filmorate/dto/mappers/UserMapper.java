@@ -1,10 +1,17 @@
 package ru.yandex.practicum.filmorate.dto.mappers;
 
 import ru.yandex.practicum.filmorate.dto.FriendDTO;
+import ru.yandex.practicum.filmorate.dto.FriendSuggestionDTO;
+import ru.yandex.practicum.filmorate.dto.FriendWithMutualCountDTO;
+import ru.yandex.practicum.filmorate.dto.UserAvailabilityDTO;
 import ru.yandex.practicum.filmorate.dto.UserDTO;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.FriendWithMutualCount;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserAvailability;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class UserMapper {
@@ -16,15 +23,9 @@ public class UserMapper {
         return new UserDTO(user, null);
     }
 
-    public static List<UserDTO> toUserDTOs(List<User> users, List<List<User>> friendsLists) {
+    public static List<UserDTO> toUserDTOs(List<User> users, Map<Integer, List<User>> friendsByUserId) {
         return users.stream()
-                .map(user -> {
-                    List<User> friends = friendsLists.stream()
-                            .filter(friendsList -> friendsList.contains(user))
-                            .findFirst()
-                            .orElse(List.of());
-                    return toUserDTO(user, friends);
-                })
+                .map(user -> toUserDTO(user, friendsByUserId.getOrDefault(user.getId(), List.of())))
                 .collect(Collectors.toList());
     }
 
@@ -38,4 +39,22 @@ public class UserMapper {
                 .map(UserMapper::toFriendDTO)
                 .collect(Collectors.toList());
     }
+
+    public static List<FriendDTO> toFriendWithMutualCountDTOs(List<FriendWithMutualCount> friends) {
+        return friends
+                .stream()
+                .map(friend -> (FriendDTO) new FriendWithMutualCountDTO(friend.friend(), friend.mutualFriends()))
+                .collect(Collectors.toList());
+    }
+
+    public static List<FriendSuggestionDTO> toFriendSuggestionDTOs(List<FriendSuggestion> suggestions) {
+        return suggestions
+                .stream()
+                .map(suggestion -> new FriendSuggestionDTO(suggestion.user(), suggestion.mutualFriends()))
+                .collect(Collectors.toList());
+    }
+
+    public static UserAvailabilityDTO toUserAvailabilityDTO(UserAvailability availability) {
+        return new UserAvailabilityDTO(availability.loginAvailable(), availability.emailAvailable());
+    }
 }
@@ -1,15 +1,18 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Setter;
 
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Film.
@@ -37,17 +40,42 @@ public class Film {
     @Positive(message = "продолжительность фильма должна быть положительным числом")
     private int duration;
 
-    Set<Integer> likedUsers = new HashSet<>();
+    Set<Integer> likedUsers = ConcurrentHashMap.newKeySet();
+
+    @Setter(AccessLevel.NONE)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private int likesCount;
 
     public boolean addLikedUser(int userId) {
-        return likedUsers.add(userId);
+        boolean added = likedUsers.add(userId);
+        if (added) {
+            likesCount++;
+        }
+        return added;
     }
 
     public boolean removeLikedUser(int userId) {
-        return likedUsers.remove(userId);
+        boolean removed = likedUsers.remove(userId);
+        if (removed) {
+            likesCount--;
+        }
+        return removed;
+    }
+
+    /**
+     * Лайки копируются в потокобезопасное множество: его читают без блокировок параллельно с изменением.
+     */
+    public void setLikedUsers(Set<Integer> likedUsers) {
+        Set<Integer> concurrentLikedUsers = ConcurrentHashMap.newKeySet(likedUsers.size());
+        concurrentLikedUsers.addAll(likedUsers);
+        this.likedUsers = concurrentLikedUsers;
+        this.likesCount = concurrentLikedUsers.size();
     }
 
-    public int getLikesCount() {
-        return likedUsers.size();
+    /**
+     * Устанавливает счётчик лайков из хранилища, которое не загружает самих лайкнувших пользователей.
+     */
+    public void restoreLikesCount(int likesCount) {
+        this.likesCount = likesCount;
     }
 }
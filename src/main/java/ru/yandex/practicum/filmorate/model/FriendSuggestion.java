@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Рекомендованный пользователь и число общих друзей с тем, для кого строится рекомендация.
+ */
+public record FriendSuggestion(User user, int mutualFriends) {
+}
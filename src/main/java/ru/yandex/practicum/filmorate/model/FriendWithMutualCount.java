@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Друг пользователя и число друзей, общих у него с этим пользователем.
+ */
+public record FriendWithMutualCount(User friend, int mutualFriends) {
+}
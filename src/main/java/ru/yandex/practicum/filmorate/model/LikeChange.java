@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Итоговое состояние лайка пользователя к фильму: {@code liked = true} — лайк поставлен, {@code false} — снят.
+ */
+public record LikeChange(int filmId, int userId, boolean liked) {
+}
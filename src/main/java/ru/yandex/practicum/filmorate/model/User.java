@@ -5,8 +5,8 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 
 import java.time.LocalDate;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Data
 @EqualsAndHashCode
@@ -22,7 +22,16 @@ public class User {
     private String login;
     @PastOrPresent(message = "Дата рождения не может быть в будущем")
     private LocalDate birthday;
-    private Set<Integer> friends = new HashSet<>();
+    private Set<Integer> friends = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Друзья копируются в потокобезопасное множество: его читают без блокировок параллельно с изменением.
+     */
+    public void setFriends(Set<Integer> friends) {
+        Set<Integer> concurrentFriends = ConcurrentHashMap.newKeySet(friends.size());
+        concurrentFriends.addAll(friends);
+        this.friends = concurrentFriends;
+    }
 
     public boolean addFriend(int id) {
         return friends.add(id);
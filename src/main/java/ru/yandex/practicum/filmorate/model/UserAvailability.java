@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * Свободны ли логин и email для регистрации. null — значение не проверялось.
+ */
+public record UserAvailability(Boolean loginAvailable, Boolean emailAvailable) {
+}
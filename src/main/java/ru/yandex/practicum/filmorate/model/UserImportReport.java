@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.List;
+
+/**
+ * Итог импорта пользователей. failed учитывает все отклонённые строки,
+ * а в errors попадают только первые из них, чтобы отчёт не рос вместе с файлом.
+ */
+public record UserImportReport(long imported, long failed, List<RowError> errors) {
+
+    public record RowError(long row, String message) {
+    }
+}
@@ -2,26 +2,36 @@ package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 @Service
 public class FilmService {
     FilmStorage filmStorage;
     UserService userService;
+    Optional<LikeWriteBehindBuffer> likeBuffer;
+    private static final int MAX_RECOMMENDATIONS = 100;
 
     @Autowired
-    FilmService(FilmStorage filmStorage, UserService userService) {
+    FilmService(FilmStorage filmStorage, UserService userService, Optional<LikeWriteBehindBuffer> likeBuffer) {
         this.filmStorage = filmStorage;
         this.userService = userService;
+        this.likeBuffer = likeBuffer;
     }
 
     public Film addFilm(Film film) {
         return filmStorage.addFilm(film);
     }
 
+    public List<Integer> addFilms(List<Film> films) {
+        return filmStorage.addFilms(films);
+    }
+
     public Film updateFilm(Film film) {
         return filmStorage.updateFilm(film);
     }
@@ -30,23 +40,58 @@ public class FilmService {
         return filmStorage.getFilmsList();
     }
 
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return filmStorage.getFilmsPage(afterId, limit);
+    }
+
+    public void exportFilms(Consumer<Film> action) {
+        filmStorage.forEachFilm(action);
+    }
+
     public Film getFilmById(int id) {
         return filmStorage.getFilm(id);
     }
 
     public void addLike(int filmId, int userId) {
-        userService.getUser(userId);
+        if (likeBuffer.isPresent()) {
+            requireFilmAndUser(filmId, userId);
+            likeBuffer.get().addLike(filmId, userId);
+            return;
+        }
+        if (!filmStorage.checksLikeUser()) {
+            userService.getUser(userId);
+        }
         filmStorage.addLike(filmId, userId);
     }
 
     public void removeLike(int filmId, int userId) {
-        userService.getUser(userId);
-        filmStorage.removeLike(filmId, userId);
+        if (likeBuffer.isPresent()) {
+            requireFilmAndUser(filmId, userId);
+            likeBuffer.get().removeLike(filmId, userId);
+            return;
+        }
+        if (!filmStorage.removeLike(filmId, userId)) {
+            userService.getUser(userId);
+        }
     }
 
     public List<Film> getMostLikedFilms(int filmsCount) {
        return filmStorage.getPopularFilms(filmsCount);
     }
 
+    public List<Film> getRecommendedFilms(int userId, int limit) {
+        if (limit < 1 || limit > MAX_RECOMMENDATIONS) {
+            throw new ValidationException("Параметр limit должен быть в диапазоне от 1 до " + MAX_RECOMMENDATIONS);
+        }
+        userService.getUser(userId);
+        return filmStorage.getRecommendedFilms(userId, limit);
+    }
+
+    // Буфер отвечает до записи в базу, поэтому ссылки проверяются до постановки команды в очередь
+    private void requireFilmAndUser(int filmId, int userId) {
+        filmStorage.getFilm(filmId);
+        userService.getUser(userId);
+    }
+
 
 }
@@ -0,0 +1,288 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Буфер отложенной записи лайков. Команды копятся в ограниченной очереди, схлопываются по паре
+ * (фильм, пользователь) до последнего состояния и периодически записываются в базу одной пачкой.
+ * При заполненной очереди запрос ждёт освобождения места не дольше offer-timeout, затем получает 503.
+ * В режиме durability=sync запрос дополнительно дожидается записи своей пачки в базу.
+ * Если пачка не записалась, изменения применяются по одному: отклонённые хранилищем отбрасываются,
+ * а при временной ошибке возвращаются в очередь. Пачки записываются строго по одной,
+ * в том числе при остановке приложения.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+public class LikeWriteBehindBuffer implements MeterBinder {
+    private final FilmStorage filmStorage;
+    private final int capacity;
+    private final long offerTimeoutNanos;
+    private final Durability durability;
+    private final Duration syncTimeout;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private Map<LikeKey, PendingLike> pending = new LinkedHashMap<>();
+    private boolean closed;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder flushedChanges = new LongAdder();
+    private final LongAdder flushedBatches = new LongAdder();
+    private final LongAdder droppedChanges = new LongAdder();
+    private static final Logger logger = LoggerFactory.getLogger(LikeWriteBehindBuffer.class);
+
+    public enum Durability {
+        ASYNC,
+        SYNC
+    }
+
+    public LikeWriteBehindBuffer(FilmStorage filmStorage,
+                                 @Value("${filmorate.likes.write-behind.capacity:10000}") int capacity,
+                                 @Value("${filmorate.likes.write-behind.offer-timeout:PT0.5S}") Duration offerTimeout,
+                                 @Value("${filmorate.likes.write-behind.durability:ASYNC}") Durability durability,
+                                 @Value("${filmorate.likes.write-behind.sync-timeout:PT5S}") Duration syncTimeout) {
+        this.filmStorage = filmStorage;
+        this.capacity = capacity;
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.durability = durability;
+        this.syncTimeout = syncTimeout;
+    }
+
+    public void addLike(int filmId, int userId) {
+        submit(filmId, userId, true);
+    }
+
+    public void removeLike(int filmId, int userId) {
+        submit(filmId, userId, false);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval:PT0.1S}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushPending();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        logger.info("Запись оставшихся в буфере лайков перед остановкой: {}", getPendingCount());
+        flush();
+        if (getPendingCount() > 0) {
+            logger.error("При остановке не записано изменений лайков: {}", getPendingCount());
+        }
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.likes.write-behind.pending", this, LikeWriteBehindBuffer::getPendingCount)
+                .register(registry);
+        FunctionCounter.builder("filmorate.likes.write-behind.commands", accepted, LongAdder::sum)
+                .tag("result", "accepted")
+                .register(registry);
+        FunctionCounter.builder("filmorate.likes.write-behind.commands", coalesced, LongAdder::sum)
+                .tag("result", "coalesced")
+                .register(registry);
+        FunctionCounter.builder("filmorate.likes.write-behind.commands", rejected, LongAdder::sum)
+                .tag("result", "rejected")
+                .register(registry);
+        FunctionCounter.builder("filmorate.likes.write-behind.flushed.changes", flushedChanges, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("filmorate.likes.write-behind.flushed.batches", flushedBatches, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("filmorate.likes.write-behind.dropped.changes", droppedChanges, LongAdder::sum)
+                .register(registry);
+    }
+
+    private void flushPending() {
+        Map<LikeKey, PendingLike> batch;
+        lock.lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        List<LikeChange> changes = new ArrayList<>(batch.size());
+        batch.forEach((key, like) -> changes.add(new LikeChange(key.filmId(), key.userId(), like.liked)));
+        try {
+            filmStorage.applyLikeChanges(changes);
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось записать пачку из {} изменений лайков, изменения записываются по одному",
+                    changes.size(), e);
+            flushOneByOne(batch);
+            return;
+        }
+        batch.values().forEach(like -> like.written.complete(null));
+        flushedChanges.add(changes.size());
+        flushedBatches.increment();
+    }
+
+    /**
+     * Изолирует изменения, из-за которых не записалась пачка. Изменение, отклонённое хранилищем
+     * (нет фильма или пользователя, нарушено ограничение), отбрасывается, иначе оно навсегда
+     * блокировало бы запись; при временной ошибке изменение возвращается в очередь.
+     */
+    private void flushOneByOne(Map<LikeKey, PendingLike> batch) {
+        Map<LikeKey, PendingLike> failed = new LinkedHashMap<>();
+        batch.forEach((key, like) -> {
+            try {
+                filmStorage.applyLikeChanges(List.of(new LikeChange(key.filmId(), key.userId(), like.liked)));
+            } catch (NotFoundException | NonTransientDataAccessException e) {
+                logger.error("Изменение лайка фильма {} пользователем {} отклонено и отброшено",
+                        key.filmId(), key.userId(), e);
+                droppedChanges.increment();
+                like.written.completeExceptionally(e);
+                return;
+            } catch (RuntimeException e) {
+                failed.put(key, like);
+                return;
+            }
+            like.written.complete(null);
+            flushedChanges.increment();
+        });
+        if (!failed.isEmpty()) {
+            logger.error("Не записано {} изменений лайков, повтор при следующей записи", failed.size());
+            requeue(failed);
+        }
+    }
+
+    private void submit(int filmId, int userId, boolean liked) {
+        CompletableFuture<Void> written = enqueue(new LikeKey(filmId, userId), liked);
+        if (durability == Durability.SYNC) {
+            awaitWrite(written);
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(LikeKey key, boolean liked) {
+        try {
+            lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Запрос прерван при ожидании очереди лайков");
+        }
+        try {
+            PendingLike like = pending.get(key);
+            if (like != null) {
+                like.liked = liked;
+                coalesced.increment();
+                return like.written;
+            }
+            long nanos = offerTimeoutNanos;
+            while (!closed && pending.size() >= capacity) {
+                if (nanos <= 0) {
+                    rejected.increment();
+                    throw new ServiceUnavailableException("Очередь лайков переполнена, повторите запрос позже");
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            if (closed) {
+                rejected.increment();
+                throw new ServiceUnavailableException("Приложение останавливается, лайки не принимаются");
+            }
+            like = new PendingLike(liked);
+            pending.put(key, like);
+            accepted.increment();
+            return like.written;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Запрос прерван при ожидании очереди лайков");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitWrite(CompletableFuture<Void> written) {
+        try {
+            written.get(syncTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            throw new ServiceUnavailableException("Лайк принят, но не записан в базу за " + syncTimeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Запрос прерван при ожидании записи лайка");
+        }
+    }
+
+    /**
+     * Возвращает незаписанные изменения в очередь, не перетирая более новые команды для той же пары.
+     */
+    private void requeue(Map<LikeKey, PendingLike> batch) {
+        lock.lock();
+        try {
+            batch.forEach((key, like) -> {
+                PendingLike newer = pending.get(key);
+                if (newer == null) {
+                    pending.put(key, like);
+                } else {
+                    newer.written.whenComplete((ignored, error) -> like.written.complete(null));
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record LikeKey(int filmId, int userId) {
+    }
+
+    private static final class PendingLike {
+        private boolean liked;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private PendingLike(boolean liked) {
+            this.liked = liked;
+        }
+    }
+}
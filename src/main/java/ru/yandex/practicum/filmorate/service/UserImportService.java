@@ -0,0 +1,152 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserImportReport;
+import ru.yandex.practicum.filmorate.service.userimport.CsvUserRowReader;
+import ru.yandex.practicum.filmorate.service.userimport.NdjsonUserRowReader;
+import ru.yandex.practicum.filmorate.service.userimport.UserRowReader;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Потоковый импорт пользователей из CSV или NDJSON. Файл читается построчно, строки проверяются
+ * ограничениями {@link User} и на занятость логина и email, затем вставляются пачками по IMPORT_BATCH_SIZE,
+ * каждая пачка — в своей транзакции. Если пачка не вставилась целиком, её строки вставляются по одной,
+ * чтобы в отчёт попали только действительно ошибочные. Память не зависит от размера файла:
+ * держится одна пачка и ограниченный список ошибок.
+ */
+@Service
+public class UserImportService {
+    private final UserStorage userStorage;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    public static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+
+    @Autowired
+    public UserImportService(UserStorage userStorage, Validator validator, ObjectMapper objectMapper) {
+        this.userStorage = userStorage;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+    }
+
+    public UserImportReport importUsers(InputStream body, MediaType contentType) {
+        Charset charset = contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+        Reader reader = new InputStreamReader(body, charset);
+        Progress progress = new Progress();
+        try (UserRowReader rows = openRowReader(reader, contentType)) {
+            for (UserRowReader.Row row = rows.next(); row != null; row = rows.next()) {
+                String error = row.error() != null ? row.error() : validate(row.user(), progress);
+                if (error != null) {
+                    progress.fail(row.number(), error);
+                    continue;
+                }
+                progress.batch.add(row);
+                if (progress.batch.size() == IMPORT_BATCH_SIZE) {
+                    flush(progress);
+                }
+            }
+            flush(progress);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать загружаемый файл", e);
+        }
+        logger.info("Импорт пользователей завершён: добавлено {}, отклонено {}", progress.imported, progress.failed);
+        return new UserImportReport(progress.imported, progress.failed, progress.errors);
+    }
+
+    private UserRowReader openRowReader(Reader reader, MediaType contentType) throws IOException {
+        if (TEXT_CSV.includes(contentType)) {
+            return new CsvUserRowReader(reader);
+        }
+        if (MediaType.APPLICATION_NDJSON.includes(contentType)) {
+            return new NdjsonUserRowReader(reader, objectMapper);
+        }
+        throw new ValidationException("Поддерживаются только text/csv и application/x-ndjson");
+    }
+
+    private String validate(User user, Progress progress) {
+        if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+        Set<ConstraintViolation<User>> violations = validator.validate(user);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        // Повторы внутри пачки ловятся здесь, с уже вставленными строками — проверкой занятости в хранилище
+        if (!progress.batchLogins.add(user.getLogin()) || userStorage.isLoginTaken(user.getLogin())) {
+            return "Логин уже занят: " + user.getLogin();
+        }
+        if (!progress.batchEmails.add(user.getEmail()) || userStorage.isEmailTaken(user.getEmail())) {
+            progress.batchLogins.remove(user.getLogin());
+            return "Email уже занят: " + user.getEmail();
+        }
+        return null;
+    }
+
+    private void flush(Progress progress) {
+        List<UserRowReader.Row> batch = progress.batch;
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            userStorage.addUsers(batch.stream().map(UserRowReader.Row::user).toList());
+            progress.imported += batch.size();
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Пачка из {} пользователей не вставилась целиком, вставка по одному", batch.size());
+            for (UserRowReader.Row row : batch) {
+                try {
+                    userStorage.addUsers(List.of(row.user()));
+                    progress.imported++;
+                } catch (DataIntegrityViolationException rowError) {
+                    progress.fail(row.number(), "Нарушена целостность данных");
+                }
+            }
+        }
+        batch.clear();
+        progress.batchLogins.clear();
+        progress.batchEmails.clear();
+    }
+
+    private static final class Progress {
+        private final List<UserRowReader.Row> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        private final Set<String> batchLogins = new HashSet<>();
+        private final Set<String> batchEmails = new HashSet<>();
+        private final List<UserImportReport.RowError> errors = new ArrayList<>();
+        private long imported;
+        private long failed;
+
+        void fail(long row, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new UserImportReport.RowError(row, message));
+            }
+        }
+    }
+}
@@ -3,14 +3,21 @@ package ru.yandex.practicum.filmorate.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.FriendWithMutualCount;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserAvailability;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class UserService {
     private final UserStorage userStorage;
+    private static final int MAX_SUGGESTIONS = 100;
     private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
     public UserService(UserStorage userStorage) {
@@ -29,6 +36,19 @@ public class UserService {
         return userStorage.getUsersList();
     }
 
+    public List<User> getUsersPage(int afterId, int limit) {
+        return userStorage.getUsersPage(afterId, limit);
+    }
+
+    public UserAvailability checkAvailability(String login, String email) {
+        if (login == null && email == null) {
+            throw new ValidationException("Нужно передать login или email");
+        }
+        return new UserAvailability(
+                login == null ? null : !userStorage.isLoginTaken(login),
+                email == null ? null : !userStorage.isEmailTaken(email));
+    }
+
     public User getUser(int id) {
         return userStorage.findUserById(id);
     }
@@ -45,8 +65,23 @@ public class UserService {
         return userStorage.getFriendsList(curUserId);
     }
 
+    public List<FriendWithMutualCount> getFriendsWithMutualCounts(int userId) {
+        return userStorage.getFriendsWithMutualCounts(userId);
+    }
+
+    public Map<Integer, List<User>> getFriendsLists(Collection<Integer> userIds) {
+        return userStorage.getFriendsLists(userIds);
+    }
+
     public List<User> getFriendsIntersect(int firstUserId, int secondUserId) {
         return userStorage.getFriendsIntersect(firstUserId, secondUserId);
     }
 
+    public List<FriendSuggestion> getFriendSuggestions(int userId, int limit) {
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new ValidationException("Параметр limit должен быть в диапазоне от 1 до " + MAX_SUGGESTIONS);
+        }
+        return userStorage.getFriendSuggestions(userId, limit);
+    }
+
 }
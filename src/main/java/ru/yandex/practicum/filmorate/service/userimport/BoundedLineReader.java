@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.service.userimport;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Посимвольное чтение с буфером, общим для CSV и NDJSON. Длина одной записи ограничена,
+ * чтобы файл без переводов строк или с незакрытой кавычкой не занял всю память.
+ */
+class BoundedLineReader {
+    static final int MAX_RECORD_CHARS = 64 * 1024;
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_CHARS];
+    private int position;
+    private int limit;
+
+    BoundedLineReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return следующий символ или -1 в конце данных
+     */
+    int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    int peek() throws IOException {
+        int next = read();
+        if (next >= 0) {
+            position--;
+        }
+        return next;
+    }
+
+    void close() throws IOException {
+        reader.close();
+    }
+}
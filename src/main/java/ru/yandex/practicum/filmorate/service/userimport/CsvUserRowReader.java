@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate.service.userimport;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * CSV по RFC 4180: первая строка — заголовок с колонками login, email, name, birthday в любом порядке
+ * (login и email обязательны), поля в кавычках могут содержать запятые, переводы строк и удвоенные кавычки.
+ * Дата рождения — в формате ГГГГ-ММ-ДД, пустое поле читается как null. Разделители входят в ограничение
+ * длины записи, а хранится не больше полей, чем известных колонок.
+ */
+public class CsvUserRowReader implements UserRowReader {
+    private static final List<String> KNOWN_COLUMNS = List.of("login", "email", "name", "birthday");
+    private static final int MAX_FIELDS = KNOWN_COLUMNS.size();
+
+    private final BoundedLineReader in;
+    private final int[] columnOf = new int[KNOWN_COLUMNS.size()];
+    private final int columnsCount;
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private int fieldsCount;
+    private long recordNumber;
+    private boolean recordTooLong;
+
+    public CsvUserRowReader(Reader reader) throws IOException {
+        this.in = new BoundedLineReader(reader);
+        if (!readRecord()) {
+            throw new ValidationException("Файл пуст: нет строки заголовка");
+        }
+        if (fieldsCount > MAX_FIELDS) {
+            throw new ValidationException("В заголовке больше " + MAX_FIELDS + " колонок");
+        }
+        Arrays.fill(columnOf, -1);
+        for (int i = 0; i < fields.size(); i++) {
+            String column = fields.get(i).strip().toLowerCase(Locale.ROOT);
+            int known = KNOWN_COLUMNS.indexOf(column);
+            if (known < 0) {
+                throw new ValidationException("Неизвестная колонка в заголовке: " + column);
+            }
+            columnOf[known] = i;
+        }
+        if (columnOf[0] < 0 || columnOf[1] < 0) {
+            throw new ValidationException("В заголовке должны быть колонки login и email");
+        }
+        columnsCount = fields.size();
+    }
+
+    @Override
+    public Row next() throws IOException {
+        while (readRecord()) {
+            recordNumber++;
+            if (recordTooLong) {
+                return Row.failed(recordNumber, "Строка длиннее " + BoundedLineReader.MAX_RECORD_CHARS + " символов");
+            }
+            if (fieldsCount == 1 && fields.getFirst().isEmpty()) {
+                continue;
+            }
+            if (fieldsCount != columnsCount) {
+                return Row.failed(recordNumber, "Ожидалось колонок: " + columnsCount + ", получено: " + fieldsCount);
+            }
+            User user = new User();
+            user.setLogin(column(0));
+            user.setEmail(column(1));
+            user.setName(column(2));
+            String birthday = column(3);
+            if (birthday != null) {
+                try {
+                    user.setBirthday(LocalDate.parse(birthday));
+                } catch (DateTimeParseException e) {
+                    return Row.failed(recordNumber, "Некорректная дата рождения: " + birthday);
+                }
+            }
+            return Row.parsed(recordNumber, user);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String column(int known) {
+        if (columnOf[known] < 0) {
+            return null;
+        }
+        String value = fields.get(columnOf[known]);
+        return value.isEmpty() ? null : value;
+    }
+
+    // Читает одну запись в fields; false — данные закончились
+    private boolean readRecord() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        fieldsCount = 0;
+        recordTooLong = false;
+        int recordChars = 0;
+        boolean quoted = false;
+        int next = in.read();
+        if (next < 0) {
+            return false;
+        }
+        while (next >= 0) {
+            char c = (char) next;
+            if (quoted) {
+                if (c == '"') {
+                    if (in.peek() == '"') {
+                        in.read();
+                        recordChars = append(c, recordChars);
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    recordChars = append(c, recordChars);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                recordChars = count(recordChars);
+                endField();
+            } else if (c == '\n') {
+                break;
+            } else if (c == '\r') {
+                if (in.peek() == '\n') {
+                    in.read();
+                }
+                break;
+            } else {
+                recordChars = append(c, recordChars);
+            }
+            next = in.read();
+        }
+        endField();
+        return true;
+    }
+
+    private int append(char c, int recordChars) {
+        if (recordChars >= BoundedLineReader.MAX_RECORD_CHARS) {
+            recordTooLong = true;
+            return recordChars;
+        }
+        field.append(c);
+        return recordChars + 1;
+    }
+
+    private int count(int recordChars) {
+        if (recordChars >= BoundedLineReader.MAX_RECORD_CHARS) {
+            recordTooLong = true;
+            return recordChars;
+        }
+        return recordChars + 1;
+    }
+
+    // Лишние поля только считаются: для ошибки о числе колонок их содержимое не нужно
+    private void endField() {
+        fieldsCount++;
+        if (fields.size() < MAX_FIELDS) {
+            fields.add(field.toString());
+        }
+        field.setLength(0);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.service.userimport;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * NDJSON: один JSON-объект пользователя на строку, пустые строки пропускаются.
+ * Номер строки в отчёте — номер строки файла.
+ */
+public class NdjsonUserRowReader implements UserRowReader {
+    private final BoundedLineReader in;
+    private final ObjectReader userReader;
+    private final StringBuilder line = new StringBuilder();
+    private long lineNumber;
+
+    public NdjsonUserRowReader(Reader reader, ObjectMapper objectMapper) {
+        this.in = new BoundedLineReader(reader);
+        this.userReader = objectMapper.readerFor(User.class);
+    }
+
+    @Override
+    public Row next() throws IOException {
+        while (true) {
+            line.setLength(0);
+            boolean tooLong = false;
+            int next = in.read();
+            if (next < 0) {
+                return null;
+            }
+            lineNumber++;
+            while (next >= 0 && next != '\n') {
+                if (line.length() < BoundedLineReader.MAX_RECORD_CHARS) {
+                    line.append((char) next);
+                } else {
+                    tooLong = true;
+                }
+                next = in.read();
+            }
+            if (tooLong) {
+                return Row.failed(lineNumber, "Строка длиннее " + BoundedLineReader.MAX_RECORD_CHARS + " символов");
+            }
+            String json = line.toString().strip();
+            if (json.isEmpty()) {
+                continue;
+            }
+            try {
+                return Row.parsed(lineNumber, userReader.readValue(json));
+            } catch (JsonProcessingException e) {
+                return Row.failed(lineNumber, "Некорректный JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
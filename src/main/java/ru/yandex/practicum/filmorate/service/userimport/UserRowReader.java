@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.service.userimport;
+
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Построчное чтение пользователей из загружаемого файла. В памяти держится только текущая строка.
+ */
+public interface UserRowReader extends Closeable {
+
+    /**
+     * @return следующая строка или null, если данные закончились
+     */
+    Row next() throws IOException;
+
+    /**
+     * Строка файла: разобранный пользователь либо текст ошибки разбора.
+     */
+    record Row(long number, User user, String error) {
+        static Row parsed(long number, User user) {
+            return new Row(number, user, null);
+        }
+
+        static Row failed(long number, String error) {
+            return new Row(number, null, error);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума по строкам: {@link #mightContain} никогда не ошибается в сторону «нет»,
+ * а «да» бывает ложным с вероятностью около falsePositiveRate. Биты лежат в AtomicLongArray,
+ * поэтому добавление и проверка идут без блокировок. Когда сегмент заполняется до расчётной ёмкости,
+ * добавляется новый сегмент вдвое больше и со вдвое меньшей долей ложных срабатываний, так что
+ * общая доля остаётся не больше 2 * falsePositiveRate при любом числе элементов.
+ */
+public class BloomFilter {
+    private final double falsePositiveRate;
+    private volatile Segment[] segments;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Ёмкость должна быть положительной, доля ложных срабатываний — в (0, 1)");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.segments = new Segment[]{new Segment(expectedInsertions, falsePositiveRate)};
+    }
+
+    public void put(String value) {
+        long hash = hash(value);
+        Segment[] current = segments;
+        Segment last = current[current.length - 1];
+        last.put(hash);
+        if (last.isFull()) {
+            grow(current);
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        for (Segment segment : segments) {
+            if (segment.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long estimateMemoryBytes() {
+        long bytes = 16;
+        for (Segment segment : segments) {
+            bytes += 16L + 8L * segment.bits.length();
+        }
+        return bytes;
+    }
+
+    private synchronized void grow(Segment[] seen) {
+        if (segments != seen) {
+            return;
+        }
+        Segment last = seen[seen.length - 1];
+        Segment[] grown = new Segment[seen.length + 1];
+        System.arraycopy(seen, 0, grown, 0, seen.length);
+        grown[seen.length] = new Segment(last.capacity * 2, falsePositiveRate / (1L << seen.length));
+        segments = grown;
+    }
+
+    // 64-битный хеш UTF-8 байтов: FNV-1a с финальным перемешиванием из MurmurHash3
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Один фильтр фиксированного размера. Позиции битов — двойное хеширование: h1 + i * h2.
+     */
+    private static final class Segment {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final long capacity;
+        private final AtomicLong insertions = new AtomicLong();
+
+        Segment(long capacity, double falsePositiveRate) {
+            double ln2 = Math.log(2);
+            long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+            this.bits = new AtomicLongArray(Math.toIntExact(Math.max(1, (optimalBits + 63) / 64)));
+            this.bitCount = 64L * bits.length();
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * ln2));
+            this.capacity = capacity;
+        }
+
+        void put(long hash) {
+            int first = (int) hash;
+            int second = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = Math.floorMod(first + (long) i * second, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current = bits.get(word);
+                while ((current & mask) == 0) {
+                    long witnessed = bits.compareAndExchange(word, current, current | mask);
+                    if (witnessed == current) {
+                        break;
+                    }
+                    current = witnessed;
+                }
+            }
+            insertions.incrementAndGet();
+        }
+
+        boolean mightContain(long hash) {
+            int first = (int) hash;
+            int second = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = Math.floorMod(first + (long) i * second, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isFull() {
+            return insertions.get() >= capacity;
+        }
+    }
+}
@@ -1,21 +1,54 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeChange;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Film addFilm(Film film);
 
+    List<Integer> addFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
     List<Film> getFilmsList();
 
-    Film getFilm(int id);
+    List<Film> getFilmsPage(int afterId, int limit);
 
-    void addLike(int filmId, int userId);
+    void forEachFilm(Consumer<Film> action);
 
-    void removeLike(int filmId, int userId);
+    Film getFilm(int id);
+
+    /**
+     * @return {@code true}, если лайк добавлен, {@code false}, если пользователь уже лайкал фильм
+     */
+    boolean addLike(int filmId, int userId);
+
+    /**
+     * {@code true}, если addLike сам отклоняет лайк несуществующего пользователя {@code NotFoundException}.
+     * Иначе пользователь проверяется до вызова.
+     */
+    default boolean checksLikeUser() {
+        return false;
+    }
+
+    /**
+     * @return {@code true}, если лайк был и удалён, {@code false}, если пользователь фильм не лайкал
+     */
+    boolean removeLike(int filmId, int userId);
+
+    /**
+     * Применяет пачку изменений лайков. Изменения для несуществующих фильмов и пользователей пропускаются.
+     */
+    void applyLikeChanges(List<LikeChange> changes);
 
     List<Film> getPopularFilms(int filmsCount);
+
+    /**
+     * Фильмы, которые лайкали пользователи с похожими лайками, в порядке убывания релевантности.
+     * Уже лайкнутые пользователем фильмы не возвращаются.
+     */
+    List<Film> getRecommendedFilms(int userId, int limit);
 }
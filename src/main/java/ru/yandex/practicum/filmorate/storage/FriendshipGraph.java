@@ -0,0 +1,424 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Индекс дружбы в памяти: для каждого пользователя хранится отсортированный массив id его друзей.
+ * Массивы не меняются после публикации — запись создаёт новую копию списка одного пользователя
+ * и публикует её через compareAndSet, поэтому чтение идёт без блокировок, а запись в списки
+ * разных пользователей не мешает друг другу. Списки лежат в блоках фиксированного размера:
+ * при росте добавляются новые блоки, а уже выданные не копируются, и параллельная запись в них не теряется.
+ * Пересечение друзей считается слиянием двух отсортированных массивов за линейное время без упаковки id в Integer.
+ */
+public class FriendshipGraph {
+    private static final int[] NO_FRIENDS = new int[0];
+    private static final int BLOCK_BITS = 10;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final Object growLock = new Object();
+    private volatile AtomicReferenceArray<int[]>[] blocks;
+    private final LongAdder edgeCount = new LongAdder();
+
+    public FriendshipGraph() {
+        this(newBlocks(1), 0);
+    }
+
+    private FriendshipGraph(AtomicReferenceArray<int[]>[] blocks, long edgeCount) {
+        this.blocks = blocks;
+        this.edgeCount.add(edgeCount);
+    }
+
+    /**
+     * @return {@code true}, если связи ещё не было
+     */
+    public boolean addFriend(int userId, int friendId) {
+        AtomicReferenceArray<int[]> block = blockForWrite(userId);
+        int slot = userId & BLOCK_MASK;
+        while (true) {
+            int[] current = block.get(slot);
+            int[] friends = current == null ? NO_FRIENDS : current;
+            int position = Arrays.binarySearch(friends, friendId);
+            if (position >= 0) {
+                return false;
+            }
+            int insertAt = -position - 1;
+            int[] updated = new int[friends.length + 1];
+            System.arraycopy(friends, 0, updated, 0, insertAt);
+            updated[insertAt] = friendId;
+            System.arraycopy(friends, insertAt, updated, insertAt + 1, friends.length - insertAt);
+            if (block.compareAndSet(slot, current, updated)) {
+                edgeCount.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true}, если связь была и удалена
+     */
+    public boolean removeFriend(int userId, int friendId) {
+        AtomicReferenceArray<int[]> block = blockForRead(userId);
+        if (block == null) {
+            return false;
+        }
+        int slot = userId & BLOCK_MASK;
+        while (true) {
+            int[] current = block.get(slot);
+            int[] friends = current == null ? NO_FRIENDS : current;
+            int position = Arrays.binarySearch(friends, friendId);
+            if (position < 0) {
+                return false;
+            }
+            int[] updated = friends.length == 1 ? NO_FRIENDS : new int[friends.length - 1];
+            System.arraycopy(friends, 0, updated, 0, position);
+            System.arraycopy(friends, position + 1, updated, position, friends.length - position - 1);
+            if (block.compareAndSet(slot, current, updated)) {
+                edgeCount.decrement();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Возвращает общий неизменяемый массив — изменять его нельзя.
+     */
+    public int[] friendsOf(int userId) {
+        AtomicReferenceArray<int[]> block = blockForRead(userId);
+        if (block == null) {
+            return NO_FRIENDS;
+        }
+        int[] friends = block.get(userId & BLOCK_MASK);
+        return friends == null ? NO_FRIENDS : friends;
+    }
+
+    public int[] commonFriends(int firstUserId, int secondUserId) {
+        int[] first = friendsOf(firstUserId);
+        int[] second = friendsOf(secondUserId);
+        int[] common = new int[Math.min(first.length, second.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return count == common.length ? common : Arrays.copyOf(common, count);
+    }
+
+    /**
+     * Для каждого id из otherUserIds — число общих с userId друзей. Список друзей userId берётся один раз,
+     * с каждым списком считается пересечение: слиянием, а если один список много короче другого —
+     * двоичным поиском элементов короткого в длинном.
+     */
+    public int[] countCommonFriends(int userId, int[] otherUserIds) {
+        int[] friends = friendsOf(userId);
+        int[] counts = new int[otherUserIds.length];
+        for (int i = 0; i < otherUserIds.length; i++) {
+            counts[i] = intersectionSize(friends, friendsOf(otherUserIds[i]));
+        }
+        return counts;
+    }
+
+    /**
+     * Друзья друзей, упорядоченные по числу общих друзей (по убыванию), затем по id.
+     * Сам пользователь и его друзья исключаются. Обходятся все связи второго уровня, поэтому ранжирование точное;
+     * счётчики хранятся в примитивной хеш-таблице, лучшие limit кандидатов отбираются кучей.
+     * Подсчёт идёт в вызывающем потоке и не занимает общий пул ForkJoinPool.
+     */
+    public SuggestedFriends suggestFriends(int userId, int limit) {
+        int[] friends = friendsOf(userId);
+        return countMutualFriends(userId, friends).top(limit);
+    }
+
+    public long getEdgeCount() {
+        return edgeCount.sum();
+    }
+
+    /**
+     * Оценка занимаемой памяти: ссылки на списки плюс сами массивы с заголовками.
+     */
+    public long estimateMemoryBytes() {
+        AtomicReferenceArray<int[]>[] current = blocks;
+        long bytes = 16L + 4L * current.length;
+        for (AtomicReferenceArray<int[]> block : current) {
+            bytes += 16L + 4L * BLOCK_SIZE;
+            for (int slot = 0; slot < BLOCK_SIZE; slot++) {
+                int[] friends = block.get(slot);
+                if (friends != null && friends.length > 0) {
+                    bytes += 16L + 4L * friends.length;
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static int intersectionSize(int[] first, int[] second) {
+        int[] shorter = first.length <= second.length ? first : second;
+        int[] longer = shorter == first ? second : first;
+        if (shorter.length == 0) {
+            return 0;
+        }
+        int count = 0;
+        if ((long) shorter.length * (32 - Integer.numberOfLeadingZeros(longer.length)) < longer.length) {
+            for (int id : shorter) {
+                if (Arrays.binarySearch(longer, id) >= 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        int i = 0;
+        int j = 0;
+        while (i < shorter.length && j < longer.length) {
+            if (shorter[i] < longer[j]) {
+                i++;
+            } else if (shorter[i] > longer[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private IntCountMap countMutualFriends(int userId, int[] friends) {
+        IntCountMap counts = new IntCountMap(Math.max(16, friends.length * 8));
+        for (int friendId : friends) {
+            for (int candidateId : friendsOf(friendId)) {
+                if (candidateId != userId && Arrays.binarySearch(friends, candidateId) < 0) {
+                    counts.increment(candidateId);
+                }
+            }
+        }
+        return counts;
+    }
+
+    private AtomicReferenceArray<int[]> blockForRead(int userId) {
+        AtomicReferenceArray<int[]>[] current = blocks;
+        int blockIndex = userId >>> BLOCK_BITS;
+        return userId < 0 || blockIndex >= current.length ? null : current[blockIndex];
+    }
+
+    private AtomicReferenceArray<int[]> blockForWrite(int userId) {
+        if (userId < 0) {
+            throw new IllegalArgumentException("id пользователя не может быть отрицательным: " + userId);
+        }
+        AtomicReferenceArray<int[]> block = blockForRead(userId);
+        if (block != null) {
+            return block;
+        }
+        synchronized (growLock) {
+            AtomicReferenceArray<int[]>[] current = blocks;
+            int blockIndex = userId >>> BLOCK_BITS;
+            if (blockIndex >= current.length) {
+                AtomicReferenceArray<int[]>[] grown = Arrays.copyOf(current,
+                        Math.max(current.length * 2, blockIndex + 1));
+                for (int i = current.length; i < grown.length; i++) {
+                    grown[i] = new AtomicReferenceArray<>(BLOCK_SIZE);
+                }
+                blocks = grown;
+                current = grown;
+            }
+            return current[blockIndex];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static AtomicReferenceArray<int[]>[] newBlocks(int count) {
+        AtomicReferenceArray<int[]>[] created = new AtomicReferenceArray[count];
+        for (int i = 0; i < count; i++) {
+            created[i] = new AtomicReferenceArray<>(BLOCK_SIZE);
+        }
+        return created;
+    }
+
+    /**
+     * Собирает граф из связей, упорядоченных по (userId, friendId), без промежуточных копий.
+     */
+    public static class Builder {
+        private int[][] lists = new int[BLOCK_SIZE][];
+        private int currentUserId = -1;
+        private int[] currentFriends = new int[16];
+        private int currentSize;
+        private long edgeCount;
+
+        public Builder add(int userId, int friendId) {
+            if (userId < currentUserId
+                    || (userId == currentUserId && currentSize > 0 && friendId <= currentFriends[currentSize - 1])) {
+                throw new IllegalArgumentException("Связи должны идти по возрастанию (userId, friendId)");
+            }
+            if (userId != currentUserId) {
+                flushCurrent();
+                currentUserId = userId;
+            }
+            if (currentSize == currentFriends.length) {
+                currentFriends = Arrays.copyOf(currentFriends, currentSize * 2);
+            }
+            currentFriends[currentSize++] = friendId;
+            edgeCount++;
+            return this;
+        }
+
+        public FriendshipGraph build() {
+            flushCurrent();
+            AtomicReferenceArray<int[]>[] blocks = newBlocks((lists.length + BLOCK_SIZE - 1) >>> BLOCK_BITS);
+            for (int userId = 0; userId < lists.length; userId++) {
+                if (lists[userId] != null) {
+                    blocks[userId >>> BLOCK_BITS].set(userId & BLOCK_MASK, lists[userId]);
+                }
+            }
+            lists = null;
+            return new FriendshipGraph(blocks, edgeCount);
+        }
+
+        private void flushCurrent() {
+            if (currentSize == 0) {
+                return;
+            }
+            if (currentUserId >= lists.length) {
+                lists = Arrays.copyOf(lists, Math.max(lists.length * 2, currentUserId + 1));
+            }
+            lists[currentUserId] = Arrays.copyOf(currentFriends, currentSize);
+            currentSize = 0;
+        }
+    }
+
+    /**
+     * Рекомендованные пользователи и число общих друзей с каждым, в порядке убывания релевантности.
+     */
+    public record SuggestedFriends(int[] userIds, int[] mutualFriends) {
+    }
+
+    /**
+     * Хеш-таблица int -> int с открытой адресацией, без упаковки ключей и значений.
+     * Ключ 0 зарезервирован под пустую ячейку — id пользователей начинаются с 1.
+     */
+    private static final class IntCountMap {
+        private int[] keys;
+        private int[] values;
+        private int size;
+
+        IntCountMap(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(expectedSize * 2 - 1, 16)) << 1;
+            keys = new int[capacity];
+            values = new int[capacity];
+        }
+
+        void increment(int key) {
+            add(key, 1);
+        }
+
+        void add(int key, int delta) {
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    values[slot] = delta;
+                    grow();
+                    return;
+                }
+            }
+            values[slot] += delta;
+        }
+
+        /**
+         * Отбирает limit лучших кандидатов кучей-минимумом: в long упакованы число общих друзей
+         * и инвертированный id, поэтому при равном счёте выше оказывается меньший id.
+         */
+        SuggestedFriends top(int limit) {
+            long[] heap = new long[Math.min(limit, size)];
+            int heapSize = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == 0) {
+                    continue;
+                }
+                long packed = ((long) values[i] << 32) | (Integer.MAX_VALUE - keys[i]);
+                if (heapSize < heap.length) {
+                    heap[heapSize] = packed;
+                    siftUp(heap, heapSize++);
+                } else if (heapSize > 0 && packed > heap[0]) {
+                    heap[0] = packed;
+                    siftDown(heap, heapSize);
+                }
+            }
+            Arrays.sort(heap, 0, heapSize);
+            int[] userIds = new int[heapSize];
+            int[] mutualFriends = new int[heapSize];
+            for (int i = 0; i < heapSize; i++) {
+                long packed = heap[heapSize - 1 - i];
+                userIds[i] = Integer.MAX_VALUE - (int) packed;
+                mutualFriends[i] = (int) (packed >>> 32);
+            }
+            return new SuggestedFriends(userIds, mutualFriends);
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    add(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int mix(int key) {
+            int hash = key * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+
+        private static void siftUp(long[] heap, int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (heap[parent] <= heap[index]) {
+                    return;
+                }
+                long swap = heap[parent];
+                heap[parent] = heap[index];
+                heap[index] = swap;
+                index = parent;
+            }
+        }
+
+        private static void siftDown(long[] heap, int heapSize) {
+            int index = 0;
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < heapSize && heap[left] < heap[smallest]) {
+                    smallest = left;
+                }
+                if (right < heapSize && heap[right] < heap[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == index) {
+                    return;
+                }
+                long swap = heap[smallest];
+                heap[smallest] = heap[index];
+                heap[index] = swap;
+                index = smallest;
+            }
+        }
+    }
+}
@@ -0,0 +1,595 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Индекс лайков в памяти для рекомендаций. У каждого пользователя хранится разреженный битмап понравившихся
+ * фильмов — только ненулевые 64-битные слова и их номера, у каждого фильма — отсортированный список id
+ * лайкнувших пользователей, разбитый на части не длиннее LIKERS_CHUNK_SIZE. Как и в {@link FriendshipGraph},
+ * опубликованные массивы не меняются: запись создаёт новую копию, чтение идёт без блокировок, ячейки лежат
+ * в блоках фиксированного размера. Изменения одного фильма идут под своей полосой блокировки,
+ * битмап пользователя публикуется через compareAndSet, поэтому лайки разных фильмов не ждут друг друга.
+ * Лайк популярного фильма копирует одну часть списка и массив ссылок на части, а не весь список.
+ * Число общих лайков двух пользователей считается по словам через AND и bitCount.
+ */
+public class LikesIndex {
+    private static final int[] NO_IDS = new int[0];
+    private static final int BLOCK_BITS = 10;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+    private static final int FILM_LOCK_STRIPES = 64;
+    private static final int LIKERS_CHUNK_SIZE = 512;
+
+    private final Blocks<LikeBitmap> userLikes;
+    private final Blocks<Likers> filmLikers;
+    private final Object[] filmLocks = new Object[FILM_LOCK_STRIPES];
+    private final LongAdder likeCount = new LongAdder();
+
+    public LikesIndex() {
+        this(new Blocks<>(1), new Blocks<>(1), 0);
+    }
+
+    private LikesIndex(Blocks<LikeBitmap> userLikes, Blocks<Likers> filmLikers, long likeCount) {
+        this.userLikes = userLikes;
+        this.filmLikers = filmLikers;
+        this.likeCount.add(likeCount);
+        for (int i = 0; i < filmLocks.length; i++) {
+            filmLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return {@code true}, если лайка ещё не было
+     */
+    public boolean addLike(int userId, int filmId) {
+        AtomicReferenceArray<LikeBitmap> userBlock = userLikes.blockForWrite(userId);
+        AtomicReferenceArray<Likers> filmBlock = filmLikers.blockForWrite(filmId);
+        synchronized (filmLock(filmId)) {
+            int userSlot = userId & BLOCK_MASK;
+            while (true) {
+                LikeBitmap current = userBlock.get(userSlot);
+                LikeBitmap likes = current == null ? LikeBitmap.EMPTY : current;
+                if (likes.contains(filmId)) {
+                    return false;
+                }
+                if (userBlock.compareAndSet(userSlot, current, likes.with(filmId))) {
+                    break;
+                }
+            }
+            filmBlock.set(filmId & BLOCK_MASK, likersAt(filmId).with(userId));
+        }
+        likeCount.increment();
+        return true;
+    }
+
+    /**
+     * @return {@code true}, если лайк был и удалён
+     */
+    public boolean removeLike(int userId, int filmId) {
+        AtomicReferenceArray<LikeBitmap> userBlock = userLikes.blockForRead(userId);
+        AtomicReferenceArray<Likers> filmBlock = filmLikers.blockForRead(filmId);
+        if (userBlock == null || filmBlock == null) {
+            return false;
+        }
+        synchronized (filmLock(filmId)) {
+            int userSlot = userId & BLOCK_MASK;
+            while (true) {
+                LikeBitmap current = userBlock.get(userSlot);
+                LikeBitmap likes = current == null ? LikeBitmap.EMPTY : current;
+                if (!likes.contains(filmId)) {
+                    return false;
+                }
+                if (userBlock.compareAndSet(userSlot, current, likes.without(filmId))) {
+                    break;
+                }
+            }
+            filmBlock.set(filmId & BLOCK_MASK, likersAt(filmId).without(userId));
+        }
+        likeCount.decrement();
+        return true;
+    }
+
+    public boolean isLiked(int userId, int filmId) {
+        return likesOf(userId).contains(filmId);
+    }
+
+    /**
+     * Собирает id лайкнувших фильм пользователей в новый массив по возрастанию.
+     */
+    public int[] likersOf(int filmId) {
+        return likersAt(filmId).toArray();
+    }
+
+    /**
+     * Рекомендации по похожим пользователям. Кандидаты в соседи — те, кто лайкнул хотя бы один фильм
+     * пользователя; обход списков лайкнувших ограничен maxVisitedLikes. Сходство — коэффициент Жаккара
+     * |A ∩ B| / |A ∪ B|, берутся maxNeighbours самых похожих. Фильм получает сумму сходств соседей,
+     * которые его лайкнули, уже лайкнутые пользователем фильмы пропускаются.
+     *
+     * @return id фильмов по убыванию оценки, при равной оценке — по возрастанию id
+     */
+    public int[] recommendFilms(int userId, int limit, int maxNeighbours, long maxVisitedLikes) {
+        LikeBitmap likes = likesOf(userId);
+        if (likes.cardinality == 0 || limit <= 0 || maxNeighbours <= 0) {
+            return NO_IDS;
+        }
+        PriorityQueue<Neighbour> neighbours = new PriorityQueue<>(maxNeighbours + 1, Neighbour.ORDER);
+        for (int candidateId : collectCandidates(userId, likes, maxVisitedLikes)) {
+            LikeBitmap candidateLikes = likesOf(candidateId);
+            int commonLikes = likes.intersectionSize(candidateLikes);
+            if (commonLikes == 0) {
+                continue;
+            }
+            double similarity = (double) commonLikes / (likes.cardinality + candidateLikes.cardinality - commonLikes);
+            Neighbour neighbour = new Neighbour(candidateId, similarity, candidateLikes);
+            if (neighbours.size() < maxNeighbours) {
+                neighbours.add(neighbour);
+            } else if (Neighbour.ORDER.compare(neighbour, neighbours.peek()) > 0) {
+                neighbours.poll();
+                neighbours.add(neighbour);
+            }
+        }
+        Map<Integer, Double> scores = new HashMap<>();
+        for (Neighbour neighbour : neighbours) {
+            neighbour.likes().forEachAbsentIn(likes,
+                    filmId -> scores.merge(filmId, neighbour.similarity(), Double::sum));
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .mapToInt(Map.Entry::getKey)
+                .toArray();
+    }
+
+    public long getLikeCount() {
+        return likeCount.sum();
+    }
+
+    /**
+     * Оценка занимаемой памяти: ссылки на битмапы и списки плюс сами массивы с заголовками.
+     */
+    public long estimateMemoryBytes() {
+        long bytes = 32L + userLikes.estimateMemoryBytes(likes -> likes.cardinality == 0 ? 0
+                : 24L + 16L + 4L * likes.wordIndexes.length + 16L + 8L * likes.words.length);
+        bytes += filmLikers.estimateMemoryBytes(likers -> likers.size == 0 ? 0
+                : 24L + 16L + 4L * likers.chunks.length + 16L * likers.chunks.length + 4L * likers.size);
+        return bytes;
+    }
+
+    private LikeBitmap likesOf(int userId) {
+        LikeBitmap likes = userLikes.get(userId);
+        return likes == null ? LikeBitmap.EMPTY : likes;
+    }
+
+    private Likers likersAt(int filmId) {
+        Likers likers = filmLikers.get(filmId);
+        return likers == null ? Likers.EMPTY : likers;
+    }
+
+    private Object filmLock(int filmId) {
+        return filmLocks[filmId & (FILM_LOCK_STRIPES - 1)];
+    }
+
+    private int[] collectCandidates(int userId, LikeBitmap likes, long maxVisitedLikes) {
+        int[] candidates = new int[16];
+        int size = 0;
+        long visitedLikes = 0;
+        for (int w = 0; w < likes.words.length && visitedLikes < maxVisitedLikes; w++) {
+            long word = likes.words[w];
+            while (word != 0 && visitedLikes < maxVisitedLikes) {
+                int filmId = (likes.wordIndexes[w] << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                Likers likers = likersAt(filmId);
+                visitedLikes += likers.size;
+                if (size + likers.size > candidates.length) {
+                    candidates = Arrays.copyOf(candidates, Math.max(candidates.length * 2, size + likers.size));
+                }
+                for (int[] chunk : likers.chunks) {
+                    for (int likerId : chunk) {
+                        if (likerId != userId) {
+                            candidates[size++] = likerId;
+                        }
+                    }
+                }
+            }
+        }
+        Arrays.sort(candidates, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || candidates[unique - 1] != candidates[i]) {
+                candidates[unique++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, unique);
+    }
+
+    private static int[] insertSorted(int[] values, int value) {
+        int insertAt = -Arrays.binarySearch(values, value) - 1;
+        int[] updated = new int[values.length + 1];
+        System.arraycopy(values, 0, updated, 0, insertAt);
+        updated[insertAt] = value;
+        System.arraycopy(values, insertAt, updated, insertAt + 1, values.length - insertAt);
+        return updated;
+    }
+
+    private static int[] removeSorted(int[] values, int value) {
+        int position = Arrays.binarySearch(values, value);
+        if (values.length == 1) {
+            return NO_IDS;
+        }
+        int[] updated = new int[values.length - 1];
+        System.arraycopy(values, 0, updated, 0, position);
+        System.arraycopy(values, position + 1, updated, position, values.length - position - 1);
+        return updated;
+    }
+
+    /**
+     * Собирает индекс из лайков, упорядоченных по (userId, filmId), без промежуточных копий.
+     */
+    public static class Builder {
+        private LikeBitmap[] bitmaps = new LikeBitmap[BLOCK_SIZE];
+        private int[][] likers = new int[BLOCK_SIZE][];
+        private int[] likersSizes = new int[BLOCK_SIZE];
+        private int currentUserId = -1;
+        private int currentFilmId = -1;
+        private int[] currentWordIndexes = new int[16];
+        private long[] currentWords = new long[16];
+        private int currentWordsSize;
+        private int currentCardinality;
+        private long likeCount;
+
+        public Builder add(int userId, int filmId) {
+            if (userId < currentUserId || (userId == currentUserId && filmId <= currentFilmId) || filmId < 0) {
+                throw new IllegalArgumentException("Лайки должны идти по возрастанию (userId, filmId)");
+            }
+            if (userId != currentUserId) {
+                flushCurrent();
+                currentUserId = userId;
+            }
+            currentFilmId = filmId;
+            int wordIndex = filmId >>> 6;
+            if (currentWordsSize == 0 || currentWordIndexes[currentWordsSize - 1] != wordIndex) {
+                if (currentWordsSize == currentWords.length) {
+                    currentWordIndexes = Arrays.copyOf(currentWordIndexes, currentWordsSize * 2);
+                    currentWords = Arrays.copyOf(currentWords, currentWordsSize * 2);
+                }
+                currentWordIndexes[currentWordsSize] = wordIndex;
+                currentWords[currentWordsSize++] = 0;
+            }
+            currentWords[currentWordsSize - 1] |= 1L << filmId;
+            currentCardinality++;
+            appendLiker(filmId, userId);
+            likeCount++;
+            return this;
+        }
+
+        public LikesIndex build() {
+            flushCurrent();
+            Blocks<LikeBitmap> userLikes = new Blocks<>((bitmaps.length + BLOCK_SIZE - 1) >>> BLOCK_BITS);
+            for (int userId = 0; userId < bitmaps.length; userId++) {
+                if (bitmaps[userId] != null) {
+                    userLikes.blockForWrite(userId).set(userId & BLOCK_MASK, bitmaps[userId]);
+                }
+            }
+            Blocks<Likers> filmLikers = new Blocks<>((likers.length + BLOCK_SIZE - 1) >>> BLOCK_BITS);
+            for (int filmId = 0; filmId < likers.length; filmId++) {
+                if (likers[filmId] != null) {
+                    filmLikers.blockForWrite(filmId).set(filmId & BLOCK_MASK,
+                            Likers.of(likers[filmId], likersSizes[filmId]));
+                }
+            }
+            LikesIndex index = new LikesIndex(userLikes, filmLikers, likeCount);
+            bitmaps = null;
+            likers = null;
+            likersSizes = null;
+            return index;
+        }
+
+        private void appendLiker(int filmId, int userId) {
+            if (filmId >= likers.length) {
+                int capacity = Math.max(likers.length * 2, filmId + 1);
+                likers = Arrays.copyOf(likers, capacity);
+                likersSizes = Arrays.copyOf(likersSizes, capacity);
+            }
+            int[] filmLikers = likers[filmId];
+            if (filmLikers == null) {
+                filmLikers = new int[4];
+            } else if (likersSizes[filmId] == filmLikers.length) {
+                filmLikers = Arrays.copyOf(filmLikers, filmLikers.length * 2);
+            }
+            filmLikers[likersSizes[filmId]++] = userId;
+            likers[filmId] = filmLikers;
+        }
+
+        private void flushCurrent() {
+            if (currentWordsSize == 0) {
+                return;
+            }
+            if (currentUserId >= bitmaps.length) {
+                bitmaps = Arrays.copyOf(bitmaps, Math.max(bitmaps.length * 2, currentUserId + 1));
+            }
+            bitmaps[currentUserId] = new LikeBitmap(Arrays.copyOf(currentWordIndexes, currentWordsSize),
+                    Arrays.copyOf(currentWords, currentWordsSize), currentCardinality);
+            currentWordsSize = 0;
+            currentCardinality = 0;
+            currentFilmId = -1;
+        }
+    }
+
+    private record Neighbour(int userId, double similarity, LikeBitmap likes) {
+        // Вершина кучи — наименее похожий сосед, при равном сходстве вытесняется больший id
+        static final Comparator<Neighbour> ORDER = Comparator.comparingDouble(Neighbour::similarity)
+                .thenComparing(Comparator.comparingInt(Neighbour::userId).reversed());
+    }
+
+    /**
+     * Неизменяемый отсортированный список лайкнувших фильм, разбитый на непустые части не длиннее
+     * LIKERS_CHUNK_SIZE. Добавление и удаление копируют одну часть и массив ссылок на части;
+     * переполненная часть делится пополам, опустевшая убирается.
+     */
+    private static final class Likers {
+        static final Likers EMPTY = new Likers(new int[0][], 0);
+
+        final int[][] chunks;
+        final int size;
+
+        Likers(int[][] chunks, int size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        static Likers of(int[] sortedIds, int size) {
+            int[][] chunks = new int[(size + LIKERS_CHUNK_SIZE - 1) / LIKERS_CHUNK_SIZE][];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = Arrays.copyOfRange(sortedIds, i * LIKERS_CHUNK_SIZE,
+                        Math.min(size, (i + 1) * LIKERS_CHUNK_SIZE));
+            }
+            return new Likers(chunks, size);
+        }
+
+        Likers with(int userId) {
+            if (chunks.length == 0) {
+                return new Likers(new int[][]{{userId}}, 1);
+            }
+            int index = chunkFor(userId);
+            int[] chunk = insertSorted(chunks[index], userId);
+            int[][] updated;
+            if (chunk.length > LIKERS_CHUNK_SIZE) {
+                int half = chunk.length / 2;
+                updated = new int[chunks.length + 1][];
+                System.arraycopy(chunks, 0, updated, 0, index);
+                updated[index] = Arrays.copyOfRange(chunk, 0, half);
+                updated[index + 1] = Arrays.copyOfRange(chunk, half, chunk.length);
+                System.arraycopy(chunks, index + 1, updated, index + 2, chunks.length - index - 1);
+            } else {
+                updated = chunks.clone();
+                updated[index] = chunk;
+            }
+            return new Likers(updated, size + 1);
+        }
+
+        Likers without(int userId) {
+            if (size == 1) {
+                return EMPTY;
+            }
+            int index = chunkFor(userId);
+            int[] chunk = removeSorted(chunks[index], userId);
+            int[][] updated;
+            if (chunk.length == 0) {
+                updated = new int[chunks.length - 1][];
+                System.arraycopy(chunks, 0, updated, 0, index);
+                System.arraycopy(chunks, index + 1, updated, index, chunks.length - index - 1);
+            } else {
+                updated = chunks.clone();
+                updated[index] = chunk;
+            }
+            return new Likers(updated, size - 1);
+        }
+
+        int[] toArray() {
+            if (size == 0) {
+                return NO_IDS;
+            }
+            int[] ids = new int[size];
+            int position = 0;
+            for (int[] chunk : chunks) {
+                System.arraycopy(chunk, 0, ids, position, chunk.length);
+                position += chunk.length;
+            }
+            return ids;
+        }
+
+        // Первая часть, последний id которой не меньше userId, иначе последняя часть
+        private int chunkFor(int userId) {
+            int low = 0;
+            int high = chunks.length - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int[] chunk = chunks[middle];
+                if (chunk[chunk.length - 1] < userId) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Ячейки по id в блоках по BLOCK_SIZE: при росте добавляются новые блоки, уже выданные не копируются,
+     * поэтому запись в них не теряется при параллельном росте.
+     */
+    private static final class Blocks<T> {
+        private final Object growLock = new Object();
+        private volatile AtomicReferenceArray<T>[] blocks;
+
+        @SuppressWarnings("unchecked")
+        Blocks(int count) {
+            blocks = new AtomicReferenceArray[Math.max(count, 1)];
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = new AtomicReferenceArray<>(BLOCK_SIZE);
+            }
+        }
+
+        T get(int id) {
+            AtomicReferenceArray<T> block = blockForRead(id);
+            return block == null ? null : block.get(id & BLOCK_MASK);
+        }
+
+        AtomicReferenceArray<T> blockForRead(int id) {
+            AtomicReferenceArray<T>[] current = blocks;
+            int blockIndex = id >>> BLOCK_BITS;
+            return id < 0 || blockIndex >= current.length ? null : current[blockIndex];
+        }
+
+        AtomicReferenceArray<T> blockForWrite(int id) {
+            if (id < 0) {
+                throw new IllegalArgumentException("id не может быть отрицательным: " + id);
+            }
+            AtomicReferenceArray<T> block = blockForRead(id);
+            if (block != null) {
+                return block;
+            }
+            synchronized (growLock) {
+                AtomicReferenceArray<T>[] current = blocks;
+                int blockIndex = id >>> BLOCK_BITS;
+                if (blockIndex >= current.length) {
+                    AtomicReferenceArray<T>[] grown = Arrays.copyOf(current,
+                            Math.max(current.length * 2, blockIndex + 1));
+                    for (int i = current.length; i < grown.length; i++) {
+                        grown[i] = new AtomicReferenceArray<>(BLOCK_SIZE);
+                    }
+                    blocks = grown;
+                    current = grown;
+                }
+                return current[blockIndex];
+            }
+        }
+
+        long estimateMemoryBytes(ToLongFunction<T> valueBytes) {
+            AtomicReferenceArray<T>[] current = blocks;
+            long bytes = 16L + 4L * current.length;
+            for (AtomicReferenceArray<T> block : current) {
+                bytes += 16L + 4L * BLOCK_SIZE;
+                for (int slot = 0; slot < BLOCK_SIZE; slot++) {
+                    T value = block.get(slot);
+                    if (value != null) {
+                        bytes += valueBytes.applyAsLong(value);
+                    }
+                }
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Неизменяемый разреженный битмап: в wordIndexes по возрастанию лежат номера ненулевых 64-битных слов,
+     * в words — сами слова. Фильм filmId соответствует биту filmId % 64 в слове с номером filmId / 64.
+     */
+    private static final class LikeBitmap {
+        static final LikeBitmap EMPTY = new LikeBitmap(new int[0], new long[0], 0);
+
+        final int[] wordIndexes;
+        final long[] words;
+        final int cardinality;
+
+        LikeBitmap(int[] wordIndexes, long[] words, int cardinality) {
+            this.wordIndexes = wordIndexes;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        boolean contains(int filmId) {
+            int position = Arrays.binarySearch(wordIndexes, filmId >>> 6);
+            return position >= 0 && (words[position] & (1L << filmId)) != 0;
+        }
+
+        LikeBitmap with(int filmId) {
+            int position = Arrays.binarySearch(wordIndexes, filmId >>> 6);
+            if (position >= 0) {
+                long[] updatedWords = words.clone();
+                updatedWords[position] |= 1L << filmId;
+                return new LikeBitmap(wordIndexes, updatedWords, cardinality + 1);
+            }
+            int insertAt = -position - 1;
+            int[] updatedIndexes = new int[wordIndexes.length + 1];
+            long[] updatedWords = new long[words.length + 1];
+            System.arraycopy(wordIndexes, 0, updatedIndexes, 0, insertAt);
+            System.arraycopy(words, 0, updatedWords, 0, insertAt);
+            updatedIndexes[insertAt] = filmId >>> 6;
+            updatedWords[insertAt] = 1L << filmId;
+            System.arraycopy(wordIndexes, insertAt, updatedIndexes, insertAt + 1, wordIndexes.length - insertAt);
+            System.arraycopy(words, insertAt, updatedWords, insertAt + 1, words.length - insertAt);
+            return new LikeBitmap(updatedIndexes, updatedWords, cardinality + 1);
+        }
+
+        LikeBitmap without(int filmId) {
+            int position = Arrays.binarySearch(wordIndexes, filmId >>> 6);
+            long word = words[position] & ~(1L << filmId);
+            if (word != 0) {
+                long[] updatedWords = words.clone();
+                updatedWords[position] = word;
+                return new LikeBitmap(wordIndexes, updatedWords, cardinality - 1);
+            }
+            if (cardinality == 1) {
+                return EMPTY;
+            }
+            int[] updatedIndexes = new int[wordIndexes.length - 1];
+            long[] updatedWords = new long[words.length - 1];
+            System.arraycopy(wordIndexes, 0, updatedIndexes, 0, position);
+            System.arraycopy(words, 0, updatedWords, 0, position);
+            System.arraycopy(wordIndexes, position + 1, updatedIndexes, position, wordIndexes.length - position - 1);
+            System.arraycopy(words, position + 1, updatedWords, position, words.length - position - 1);
+            return new LikeBitmap(updatedIndexes, updatedWords, cardinality - 1);
+        }
+
+        /**
+         * Слияние по номерам слов: совпавшие слова объединяются через AND, единичные биты считаются bitCount.
+         */
+        int intersectionSize(LikeBitmap other) {
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < wordIndexes.length && j < other.wordIndexes.length) {
+                if (wordIndexes[i] < other.wordIndexes[j]) {
+                    i++;
+                } else if (wordIndexes[i] > other.wordIndexes[j]) {
+                    j++;
+                } else {
+                    count += Long.bitCount(words[i++] & other.words[j++]);
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Перебирает фильмы этого битмапа, которых нет в excluded (AND NOT по словам).
+         */
+        void forEachAbsentIn(LikeBitmap excluded, IntConsumer action) {
+            int j = 0;
+            for (int i = 0; i < wordIndexes.length; i++) {
+                while (j < excluded.wordIndexes.length && excluded.wordIndexes[j] < wordIndexes[i]) {
+                    j++;
+                }
+                long word = words[i];
+                if (j < excluded.wordIndexes.length && excluded.wordIndexes[j] == wordIndexes[i]) {
+                    word &= ~excluded.words[j];
+                }
+                while (word != 0) {
+                    action.accept((wordIndexes[i] << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+}
@@ -1,23 +1,55 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.FriendWithMutualCount;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface UserStorage {
     User findUserById(int userId);
 
     User addUser(User user);
 
+    /**
+     * Добавляет пользователей одной пачкой в одной транзакции и проставляет им id.
+     * Если хотя бы одна запись нарушает ограничения, не добавляется никто.
+     */
+    List<Integer> addUsers(List<User> users);
+
     User updateUser(User user);
 
     List<User> getUsersList();
 
+    List<User> getUsersPage(int afterId, int limit);
+
+    boolean isLoginTaken(String login);
+
+    boolean isEmailTaken(String email);
+
     void addFriend(int userId, int friendId);
 
     void removeFriend(int userId, int friendId);
 
     List<User> getFriendsList(int curUserId);
 
+    /**
+     * Друзья пользователя вместе с числом общих с ним друзей у каждого, упорядоченные по id.
+     */
+    List<FriendWithMutualCount> getFriendsWithMutualCounts(int userId);
+
+    /**
+     * Списки друзей сразу для нескольких пользователей. В результате есть ключ для каждого переданного id,
+     * друзья упорядочены по id.
+     */
+    Map<Integer, List<User>> getFriendsLists(Collection<Integer> userIds);
+
     List<User> getFriendsIntersect(int firstUserId, int secondUserId);
+
+    /**
+     * Друзья друзей, упорядоченные по убыванию числа общих друзей, без самого пользователя и его друзей.
+     */
+    List<FriendSuggestion> getFriendSuggestions(int userId, int limit);
 }
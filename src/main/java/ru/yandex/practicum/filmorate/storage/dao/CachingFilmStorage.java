@@ -0,0 +1,299 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Кэш фильмов по id поверх {@link DbFilmStorage}. Размер ограничен max-size с вытеснением давно не читанных
+ * записей, время жизни записи — ttl. Запись сбрасывается при обновлении фильма и при изменении его лайков:
+ * поправка счётчика в кэше после записи задвоила бы лайк, уже прочитанный загрузкой, начатой после неё.
+ * max-size=0 отключает кэш.
+ * Загрузка из базы идёт без блокировки; если фильм изменился, пока он загружался, результат не кэшируется.
+ * Изменение касается только своего фильма и не мешает заполнению кэша другими. Закэшированные фильмы
+ * не выходят наружу: вызывающий получает копию.
+ */
+@Repository
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "db", matchIfMissing = true)
+@Primary
+public class CachingFilmStorage implements FilmStorage, MeterBinder {
+    private final FilmStorage delegate;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Integer, CachedFilm> films;
+    private final Map<Integer, Object> loadsInFlight = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private static final Logger logger = LoggerFactory.getLogger(CachingFilmStorage.class);
+
+    @Autowired
+    public CachingFilmStorage(DbFilmStorage delegate,
+                              @Value("${filmorate.film-cache.max-size:10000}") int maxSize,
+                              @Value("${filmorate.film-cache.ttl:PT10M}") Duration ttl) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.films = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CachedFilm> eldest) {
+                if (size() > CachingFilmStorage.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        logger.info("Кэш фильмов: максимум {} записей, время жизни {}", maxSize, ttl);
+    }
+
+    @Override
+    public Film getFilm(int id) {
+        Object loadToken = new Object();
+        lock.lock();
+        try {
+            CachedFilm cached = films.get(id);
+            if (cached != null) {
+                if (System.nanoTime() - cached.loadedAt() < ttlNanos) {
+                    hits.increment();
+                    return copyOf(cached.film());
+                }
+                films.remove(id);
+                expirations.increment();
+            }
+            misses.increment();
+            loadsInFlight.put(id, loadToken);
+        } finally {
+            lock.unlock();
+        }
+
+        long loadStart = System.nanoTime();
+        Film film = null;
+        try {
+            film = delegate.getFilm(id);
+        } finally {
+            long loadEnd = System.nanoTime();
+            loads.increment();
+            loadNanos.add(loadEnd - loadStart);
+            lock.lock();
+            try {
+                if (loadsInFlight.remove(id, loadToken) && film != null && maxSize > 0) {
+                    films.put(id, new CachedFilm(copyOf(film), loadEnd));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return film;
+    }
+
+    @Override
+    public Film addFilm(Film film) {
+        return delegate.addFilm(film);
+    }
+
+    @Override
+    public List<Integer> addFilms(List<Film> filmsToAdd) {
+        return delegate.addFilms(filmsToAdd);
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        try {
+            return delegate.updateFilm(film);
+        } finally {
+            invalidate(film.getId());
+        }
+    }
+
+    @Override
+    public List<Film> getFilmsList() {
+        return delegate.getFilmsList();
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return delegate.getFilmsPage(afterId, limit);
+    }
+
+    @Override
+    public void forEachFilm(Consumer<Film> action) {
+        delegate.forEachFilm(action);
+    }
+
+    @Override
+    public boolean addLike(int filmId, int userId) {
+        boolean added = delegate.addLike(filmId, userId);
+        if (added) {
+            invalidate(filmId);
+        }
+        return added;
+    }
+
+    @Override
+    public boolean checksLikeUser() {
+        return delegate.checksLikeUser();
+    }
+
+    @Override
+    public boolean removeLike(int filmId, int userId) {
+        boolean removed = delegate.removeLike(filmId, userId);
+        if (removed) {
+            invalidate(filmId);
+        }
+        return removed;
+    }
+
+    @Override
+    public void applyLikeChanges(List<LikeChange> changes) {
+        try {
+            delegate.applyLikeChanges(changes);
+        } finally {
+            lock.lock();
+            try {
+                changes.forEach(change -> forget(change.filmId()));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int filmsCount) {
+        return delegate.getPopularFilms(filmsCount);
+    }
+
+    @Override
+    public List<Film> getRecommendedFilms(int userId, int limit) {
+        return delegate.getRecommendedFilms(userId, limit);
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return films.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.film-cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("filmorate.film-cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("filmorate.film-cache.evictions", evictions, LongAdder::sum)
+                .tag("cause", "size")
+                .register(registry);
+        FunctionCounter.builder("filmorate.film-cache.evictions", expirations, LongAdder::sum)
+                .tag("cause", "expired")
+                .register(registry);
+        Gauge.builder("filmorate.film-cache.hit.ratio", this, CachingFilmStorage::getHitRatio)
+                .register(registry);
+        Gauge.builder("filmorate.film-cache.size", this, CachingFilmStorage::size)
+                .register(registry);
+        FunctionTimer.builder("filmorate.film-cache.load", this,
+                        cache -> cache.loads.sum(), cache -> cache.loadNanos.sum(), TimeUnit.NANOSECONDS)
+                .register(registry);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long requestCount = hitCount + misses.sum();
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+
+    private void invalidate(int filmId) {
+        lock.lock();
+        try {
+            forget(filmId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Вызывается под lock: загрузка этого фильма, начатая до изменения, не попадёт в кэш
+    private void forget(int filmId) {
+        films.remove(filmId);
+        loadsInFlight.remove(filmId);
+    }
+
+    private static Film copyOf(Film film) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setMpa(film.getMpa() == null ? null : copyOf(film.getMpa()));
+        if (film.getGenres() != null) {
+            Set<Genre> genres = new LinkedHashSet<>();
+            film.getGenres().forEach(genre -> genres.add(copyOf(genre)));
+            copy.setGenres(genres);
+        }
+        copy.restoreLikesCount(film.getLikesCount());
+        return copy;
+    }
+
+    private static Mpa copyOf(Mpa mpa) {
+        Mpa copy = new Mpa();
+        copy.setId(mpa.getId());
+        copy.setName(mpa.getName());
+        return copy;
+    }
+
+    private static Genre copyOf(Genre genre) {
+        Genre copy = new Genre();
+        copy.setId(genre.getId());
+        copy.setName(genre.getName());
+        return copy;
+    }
+
+    private record CachedFilm(Film film, long loadedAt) {
+    }
+}
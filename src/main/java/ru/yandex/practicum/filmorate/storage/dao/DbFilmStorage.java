@@ -1,57 +1,83 @@
 package ru.yandex.practicum.filmorate.storage.dao;
 
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Primary;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exception.DatabaseValidationException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikesIndex;
 import ru.yandex.practicum.filmorate.storage.dao.mapper.FilmMapper;
-import ru.yandex.practicum.filmorate.storage.dao.mapper.GenreMapper;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Repository
-@Primary
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "db", matchIfMissing = true)
 public class DbFilmStorage implements FilmStorage {
     private final JdbcTemplate jdbc;
-    private final FilmMapper filmMapper = new FilmMapper();
+    private final TransactionTemplate transactionTemplate;
+    private final ReferenceDataCache referenceData;
+    private final FilmMapper filmMapper;
+    private final Object[] likeLocks = new Object[LIKE_LOCK_STRIPES];
+    private volatile LikesIndex likesIndex = new LikesIndex();
+    private static final int GENRE_BATCH_SIZE = 1000;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int LIKE_LOCK_STRIPES = 64;
+    private static final int LIKES_INDEX_FETCH_SIZE = 1000;
+    private static final int RECOMMENDATION_NEIGHBOURS = 50;
+    private static final long RECOMMENDATION_MAX_VISITED_LIKES = 1_000_000;
     private static final Logger logger = LoggerFactory.getLogger(DbFilmStorage.class);
 
     @Autowired
-    public DbFilmStorage(JdbcTemplate jdbc) {
+    public DbFilmStorage(JdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+                         ReferenceDataCache referenceData) {
         this.jdbc = jdbc;
+        this.referenceData = referenceData;
+        this.filmMapper = new FilmMapper(referenceData);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < likeLocks.length; i++) {
+            likeLocks[i] = new Object();
+        }
     }
 
     @Override
     @Transactional
     public Film addFilm(Film film) {
         logger.debug("Попытка добавления фильма: {}", film);
-        if (Objects.nonNull(film.getMpa()) && !isMpaExists(film.getMpa().getId())) {
-            logger.warn("MPA с id {} не найдено в базе данных.", film.getMpa().getId());
-            throw new DatabaseValidationException("MPA с id " + film.getMpa().getId() + " не найдено в базе данных.");
-        }
-        if (Objects.nonNull(film.getGenres()) && !film.getGenres().isEmpty()) {
-            for (Genre genre : film.getGenres()) {
-                if (!isGenreExists(genre.getId())) {
-                    logger.warn("Жанр с id {} не найден в базе данных.", genre.getId());
-                    throw new DatabaseValidationException("Жанр с id " + genre.getId() + " не найден в базе данных.");
-                }
-            }
-        }
+        validateReferences(List.of(film));
         String filmInsertQuery =
                 "INSERT INTO film (name, description, release_date, duration, rating_id) " +
                         "VALUES (?, ?, ?, ?, ?);";
@@ -60,15 +86,7 @@ public class DbFilmStorage implements FilmStorage {
         int rowsAffected = jdbc.update(
                 con -> {
                     PreparedStatement preparedStatement = con.prepareStatement(filmInsertQuery, new String[]{"id"});
-                    preparedStatement.setString(1, film.getName());
-                    preparedStatement.setString(2, film.getDescription());
-                    preparedStatement.setDate(3, Date.valueOf(film.getReleaseDate()));
-                    preparedStatement.setInt(4, film.getDuration());
-                    if (Objects.nonNull(film.getMpa())) {
-                        preparedStatement.setInt(5, film.getMpa().getId());
-                    } else {
-                        preparedStatement.setNull(5, java.sql.Types.INTEGER);
-                    }
+                    setFilmInsertParameters(preparedStatement, film);
                     return preparedStatement;
                 }, keyHolder
         );
@@ -76,19 +94,28 @@ public class DbFilmStorage implements FilmStorage {
             logger.info("Запрос на добавление фильма вернул 0 строк, вероятно, добавление не произошло");
         }
         film.setId((int) keyHolder.getKey().longValue());
-        if (Objects.nonNull(film.getGenres()) && !film.getGenres().isEmpty()) {
-            for (Genre genre : film.getGenres()) {
-                String insertGenreLingQuery = "INSERT INTO film_genre_link values(?,?)";
-                jdbc.update(insertGenreLingQuery, film.getId(), genre.getId());
-            }
-        }
+        insertGenreLinks(film);
         logger.info("Фильм добавлен с ID: {}", film.getId());
         return getFilm(film.getId());
     }
 
+    @Override
+    public List<Integer> addFilms(List<Film> films) {
+        logger.debug("Попытка пакетного добавления {} фильмов", films.size());
+        validateReferences(films);
+        List<Integer> filmIds = new ArrayList<>(films.size());
+        for (int from = 0; from < films.size(); from += IMPORT_BATCH_SIZE) {
+            List<Film> chunk = films.subList(from, Math.min(from + IMPORT_BATCH_SIZE, films.size()));
+            filmIds.addAll(transactionTemplate.execute(status -> insertFilmsChunk(chunk)));
+        }
+        logger.info("Пакетно добавлено {} фильмов", filmIds.size());
+        return filmIds;
+    }
+
     public Film updateFilm(Film filmForUpdate) {
         logger.debug("Попытка обновления фильма с ID: {}", filmForUpdate.getId());
         getFilm(filmForUpdate.getId());
+        validateReferences(List.of(filmForUpdate));
         String updateFilmQuery = "UPDATE film SET name = ?, description = ?, release_date = ?, duration = ?, rating_id = ? WHERE id = ?";
         jdbc.update(updateFilmQuery,
                 filmForUpdate.getName(),
@@ -99,96 +126,408 @@ public class DbFilmStorage implements FilmStorage {
                 filmForUpdate.getId());
         String deleteGenreLinksQuery = "DELETE FROM film_genre_link WHERE film_id = ?";
         jdbc.update(deleteGenreLinksQuery, filmForUpdate.getId());
-        if (Objects.nonNull(filmForUpdate.getGenres()) && !filmForUpdate.getGenres().isEmpty()) {
-            Set<Genre> genreList = getGenreList(filmForUpdate);
-            for (Genre genre : genreList) {
-                String insertGenreLinkQuery = "INSERT INTO film_genre_link (film_id, genre_id) VALUES (?, ?)";
-                jdbc.update(insertGenreLinkQuery, filmForUpdate.getId(), genre.getId());
-            }
-        }
+        insertGenreLinks(filmForUpdate);
 
         logger.info("Фильм с ID {} обновлён", filmForUpdate.getId());
         return filmForUpdate;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Film> getFilmsList() {
         logger.info("Получение списка фильмов");
-        String getFilmQuery = "SELECT f.*," +
-                "R.ID as mpa_id, " +
-                "R.NAME as mpa_name " +
-                " FROM film f " +
-                "LEFT JOIN PUBLIC.RATING R on R.ID = f.RATING_ID ";
+        String getFilmQuery = "SELECT f.* FROM film f";
         List<Film> filmList = jdbc.query(getFilmQuery, filmMapper);
-        for (Film film : filmList) {
-            film.setGenres(getGenreList(film));
-        }
+        loadGenres(filmList);
         return filmList.isEmpty() ? null : filmList;
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        logger.info("Получение страницы фильмов после id {}, размер страницы {}", afterId, limit);
+        String getFilmsPageQuery = "SELECT f.* FROM film f " +
+                "WHERE f.id > ? " +
+                "ORDER BY f.id " +
+                "LIMIT ?";
+        List<Film> filmList = jdbc.query(getFilmsPageQuery, filmMapper, afterId, limit);
+        loadGenres(filmList);
+        return filmList;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachFilm(Consumer<Film> action) {
+        logger.info("Выгрузка каталога фильмов");
+        String exportFilmsQuery = "SELECT f.*, fgl.genre_id " +
+                "FROM film f " +
+                "LEFT JOIN film_genre_link fgl ON fgl.film_id = f.id " +
+                "ORDER BY f.id, fgl.genre_id";
+        FilmRowsMerger merger = new FilmRowsMerger(action);
+        jdbc.query(con -> {
+            PreparedStatement preparedStatement = con.prepareStatement(exportFilmsQuery,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            preparedStatement.setFetchSize(EXPORT_FETCH_SIZE);
+            return preparedStatement;
+        }, merger);
+        merger.flush();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Film getFilm(int id) {
         logger.info("Запрошена информация о фильме {}", id);
-        String getFilmQuery = "SELECT f.*," +
-                "R.ID as mpa_id, " +
-                "R.NAME as mpa_name " +
-                " FROM film f " +
-                "LEFT JOIN PUBLIC.RATING R on R.ID = f.RATING_ID " +
+        String getFilmQuery = "SELECT f.* FROM film f " +
                 "WHERE f.id = ? " +
                 "LIMIT 1;";
         List<Film> filmList = jdbc.query(getFilmQuery, filmMapper, id);
         if (filmList.isEmpty()) {
             throw new NotFoundException("Film not found with id: " + id);
         }
-        filmList.getFirst().setGenres(getGenreList(filmList.getFirst()));
+        loadGenres(filmList);
         return filmList.getFirst();
     }
 
+    /**
+     * Транзакция фиксируется под блокировкой полосы пользователя, поэтому индекс лайков
+     * меняется в том же порядке, в каком изменения попадают в базу.
+     */
+    @Override
+    public boolean addLike(int filmId, int userId) {
+        logger.debug("Пользователь {} ставит лайк фильму {}", userId, filmId);
+        String addLikeQuery = "INSERT INTO likes (user_id, film_id) " +
+                "SELECT ?, ? FROM DUAL " +
+                "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE user_id = ? AND film_id = ?)";
+        String incrementLikesCountQuery = "UPDATE film SET likes_count = likes_count + 1 WHERE id = ?";
+        synchronized (likeLock(userId)) {
+            try {
+                return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                    if (jdbc.update(addLikeQuery, userId, filmId, userId, filmId) == 0) {
+                        return false;
+                    }
+                    jdbc.update(incrementLikesCountQuery, filmId);
+                    TransactionHooks.afterCommit(() -> likesIndex.addLike(userId, filmId));
+                    return true;
+                }));
+            } catch (DuplicateKeyException e) {
+                // Такой же лайк успел зафиксировать другой экземпляр приложения
+                logger.debug("Пользователь {} уже поставил лайк фильму {}", userId, filmId);
+                return false;
+            } catch (DataIntegrityViolationException e) {
+                throw missingLikeReference(filmId, userId, e);
+            }
+        }
+    }
+
+    // Лайк несуществующего пользователя нарушает внешний ключ likes.user_id
     @Override
-    public void addLike(int filmId, int userId) {
-        getFilm(filmId);
-        String addLikeQuery = "INSERT INTO LIKES(user_id, film_id) VALUES (?,?)";
-        jdbc.update(addLikeQuery, userId, filmId);
+    public boolean checksLikeUser() {
+        return true;
     }
 
     @Override
-    public void removeLike(int filmId, int userId) {
-        getFilm(filmId);
+    public boolean removeLike(int filmId, int userId) {
+        logger.debug("Пользователь {} убирает лайк с фильма {}", userId, filmId);
         String removeLikeQuery = "DELETE FROM LIKES WHERE FILM_ID = ? AND USER_ID = ?";
-        jdbc.update(removeLikeQuery, filmId, userId);
+        String decrementLikesCountQuery = "UPDATE film SET likes_count = likes_count - 1 WHERE id = ?";
+        synchronized (likeLock(userId)) {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (jdbc.update(removeLikeQuery, filmId, userId) == 0) {
+                    requireFilmExists(filmId);
+                    return false;
+                }
+                jdbc.update(decrementLikesCountQuery, filmId);
+                TransactionHooks.afterCommit(() -> likesIndex.removeLike(userId, filmId));
+                return true;
+            }));
+        }
     }
 
     @Override
+    @Transactional
+    public void applyLikeChanges(List<LikeChange> changes) {
+        logger.debug("Применение пачки из {} изменений лайков", changes.size());
+        List<LikeChange> addedLikes = changes.stream().filter(LikeChange::liked).toList();
+        List<LikeChange> removedLikes = changes.stream().filter(change -> !change.liked()).toList();
+        Map<Integer, Integer> likesCountDeltas = new HashMap<>();
+
+        String addLikesQuery = "INSERT INTO likes (user_id, film_id) " +
+                "SELECT u.id, f.id FROM users u JOIN film f ON f.id = ? " +
+                "WHERE u.id = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM likes l WHERE l.user_id = u.id AND l.film_id = f.id)";
+        int[] insertedRows = jdbc.batchUpdate(addLikesQuery, toLikeArgs(addedLikes));
+        collectLikesCountDeltas(likesCountDeltas, addedLikes, insertedRows, 1);
+
+        String removeLikesQuery = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+        int[] deletedRows = jdbc.batchUpdate(removeLikesQuery, toLikeArgs(removedLikes));
+        collectLikesCountDeltas(likesCountDeltas, removedLikes, deletedRows, -1);
+        applyToLikesIndex(addedLikes, insertedRows);
+        applyToLikesIndex(removedLikes, deletedRows);
+
+        List<Object[]> likesCountArgs = likesCountDeltas.entrySet().stream()
+                .filter(delta -> delta.getValue() != 0)
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .toList();
+        if (!likesCountArgs.isEmpty()) {
+            String updateLikesCountQuery = "UPDATE film SET likes_count = likes_count + ? WHERE id = ?";
+            jdbc.batchUpdate(updateLikesCountQuery, likesCountArgs);
+        }
+        logger.info("Применено изменений лайков: {}, затронуто фильмов: {}", changes.size(), likesCountArgs.size());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<Film> getPopularFilms(int filmsCount) {
-        String getPopularFilms = "SELECT f.*, " +
-                "r.ID AS mpa_id, " +
-                "r.NAME AS mpa_name, " +
-                "COUNT(l.FILM_ID) AS likes_count " +
-                "FROM LIKES l " +
-                "RIGHT JOIN FILM f ON f.ID = l.FILM_ID " +
-                "LEFT JOIN RATING r ON f.RATING_ID = r.ID " +
-                "GROUP BY f.ID, f.NAME, f.RELEASE_DATE, f.DURATION, f.DESCRIPTION, r.ID, r.NAME " + // Добавляем все поля
-                "ORDER BY likes_count DESC " +
+        String getPopularFilms = "SELECT f.* FROM FILM f " +
+                "ORDER BY f.LIKES_COUNT DESC, f.ID " +
                 "LIMIT ?";
-        return jdbc.query(getPopularFilms, filmMapper, filmsCount);
+        List<Film> filmList = jdbc.query(getPopularFilms, filmMapper, filmsCount);
+        loadGenres(filmList);
+        return filmList;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Film> getRecommendedFilms(int userId, int limit) {
+        logger.info("Запрошены рекомендации фильмов для пользователя {}, не больше {}", userId, limit);
+        int[] recommendedIds = likesIndex.recommendFilms(userId, limit, RECOMMENDATION_NEIGHBOURS,
+                RECOMMENDATION_MAX_VISITED_LIKES);
+        if (recommendedIds.length == 0) {
+            return List.of();
+        }
+        String placeholders = String.join(",", Collections.nCopies(recommendedIds.length, "?"));
+        String getFilmsQuery = "SELECT f.* FROM film f WHERE f.id IN (" + placeholders + ")";
+        List<Film> filmList = jdbc.query(getFilmsQuery, filmMapper, Arrays.stream(recommendedIds).boxed().toArray());
+        loadGenres(filmList);
+        Map<Integer, Film> filmsById = new HashMap<>();
+        filmList.forEach(film -> filmsById.put(film.getId(), film));
+        return Arrays.stream(recommendedIds)
+                .mapToObj(filmsById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    /**
+     * Индекс строится один раз при старте по всей таблице likes, дальше поддерживается
+     * добавлением и удалением лайков.
+     */
+    @PostConstruct
+    void loadLikesIndex() {
+        LikesIndex.Builder builder = new LikesIndex.Builder();
+        jdbc.query(con -> {
+            PreparedStatement statement = con.prepareStatement(
+                    "SELECT user_id, film_id FROM likes ORDER BY user_id, film_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(LIKES_INDEX_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> builder.add(rs.getInt("user_id"), rs.getInt("film_id")));
+        likesIndex = builder.build();
+        logger.info("Индекс лайков загружен: лайков {}", likesIndex.getLikeCount());
+    }
+
+    private List<Integer> insertFilmsChunk(List<Film> films) {
+        String filmInsertQuery = "INSERT INTO film (name, description, release_date, duration, rating_id) " +
+                "VALUES (?, ?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(con -> con.prepareStatement(filmInsertQuery, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setFilmInsertParameters(ps, films.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> generatedKeys = keyHolder.getKeyList();
+        List<Integer> filmIds = new ArrayList<>(films.size());
+        for (int i = 0; i < films.size(); i++) {
+            int filmId = ((Number) generatedKeys.get(i).values().iterator().next()).intValue();
+            films.get(i).setId(filmId);
+            filmIds.add(filmId);
+        }
+        insertGenreLinks(films);
+        return filmIds;
+    }
+
+    private static void setFilmInsertParameters(PreparedStatement preparedStatement, Film film) throws SQLException {
+        preparedStatement.setString(1, film.getName());
+        preparedStatement.setString(2, film.getDescription());
+        preparedStatement.setDate(3, Date.valueOf(film.getReleaseDate()));
+        preparedStatement.setInt(4, film.getDuration());
+        if (Objects.nonNull(film.getMpa())) {
+            preparedStatement.setInt(5, film.getMpa().getId());
+        } else {
+            preparedStatement.setNull(5, java.sql.Types.INTEGER);
+        }
+    }
+
+    private void validateReferences(List<Film> films) {
+        Set<Integer> mpaIds = films.stream()
+                .map(Film::getMpa)
+                .filter(Objects::nonNull)
+                .map(Mpa::getId)
+                .collect(Collectors.toSet());
+        Set<Integer> missingMpaIds = mpaIds.stream()
+                .filter(mpaId -> referenceData.findMpa(mpaId).isEmpty())
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (!missingMpaIds.isEmpty()) {
+            int mpaId = missingMpaIds.iterator().next();
+            logger.warn("MPA с id {} не найдено в базе данных.", mpaId);
+            throw new DatabaseValidationException("MPA с id " + mpaId + " не найдено в базе данных.");
+        }
+        Set<Integer> genreIds = films.stream()
+                .map(Film::getGenres)
+                .filter(Objects::nonNull)
+                .flatMap(Set::stream)
+                .map(Genre::getId)
+                .collect(Collectors.toSet());
+        Set<Integer> missingGenreIds = genreIds.stream()
+                .filter(genreId -> referenceData.findGenre(genreId).isEmpty())
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (!missingGenreIds.isEmpty()) {
+            int genreId = missingGenreIds.iterator().next();
+            logger.warn("Жанр с id {} не найден в базе данных.", genreId);
+            throw new DatabaseValidationException("Жанр с id " + genreId + " не найден в базе данных.");
+        }
+    }
+
+    /**
+     * Вызывается только после неудачной записи, поэтому не нагружает основной путь лишними запросами.
+     */
+    private RuntimeException missingLikeReference(int filmId, int userId, DataIntegrityViolationException cause) {
+        String countUsersQuery = "SELECT COUNT(*) FROM users WHERE id = ?";
+        if (jdbc.queryForObject(countUsersQuery, Integer.class, userId) == 0) {
+            logger.warn("Пользователь с id = {} не найден", userId);
+            return new NotFoundException("Пользователь с id = " + userId + " не найден");
+        }
+        requireFilmExists(filmId);
+        return cause;
+    }
+
+    private void requireFilmExists(int filmId) {
+        String countFilmsQuery = "SELECT COUNT(*) FROM film WHERE id = ?";
+        if (jdbc.queryForObject(countFilmsQuery, Integer.class, filmId) == 0) {
+            throw new NotFoundException("Film not found with id: " + filmId);
+        }
+    }
+
+    private void applyToLikesIndex(List<LikeChange> changes, int[] affectedRows) {
+        for (int i = 0; i < changes.size(); i++) {
+            if (affectedRows[i] == 0) {
+                continue;
+            }
+            LikeChange change = changes.get(i);
+            if (change.liked()) {
+                TransactionHooks.afterCommit(() -> likesIndex.addLike(change.userId(), change.filmId()));
+            } else {
+                TransactionHooks.afterCommit(() -> likesIndex.removeLike(change.userId(), change.filmId()));
+            }
+        }
+    }
+
+    private Object likeLock(int userId) {
+        return likeLocks[Math.floorMod(userId, LIKE_LOCK_STRIPES)];
+    }
+
+    private static List<Object[]> toLikeArgs(List<LikeChange> changes) {
+        return changes.stream()
+                .map(change -> new Object[]{change.filmId(), change.userId()})
+                .toList();
+    }
+
+    private static void collectLikesCountDeltas(Map<Integer, Integer> likesCountDeltas, List<LikeChange> changes,
+                                                int[] affectedRows, int deltaPerRow) {
+        for (int i = 0; i < changes.size(); i++) {
+            if (affectedRows[i] > 0) {
+                likesCountDeltas.merge(changes.get(i).filmId(), deltaPerRow, Integer::sum);
+            }
+        }
     }
 
-    private boolean isMpaExists(int id) {
-        String query = "SELECT COUNT(*) FROM rating WHERE id = ?";
-        return Boolean.TRUE.equals(jdbc.query(query, ps -> ps.setInt(1, id), rs -> rs.next() && rs.getInt(1) > 0));
+    private void insertGenreLinks(Film film) {
+        insertGenreLinks(List.of(film));
     }
 
-    private boolean isGenreExists(int id) {
-        String query = "SELECT COUNT(*) FROM genre WHERE id = ?";
-        return Boolean.TRUE.equals(jdbc.query(query, ps -> ps.setInt(1, id), rs -> rs.next() && rs.getInt(1) > 0));
+    private void insertGenreLinks(List<Film> films) {
+        List<Object[]> batchArgs = films.stream()
+                .filter(film -> Objects.nonNull(film.getGenres()))
+                .flatMap(film -> film.getGenres()
+                        .stream()
+                        .map(genre -> new Object[]{film.getId(), genre.getId()}))
+                .toList();
+        if (batchArgs.isEmpty()) {
+            return;
+        }
+        String insertGenreLinkQuery = "INSERT INTO film_genre_link (film_id, genre_id) VALUES (?, ?)";
+        jdbc.batchUpdate(insertGenreLinkQuery, batchArgs);
     }
 
-    private Set<Genre> getGenreList(Film film) {
-        String getGenreListForFilm = "SELECT g.* FROM FILM_GENRE_LINK fgl " +
-                "JOIN genre g on fgl.genre_id = g.id " +
-                " WHERE FILM_ID = ?" +
-                "ORDER BY fgl.genre_id";
-        List<Genre> genreList = jdbc.query(getGenreListForFilm, new GenreMapper(), film.getId());
-        return new LinkedHashSet<>(genreList);
+    /**
+     * Загружает жанры для всех переданных фильмов одним запросом вместо запроса на каждый фильм.
+     * Небольшие выборки фильтруются по списку id, для больших выборок (весь каталог)
+     * дешевле один раз прочитать все связи фильм-жанр и отбросить лишние.
+     */
+    private void loadGenres(List<Film> films) {
+        if (films.isEmpty()) {
+            return;
+        }
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            film.setGenres(new LinkedHashSet<>());
+            filmsById.put(film.getId(), film);
+        }
+        RowCallbackHandler genreHandler = rs -> {
+            Film film = filmsById.get(rs.getInt("film_id"));
+            if (Objects.nonNull(film)) {
+                referenceData.findGenre(rs.getInt("genre_id")).ifPresent(film.getGenres()::add);
+            }
+        };
+        String getGenresQuery = "SELECT fgl.film_id, fgl.genre_id FROM film_genre_link fgl ";
+        String orderBy = "ORDER BY fgl.film_id, fgl.genre_id";
+        if (filmsById.size() > GENRE_BATCH_SIZE) {
+            jdbc.query(getGenresQuery + orderBy, genreHandler);
+            return;
+        }
+        List<Integer> filmIds = new ArrayList<>(filmsById.keySet());
+        String placeholders = String.join(",", Collections.nCopies(filmIds.size(), "?"));
+        jdbc.query(getGenresQuery + "WHERE fgl.film_id IN (" + placeholders + ") " + orderBy,
+                genreHandler, filmIds.toArray());
+    }
+
+    /**
+     * Собирает фильмы из строк, отсортированных по id фильма: строки одного фильма идут подряд,
+     * поэтому в памяти одновременно держится только текущий фильм.
+     */
+    private class FilmRowsMerger implements RowCallbackHandler {
+        private final Consumer<Film> action;
+        private Film currentFilm;
+
+        FilmRowsMerger(Consumer<Film> action) {
+            this.action = action;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            int filmId = rs.getInt("id");
+            if (Objects.isNull(currentFilm) || currentFilm.getId() != filmId) {
+                flush();
+                currentFilm = filmMapper.mapRow(rs, rs.getRow());
+                currentFilm.setGenres(new LinkedHashSet<>());
+            }
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                referenceData.findGenre(genreId).ifPresent(currentFilm.getGenres()::add);
+            }
+        }
+
+        void flush() {
+            if (Objects.nonNull(currentFilm)) {
+                action.accept(currentFilm);
+                currentFilm = null;
+            }
+        }
     }
 }
@@ -3,41 +3,35 @@ package ru.yandex.practicum.filmorate.storage.dao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.MpaStorage;
-import ru.yandex.practicum.filmorate.storage.dao.mapper.MpaMapper;
 
 import java.util.List;
 
 @Repository
 public class DbMpaStorage implements MpaStorage {
-    private final JdbcTemplate jdbc;
+    private final ReferenceDataCache referenceData;
     private static final Logger logger = LoggerFactory.getLogger(DbMpaStorage.class);
 
     @Autowired
-    public DbMpaStorage(JdbcTemplate jdbc) {
-        this.jdbc = jdbc;
+    public DbMpaStorage(ReferenceDataCache referenceData) {
+        this.referenceData = referenceData;
     }
 
     @Override
     public Mpa getMpa(int id) {
-        String getMpaQuery = "select * from RATING" +
-                " where id = ?";
-        List<Mpa> mpa = jdbc.query(getMpaQuery, new MpaMapper(), id);
-        if (mpa.isEmpty()) {
-            logger.warn("MPA с id {} не найдено в базе данных.", id);
-            throw new NotFoundException("MPA с id " + id + " не найдено в базе данных.");
-        }
-        return mpa.getFirst();
+        return referenceData.findMpa(id)
+                .orElseThrow(() -> {
+                    logger.warn("MPA с id {} не найдено в базе данных.", id);
+                    return new NotFoundException("MPA с id " + id + " не найдено в базе данных.");
+                });
     }
 
     @Override
     public List<Mpa> getMpaList() {
-        String getMpaQuery = "select * from RATING";
-        List<Mpa> mpa = jdbc.query(getMpaQuery, new MpaMapper());
+        List<Mpa> mpa = referenceData.getMpaList();
         if (mpa.isEmpty()) {
             logger.warn("Список MPA пуст");
             throw new NotFoundException("Список MPA пуст");
@@ -1,35 +1,72 @@
 package ru.yandex.practicum.filmorate.storage.dao;
 
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exception.DatabaseValidationException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.FriendWithMutualCount;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.BloomFilter;
+import ru.yandex.practicum.filmorate.storage.FriendshipGraph;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 import ru.yandex.practicum.filmorate.storage.dao.mapper.UserMapper;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Repository
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "db", matchIfMissing = true)
 @Primary
 public class DbUserStorage implements UserStorage {
     private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final Object[] friendsLocks = new Object[FRIENDS_LOCK_STRIPES];
+    private volatile FriendshipGraph friendshipGraph = new FriendshipGraph();
+    private volatile BloomFilter loginFilter = new BloomFilter(AVAILABILITY_FILTER_MIN_CAPACITY, AVAILABILITY_FILTER_FPP);
+    private volatile BloomFilter emailFilter = new BloomFilter(AVAILABILITY_FILTER_MIN_CAPACITY, AVAILABILITY_FILTER_FPP);
+    private static final int FRIENDS_BATCH_SIZE = 1000;
+    private static final int FRIENDS_LOCK_STRIPES = 64;
+    private static final int GRAPH_FETCH_SIZE = 1000;
+    private static final int AVAILABILITY_FILTER_MIN_CAPACITY = 10_000;
+    private static final double AVAILABILITY_FILTER_FPP = 0.01;
     private static final Logger logger = LoggerFactory.getLogger(DbUserStorage.class);
 
     @Autowired
-    public DbUserStorage(final JdbcTemplate jdbc) {
+    public DbUserStorage(final JdbcTemplate jdbc, PlatformTransactionManager transactionManager) {
         this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < friendsLocks.length; i++) {
+            friendsLocks[i] = new Object();
+        }
     }
 
     @Override
+    @Transactional(readOnly = true)
     public User findUserById(int userId) {
         logger.info("Запрошена информация о пользователе с id={}", userId);
         String getUser = "select * from users where id = ? LIMIT 1";
@@ -44,18 +81,24 @@ public class DbUserStorage implements UserStorage {
     @Override
     public User addUser(User user) {
         logger.debug("Попытка добавления пользователя: {}", user);
+        rememberLoginAndEmail(user);
         String addUserQuery = "insert into users (name, email, birthday,login) values (?, ?, ?,?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
-        int affectedRows = jdbc.update(
-                con -> {
-                    PreparedStatement preparedStatement = con.prepareStatement(addUserQuery, new String[]{"id"});
-                    preparedStatement.setString(1, user.getName());
-                    preparedStatement.setString(2, user.getEmail());
-                    preparedStatement.setDate(3, Date.valueOf(user.getBirthday()));
-                    preparedStatement.setString(4, user.getLogin());
-                    return preparedStatement;
-                }, keyHolder
-        );
+        int affectedRows;
+        try {
+            affectedRows = jdbc.update(
+                    con -> {
+                        PreparedStatement preparedStatement = con.prepareStatement(addUserQuery, new String[]{"id"});
+                        preparedStatement.setString(1, user.getName());
+                        preparedStatement.setString(2, user.getEmail());
+                        preparedStatement.setDate(3, Date.valueOf(user.getBirthday()));
+                        preparedStatement.setString(4, user.getLogin());
+                        return preparedStatement;
+                    }, keyHolder
+            );
+        } catch (DuplicateKeyException e) {
+            throw loginOrEmailTaken(user);
+        }
         if (affectedRows == 0) {
             logger.warn("При создании пользователя обновлено ноль строк, вероятно вставка не удалась");
         }
@@ -64,29 +107,108 @@ public class DbUserStorage implements UserStorage {
         return user;
     }
 
+    @Override
+    public List<Integer> addUsers(List<User> users) {
+        logger.debug("Попытка пакетного добавления {} пользователей", users.size());
+        users.forEach(this::rememberLoginAndEmail);
+        String addUserQuery = "insert into users (name, email, birthday, login) values (?, ?, ?, ?)";
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        transactionTemplate.executeWithoutResult(status ->
+                jdbc.batchUpdate(con -> con.prepareStatement(addUserQuery, new String[]{"id"}),
+                        new BatchPreparedStatementSetter() {
+                            @Override
+                            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                                User user = users.get(i);
+                                ps.setString(1, user.getName());
+                                ps.setString(2, user.getEmail());
+                                ps.setDate(3, user.getBirthday() == null ? null : Date.valueOf(user.getBirthday()));
+                                ps.setString(4, user.getLogin());
+                            }
+
+                            @Override
+                            public int getBatchSize() {
+                                return users.size();
+                            }
+                        }, keyHolder));
+        List<Map<String, Object>> generatedKeys = keyHolder.getKeyList();
+        List<Integer> userIds = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            int userId = ((Number) generatedKeys.get(i).values().iterator().next()).intValue();
+            users.get(i).setId(userId);
+            userIds.add(userId);
+        }
+        logger.info("Пакетно добавлено {} пользователей", userIds.size());
+        return userIds;
+    }
+
     @Override
     public User updateUser(User user) {
         User userForUpdate = findUserById(user.getId());
+        rememberLoginAndEmail(user);
         String updateUserQuery = "update users set name = ?, email = ?, birthday = ?, login = ? where id = ?";
-        jdbc.update(updateUserQuery, user.getName(), user.getEmail(), user.getBirthday(), user.getLogin(), user.getId());
+        try {
+            jdbc.update(updateUserQuery, user.getName(), user.getEmail(), user.getBirthday(), user.getLogin(),
+                    user.getId());
+        } catch (DuplicateKeyException e) {
+            throw loginOrEmailTaken(user);
+        }
         return findUserById(user.getId());
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<User> getUsersList() {
         String sql = "select * from users";
         return jdbc.query(sql, new UserMapper());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> getUsersPage(int afterId, int limit) {
+        logger.info("Получение страницы пользователей после id {}, размер страницы {}", afterId, limit);
+        String getUsersPageQuery = "select * from users where id > ? order by id limit ?";
+        return jdbc.query(getUsersPageQuery, new UserMapper(), afterId, limit);
+    }
+
+    /**
+     * Большинство свободных логинов отсекается фильтром Блума без запроса к базе,
+     * запрос по уникальному индексу выполняется только при вероятном совпадении.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public boolean isLoginTaken(String login) {
+        if (!loginFilter.mightContain(login)) {
+            return false;
+        }
+        return Boolean.TRUE.equals(jdbc.queryForObject(
+                "select exists(select 1 from users where login = ?)", Boolean.class, login));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean isEmailTaken(String email) {
+        if (!emailFilter.mightContain(email)) {
+            return false;
+        }
+        return Boolean.TRUE.equals(jdbc.queryForObject(
+                "select exists(select 1 from users where email = ?)", Boolean.class, email));
+    }
+
     @Override
     public void addFriend(int userId, int friendId) {
         if (userId == friendId) {
             throw new DatabaseValidationException("Невозможно добавить себя в качестве друга");
         }
-        User friend = findUserById(friendId);
-        User user = findUserById(userId);
-        String addFriendToUser = "insert into FRIENDS_LINK (USER_ID, FRIEND_ID) values (?, ?)";
-        jdbc.update(addFriendToUser, user.getId(), friend.getId());
+        String addFriendToUser = "merge into FRIENDS_LINK (USER_ID, FRIEND_ID) key (USER_ID, FRIEND_ID) values (?, ?)";
+        synchronized (friendsLock(userId)) {
+            try {
+                jdbc.update(addFriendToUser, userId, friendId);
+            } catch (DataIntegrityViolationException e) {
+                requireUsersExist(friendId, userId);
+                throw e;
+            }
+            TransactionHooks.afterCommit(() -> friendshipGraph.addFriend(userId, friendId));
+        }
     }
 
     @Override
@@ -94,13 +216,18 @@ public class DbUserStorage implements UserStorage {
         if (userId == friendId) {
             throw new DatabaseValidationException("Невозможно удалить себя из своих друзей");
         }
-        User friend = findUserById(friendId);
-        User user = findUserById(userId);
         String removeFriendFromUser = "delete from FRIENDS_LINK where USER_ID = ? and FRIEND_ID = ?";
-        jdbc.update(removeFriendFromUser, user.getId(), friend.getId());
+        synchronized (friendsLock(userId)) {
+            if (jdbc.update(removeFriendFromUser, userId, friendId) == 0) {
+                requireUsersExist(friendId, userId);
+                return;
+            }
+            TransactionHooks.afterCommit(() -> friendshipGraph.removeFriend(userId, friendId));
+        }
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<User> getFriendsList(int curUserId) {
         User curUser = findUserById(curUserId);
         String getFriendsListQuery = "select * from users u " +
@@ -109,16 +236,180 @@ public class DbUserStorage implements UserStorage {
         return jdbc.query(getFriendsListQuery, new UserMapper(), curUserId);
     }
 
+    /**
+     * Друзья и число общих друзей с каждым читаются одним запросом, чтобы список и счётчики
+     * были согласованы между собой; общие друзья считаются по первичному ключу friends_link.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<FriendWithMutualCount> getFriendsWithMutualCounts(int userId) {
+        logger.info("Запрошен список друзей пользователя {} с числом общих друзей", userId);
+        findUserById(userId);
+        String getFriendsQuery = "select u.*, (select count(*) from friends_link theirs " +
+                "join friends_link mine on mine.user_id = fl.user_id and mine.friend_id = theirs.friend_id " +
+                "where theirs.user_id = fl.friend_id) as mutual_friends " +
+                "from friends_link fl " +
+                "join users u on u.id = fl.friend_id " +
+                "where fl.user_id = ? order by u.id";
+        UserMapper userMapper = new UserMapper();
+        return jdbc.query(getFriendsQuery, (rs, rowNum) ->
+                new FriendWithMutualCount(userMapper.mapRow(rs, rowNum), rs.getInt("mutual_friends")), userId);
+    }
+
+    /**
+     * Загружает связи дружбы одним запросом. Пользователь, который в друзьях у многих, создаётся один раз.
+     * Для больших наборов id список IN заменяется полным проходом по friends_link.
+     */
     @Override
+    @Transactional(readOnly = true)
+    public Map<Integer, List<User>> getFriendsLists(Collection<Integer> userIds) {
+        logger.info("Запрошены списки друзей {} пользователей", userIds.size());
+        Map<Integer, List<User>> friendsByUserId = new HashMap<>();
+        userIds.forEach(userId -> friendsByUserId.put(userId, new ArrayList<>()));
+        if (friendsByUserId.isEmpty()) {
+            return friendsByUserId;
+        }
+        UserMapper userMapper = new UserMapper();
+        Map<Integer, User> friendsById = new HashMap<>();
+        RowCallbackHandler friendHandler = rs -> {
+            List<User> friends = friendsByUserId.get(rs.getInt("owner_id"));
+            if (friends == null) {
+                return;
+            }
+            User friend = friendsById.get(rs.getInt("id"));
+            if (friend == null) {
+                friend = userMapper.mapRow(rs, rs.getRow());
+                friendsById.put(friend.getId(), friend);
+            }
+            friends.add(friend);
+        };
+        String getFriendsQuery = "select fl.user_id as owner_id, u.* from friends_link fl " +
+                "join users u on u.id = fl.friend_id ";
+        String orderBy = "order by fl.user_id, u.id";
+        if (friendsByUserId.size() > FRIENDS_BATCH_SIZE) {
+            jdbc.query(getFriendsQuery + orderBy, friendHandler);
+            return friendsByUserId;
+        }
+        List<Integer> ids = new ArrayList<>(friendsByUserId.keySet());
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbc.query(getFriendsQuery + "where fl.user_id in (" + placeholders + ") " + orderBy,
+                friendHandler, ids.toArray());
+        return friendsByUserId;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<User> getFriendsIntersect(int firstUserId, int secondUserId) {
-        User firstUser = findUserById(firstUserId);
-        User secondUser = findUserById(secondUserId);
-        String findFriendsIntersectQuery = "SELECT DISTINCT u.* " +
-                "FROM USERS u " +
-                "         JOIN FRIENDS_LINK fl ON u.ID = fl.FRIEND_ID " +
-                "WHERE fl.USER_ID IN (?, ?) " +
-                "GROUP BY u.ID " +
-                "HAVING COUNT(DISTINCT fl.USER_ID) = 2;";
-        return jdbc.query(findFriendsIntersectQuery, new UserMapper(), firstUserId, secondUserId);
+        requireUsersExist(firstUserId, secondUserId);
+        int[] commonFriendIds = friendshipGraph.commonFriends(firstUserId, secondUserId);
+        if (commonFriendIds.length == 0) {
+            return List.of();
+        }
+        String placeholders = String.join(",", Collections.nCopies(commonFriendIds.length, "?"));
+        String findUsersQuery = "select * from users where id in (" + placeholders + ") order by id";
+        return jdbc.query(findUsersQuery, new UserMapper(), Arrays.stream(commonFriendIds).boxed().toArray());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FriendSuggestion> getFriendSuggestions(int userId, int limit) {
+        logger.info("Запрошены рекомендации друзей для пользователя {}, не больше {}", userId, limit);
+        findUserById(userId);
+        FriendshipGraph.SuggestedFriends suggested = friendshipGraph.suggestFriends(userId, limit);
+        int[] suggestedIds = suggested.userIds();
+        if (suggestedIds.length == 0) {
+            return List.of();
+        }
+        String placeholders = String.join(",", Collections.nCopies(suggestedIds.length, "?"));
+        String findUsersQuery = "select * from users where id in (" + placeholders + ")";
+        Map<Integer, User> usersById = new HashMap<>();
+        jdbc.query(findUsersQuery, new UserMapper(), Arrays.stream(suggestedIds).boxed().toArray())
+                .forEach(user -> usersById.put(user.getId(), user));
+        List<FriendSuggestion> suggestions = new ArrayList<>(suggestedIds.length);
+        for (int i = 0; i < suggestedIds.length; i++) {
+            User user = usersById.get(suggestedIds[i]);
+            if (user != null) {
+                suggestions.add(new FriendSuggestion(user, suggested.mutualFriends()[i]));
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Граф строится один раз при старте по всей таблице friends_link, дальше поддерживается
+     * добавлением и удалением друзей.
+     */
+    @PostConstruct
+    void loadFriendshipGraph() {
+        FriendshipGraph.Builder builder = new FriendshipGraph.Builder();
+        jdbc.query(con -> {
+            PreparedStatement statement = con.prepareStatement(
+                    "select user_id, friend_id from friends_link order by user_id, friend_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(GRAPH_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> builder.add(rs.getInt("user_id"), rs.getInt("friend_id")));
+        friendshipGraph = builder.build();
+        logger.info("Граф дружбы загружен: связей {}", friendshipGraph.getEdgeCount());
+    }
+
+    /**
+     * Фильтры логинов и email заполняются при старте по всей таблице users с запасом ёмкости вдвое.
+     */
+    @PostConstruct
+    void loadAvailabilityFilters() {
+        Long usersCount = jdbc.queryForObject("select count(*) from users", Long.class);
+        long capacity = Math.max(AVAILABILITY_FILTER_MIN_CAPACITY, 2 * (usersCount == null ? 0 : usersCount));
+        BloomFilter logins = new BloomFilter(capacity, AVAILABILITY_FILTER_FPP);
+        BloomFilter emails = new BloomFilter(capacity, AVAILABILITY_FILTER_FPP);
+        jdbc.query(con -> {
+            PreparedStatement statement = con.prepareStatement("select login, email from users",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(GRAPH_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            logins.put(rs.getString("login"));
+            emails.put(rs.getString("email"));
+        });
+        loginFilter = logins;
+        emailFilter = emails;
+        logger.info("Фильтры занятых логинов и email загружены: пользователей {}, {} байт",
+                usersCount, logins.estimateMemoryBytes() + emails.estimateMemoryBytes());
+    }
+
+    // Значения попадают в фильтр до записи в базу: лишний элемент даёт только ложное срабатывание,
+    // а пропущенный сделал бы занятый логин свободным
+    private void rememberLoginAndEmail(User user) {
+        if (user.getLogin() != null) {
+            loginFilter.put(user.getLogin());
+        }
+        if (user.getEmail() != null) {
+            emailFilter.put(user.getEmail());
+        }
+    }
+
+    /**
+     * Проверка выполняется только когда запись не удалась или ничего не изменила,
+     * поэтому успешное добавление и удаление друга обходятся одним запросом.
+     */
+    private void requireUsersExist(int firstUserId, int secondUserId) {
+        String findExistingUsersQuery = "select id from users where id in (?, ?)";
+        List<Integer> existingIds = jdbc.queryForList(findExistingUsersQuery, Integer.class, firstUserId, secondUserId);
+        for (int id : List.of(firstUserId, secondUserId)) {
+            if (!existingIds.contains(id)) {
+                logger.warn("Пользователь с id = {} не найден", id);
+                throw new NotFoundException("Пользователь с id = " + id + " не найден");
+            }
+        }
+    }
+
+    // Уникальны в users только login и email, поэтому нарушение ключа при записи пользователя означает занятое значение
+    private DatabaseValidationException loginOrEmailTaken(User user) {
+        logger.warn("Логин {} или email {} уже занят другим пользователем", user.getLogin(), user.getEmail());
+        return new DatabaseValidationException("Логин или email уже занят другим пользователем");
+    }
+
+    private Object friendsLock(int userId) {
+        return friendsLocks[Math.floorMod(userId, FRIENDS_LOCK_STRIPES)];
     }
 }
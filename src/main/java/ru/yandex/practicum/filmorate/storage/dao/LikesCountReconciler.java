@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Периодически пересчитывает film.likes_count по таблице likes и исправляет расхождения.
+ * Каждый фильм пересчитывается в своей транзакции под блокировкой строки film: запись лайка меняет
+ * счётчик в той же транзакции, поэтому пересчёт либо видит её зафиксированной, либо она прибавит
+ * своё изменение уже к исправленному значению.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "db", matchIfMissing = true)
+public class LikesCountReconciler {
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private static final Logger logger = LoggerFactory.getLogger(LikesCountReconciler.class);
+
+    @Autowired
+    public LikesCountReconciler(JdbcTemplate jdbc, PlatformTransactionManager transactionManager) {
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes-count.reconcile-interval:PT1H}",
+            initialDelayString = "${filmorate.likes-count.reconcile-interval:PT1H}")
+    public int reconcile() {
+        logger.debug("Сверка счётчиков лайков с таблицей likes");
+        String driftedFilmsQuery = "SELECT f.id FROM film f " +
+                "WHERE f.likes_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)";
+        List<Integer> driftedFilms = jdbc.queryForList(driftedFilmsQuery, Integer.class);
+        int fixedFilms = 0;
+        for (int filmId : driftedFilms) {
+            fixedFilms += reconcileFilm(filmId);
+        }
+        if (fixedFilms > 0) {
+            logger.warn("Исправлены счётчики лайков у {} фильмов", fixedFilms);
+        }
+        return fixedFilms;
+    }
+
+    // Подсчёт идёт отдельным запросом после блокировки, поэтому учитывает все лайки, зафиксированные до неё
+    private int reconcileFilm(int filmId) {
+        String lockFilmQuery = "SELECT id FROM film WHERE id = ? FOR UPDATE";
+        String fixLikesCountQuery = "UPDATE film f " +
+                "SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id) " +
+                "WHERE f.id = ? " +
+                "AND f.likes_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)";
+        Integer fixedRows = transactionTemplate.execute(status -> {
+            if (jdbc.queryForList(lockFilmQuery, Integer.class, filmId).isEmpty()) {
+                return 0;
+            }
+            return jdbc.update(fixLikesCountQuery, filmId);
+        });
+        return fixedRows == null ? 0 : fixedRows;
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.dao.mapper.GenreMapper;
+import ru.yandex.practicum.filmorate.storage.dao.mapper.MpaMapper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Неизменяемый снимок справочников жанров и рейтингов MPA.
+ * Справочники заполняются миграцией V2__reference_data.sql и практически не меняются, поэтому читаются из базы
+ * один раз при первом обращении и далее только по явному вызову {@link #refresh()}.
+ * Жанры и рейтинги изменяемые, поэтому наружу отдаются копии, а снимок остаётся общим.
+ */
+@Component
+public class ReferenceDataCache implements MeterBinder {
+    private final JdbcTemplate jdbc;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private volatile Snapshot currentSnapshot;
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceDataCache.class);
+
+    @Autowired
+    public ReferenceDataCache(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    public Optional<Genre> findGenre(int genreId) {
+        return lookup(snapshot().genresById().get(genreId)).map(ReferenceDataCache::copyOf);
+    }
+
+    public Optional<Mpa> findMpa(int mpaId) {
+        return lookup(snapshot().mpaById().get(mpaId)).map(ReferenceDataCache::copyOf);
+    }
+
+    public List<Genre> getGenres() {
+        hits.increment();
+        return snapshot().genres().stream().map(ReferenceDataCache::copyOf).toList();
+    }
+
+    public List<Mpa> getMpaList() {
+        hits.increment();
+        return snapshot().mpaList().stream().map(ReferenceDataCache::copyOf).toList();
+    }
+
+    public synchronized void refresh() {
+        List<Genre> genres = List.copyOf(jdbc.query("SELECT * FROM genre ORDER BY id", new GenreMapper()));
+        List<Mpa> mpaList = List.copyOf(jdbc.query("SELECT * FROM rating ORDER BY id", new MpaMapper()));
+        currentSnapshot = new Snapshot(
+                genres,
+                genres.stream().collect(Collectors.toUnmodifiableMap(Genre::getId, Function.identity())),
+                mpaList,
+                mpaList.stream().collect(Collectors.toUnmodifiableMap(Mpa::getId, Function.identity())));
+        refreshes.increment();
+        logger.info("Справочники загружены: жанров {}, рейтингов MPA {}", genres.size(), mpaList.size());
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.reference.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("filmorate.reference.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("filmorate.reference.cache.refreshes", refreshes, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("filmorate.reference.cache.size", this, cache -> cache.snapshot().genres().size())
+                .tag("table", "genre")
+                .register(registry);
+        Gauge.builder("filmorate.reference.cache.size", this, cache -> cache.snapshot().mpaList().size())
+                .tag("table", "rating")
+                .register(registry);
+    }
+
+    private <T> Optional<T> lookup(T value) {
+        if (Objects.isNull(value)) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return Optional.ofNullable(value);
+    }
+
+    private static Genre copyOf(Genre genre) {
+        Genre copy = new Genre();
+        copy.setId(genre.getId());
+        copy.setName(genre.getName());
+        return copy;
+    }
+
+    private static Mpa copyOf(Mpa mpa) {
+        Mpa copy = new Mpa();
+        copy.setId(mpa.getId());
+        copy.setName(mpa.getName());
+        return copy;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot snapshot = currentSnapshot;
+        if (Objects.isNull(snapshot)) {
+            synchronized (this) {
+                if (Objects.isNull(currentSnapshot)) {
+                    refresh();
+                }
+                snapshot = currentSnapshot;
+            }
+        }
+        return snapshot;
+    }
+
+    private record Snapshot(List<Genre> genres, Map<Integer, Genre> genresById,
+                            List<Mpa> mpaList, Map<Integer, Mpa> mpaById) {
+    }
+}
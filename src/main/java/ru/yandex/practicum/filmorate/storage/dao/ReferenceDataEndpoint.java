@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Статистика кэша справочников и его перечитывание: GET и POST /actuator/referencedata.
+ */
+@Component
+@Endpoint(id = "referencedata")
+public class ReferenceDataEndpoint {
+    private final ReferenceDataCache referenceDataCache;
+
+    @Autowired
+    public ReferenceDataEndpoint(ReferenceDataCache referenceDataCache) {
+        this.referenceDataCache = referenceDataCache;
+    }
+
+    @ReadOperation
+    public Map<String, Long> stats() {
+        return Map.of(
+                "hits", referenceDataCache.getHitCount(),
+                "misses", referenceDataCache.getMissCount());
+    }
+
+    @WriteOperation
+    public void refresh() {
+        referenceDataCache.refresh();
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.storage.dao;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Связывает изменения индексов в памяти с транзакцией, в которой меняется база.
+ */
+final class TransactionHooks {
+    private TransactionHooks() {
+    }
+
+    /**
+     * Изменение становится видно другим запросам только после фиксации транзакции. Вне транзакции
+     * запись в базу уже зафиксирована, и изменение применяется сразу.
+     */
+    static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.storage.dao.instrumentation;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * DataSource, который замеряет каждое выполнение запроса: время execute*, форму запроса и число строк.
+ * Для SELECT строки считаются по мере чтения ResultSet и передаются в {@link JdbcMetrics} при его закрытии,
+ * для изменений — по числу затронутых строк. Закрытие передаётся обёрнутому DataSource, чтобы контекст
+ * при остановке закрыл пул соединений.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource implements Closeable {
+    private final JdbcMetrics metrics;
+
+    public InstrumentedDataSource(DataSource targetDataSource, JdbcMetrics metrics) {
+        super(targetDataSource);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(super.getConnection(username, password));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (getTargetDataSource() instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement && method.getReturnType().isInterface()) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                        return wrapStatement(statement, method.getReturnType(), sql);
+                    }
+                    return result;
+                });
+    }
+
+    private Object wrapStatement(Statement statement, Class<?> statementType, String preparedSql) {
+        String[] batchSql = new String[1];
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{statementType},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("addBatch") && args != null && batchSql[0] == null) {
+                        batchSql[0] = (String) args[0];
+                    }
+                    if (name.equals("getResultSet")) {
+                        ResultSet resultSet = (ResultSet) invoke(statement, method, args);
+                        return resultSet == null ? null
+                                : wrapResultSet(resultSet, StatementShapes.of(sqlOf(preparedSql, batchSql[0], args)));
+                    }
+                    if (!name.startsWith("execute")) {
+                        return invoke(statement, method, args);
+                    }
+                    String shape = StatementShapes.of(sqlOf(preparedSql, batchSql[0], args));
+                    long startedAt = System.nanoTime();
+                    Object result = invoke(statement, method, args);
+                    metrics.recordStatement(shape, System.nanoTime() - startedAt);
+                    if (name.equals("executeBatch")) {
+                        batchSql[0] = null;
+                    }
+                    if (result instanceof ResultSet resultSet) {
+                        return wrapResultSet(resultSet, shape);
+                    }
+                    long rows = affectedRows(result);
+                    if (rows >= 0) {
+                        metrics.recordRows(shape, rows);
+                    }
+                    return result;
+                });
+    }
+
+    private ResultSet wrapResultSet(ResultSet resultSet, String shape) {
+        long[] rows = new long[1];
+        boolean[] recorded = new boolean[1];
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(resultSet, method, args);
+                    if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                        rows[0]++;
+                    } else if (method.getName().equals("close") && !recorded[0]) {
+                        recorded[0] = true;
+                        metrics.recordRows(shape, rows[0]);
+                    }
+                    return result;
+                });
+    }
+
+    private static String sqlOf(String preparedSql, String batchSql, Object[] args) {
+        if (preparedSql != null) {
+            return preparedSql;
+        }
+        if (args != null && args.length > 0 && args[0] instanceof String sql) {
+            return sql;
+        }
+        return batchSql;
+    }
+
+    // Число затронутых строк для executeUpdate/executeBatch; -1, если execute вернул не счётчик
+    private static long affectedRows(Object result) {
+        if (result instanceof Integer count) {
+            return Math.max(count, 0);
+        }
+        if (result instanceof Long count) {
+            return Math.max(count, 0);
+        }
+        long total = 0;
+        if (result instanceof int[] counts) {
+            for (int count : counts) {
+                total += Math.max(count, 0);
+            }
+            return total;
+        }
+        if (result instanceof long[] counts) {
+            for (long count : counts) {
+                total += Math.max(count, 0);
+            }
+            return total;
+        }
+        return -1;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.storage.dao.instrumentation;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Оборачивает DataSource в {@link InstrumentedDataSource}, так что замеряются все запросы хранилищ
+ * без изменений в их коде.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.jdbc.instrumentation.enabled", havingValue = "true", matchIfMissing = true)
+public class InstrumentedDataSourcePostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<JdbcMetrics> metrics;
+
+    @Autowired
+    public InstrumentedDataSourcePostProcessor(ObjectProvider<JdbcMetrics> metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof InstrumentedDataSource)) {
+            return new InstrumentedDataSource(dataSource, metrics.getObject());
+        }
+        return bean;
+    }
+}
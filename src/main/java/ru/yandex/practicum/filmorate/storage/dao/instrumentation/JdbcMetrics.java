@@ -0,0 +1,152 @@
+package ru.yandex.practicum.filmorate.storage.dao.instrumentation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики запросов к базе: время и число строк по форме запроса, число запросов
+ * на один HTTP-запрос и счётчик N+1 — HTTP-запросов, в которых одна форма выполнилась больше
+ * n-plus-one-threshold раз. Пока реестр метрик не подключён (например, во время миграций),
+ * считается только статистика текущего HTTP-запроса. Таймер формы запроса по умолчанию публикует только
+ * число, сумму и максимум: гистограмма на каждую из max-statement-shapes форм дала бы десятки тысяч рядов.
+ * Её можно включить через management.metrics.distribution.percentiles-histogram.filmorate.jdbc.statements.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.jdbc.instrumentation.enabled", havingValue = "true", matchIfMissing = true)
+public class JdbcMetrics implements MeterBinder {
+    static final String OTHER_SHAPE = "other";
+
+    private final int nPlusOneThreshold;
+    private final int maxShapes;
+    private final Set<String> shapes = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<RequestStatements> currentRequest = new ThreadLocal<>();
+    private volatile MeterRegistry registry;
+    private static final Logger logger = LoggerFactory.getLogger(JdbcMetrics.class);
+
+    @Autowired
+    public JdbcMetrics(@Value("${filmorate.jdbc.instrumentation.n-plus-one-threshold:10}") int nPlusOneThreshold,
+                       @Value("${filmorate.jdbc.instrumentation.max-statement-shapes:200}") int maxShapes) {
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.maxShapes = maxShapes;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void recordStatement(String shape, long nanos) {
+        String tag = shapeTag(shape);
+        RequestStatements request = currentRequest.get();
+        if (request != null) {
+            request.add(shape);
+        }
+        MeterRegistry meters = registry;
+        if (meters != null) {
+            Timer.builder("filmorate.jdbc.statements")
+                    .tag("statement", tag)
+                    .register(meters)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordRows(String shape, long rows) {
+        MeterRegistry meters = registry;
+        if (meters != null) {
+            DistributionSummary.builder("filmorate.jdbc.rows")
+                    .tag("statement", shapeTag(shape))
+                    .register(meters)
+                    .record(rows);
+        }
+    }
+
+    /**
+     * Начинает учёт запросов к базе, выполненных в текущем потоке в рамках одного HTTP-запроса.
+     */
+    public void beginRequest() {
+        currentRequest.set(new RequestStatements());
+    }
+
+    /**
+     * Завершает учёт, публикует число запросов к базе и возвращает форму, повторенную больше порога,
+     * или null, если N+1 не найден.
+     */
+    public String endRequest(String method, String uri) {
+        RequestStatements request = currentRequest.get();
+        currentRequest.remove();
+        if (request == null) {
+            return null;
+        }
+        MeterRegistry meters = registry;
+        if (meters != null) {
+            DistributionSummary.builder("filmorate.jdbc.request.statements")
+                    .tag("method", method)
+                    .tag("uri", uri)
+                    .publishPercentileHistogram()
+                    .register(meters)
+                    .record(request.total);
+        }
+        Map.Entry<String, Integer> repeated = request.mostRepeated();
+        if (repeated == null || repeated.getValue() <= nPlusOneThreshold) {
+            return null;
+        }
+        logger.warn("Возможный N+1: {} {} выполнил один и тот же запрос {} раз из {}: {}", method, uri,
+                repeated.getValue(), request.total, repeated.getKey());
+        if (meters != null) {
+            Counter.builder("filmorate.jdbc.n-plus-one")
+                    .tag("method", method)
+                    .tag("uri", uri)
+                    .tag("statement", shapeTag(repeated.getKey()))
+                    .register(meters)
+                    .increment();
+        }
+        return repeated.getKey();
+    }
+
+    // Формы без литералов конечны, но на случай динамического SQL число тегов ограничено
+    private String shapeTag(String shape) {
+        if (shapes.contains(shape)) {
+            return shape;
+        }
+        if (shapes.size() >= maxShapes) {
+            return OTHER_SHAPE;
+        }
+        shapes.add(shape);
+        return shape;
+    }
+
+    private static final class RequestStatements {
+        private final Map<String, Integer> counts = new HashMap<>();
+        private int total;
+
+        void add(String shape) {
+            counts.merge(shape, 1, Integer::sum);
+            total++;
+        }
+
+        Map.Entry<String, Integer> mostRepeated() {
+            Map.Entry<String, Integer> max = null;
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                if (max == null || entry.getValue() > max.getValue()) {
+                    max = entry;
+                }
+            }
+            return max;
+        }
+    }
+}
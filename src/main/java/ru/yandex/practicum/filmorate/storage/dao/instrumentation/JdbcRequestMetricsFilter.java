@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.storage.dao.instrumentation;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Границы HTTP-запроса для {@link JdbcMetrics}. URI в тегах — шаблон обработчика ({@code /films/{id}}),
+ * а не фактический путь, чтобы число серий не росло с числом id.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.jdbc.instrumentation.enabled", havingValue = "true", matchIfMissing = true)
+public class JdbcRequestMetricsFilter extends OncePerRequestFilter {
+    private final JdbcMetrics metrics;
+
+    @Autowired
+    public JdbcRequestMetricsFilter(JdbcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        metrics.beginRequest();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            metrics.endRequest(request.getMethod(), pattern == null ? "UNKNOWN" : pattern.toString());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage.dao.instrumentation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Приводит SQL к «форме» запроса: литералы заменяются на ?, списки IN и многострочные VALUES
+ * сворачиваются до одного элемента, пробелы схлопываются. Запросы, отличающиеся только параметрами,
+ * получают одну форму — по ней строятся метрики и ищутся повторы N+1.
+ */
+public final class StatementShapes {
+    private static final int MAX_SHAPE_LENGTH = 300;
+    private static final int MAX_CACHED_STATEMENTS = 1_000;
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern VALUES_ROWS =
+            Pattern.compile("(\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\))(?:\\s*,\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\))+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Map<String, String> cache = new ConcurrentHashMap<>();
+
+    private StatementShapes() {
+    }
+
+    public static String of(String sql) {
+        if (sql == null) {
+            return "unknown";
+        }
+        String shape = cache.get(sql);
+        if (shape == null) {
+            shape = normalize(sql);
+            if (cache.size() < MAX_CACHED_STATEMENTS) {
+                cache.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    static String normalize(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = WHITESPACE.matcher(shape).replaceAll(" ").trim();
+        shape = IN_LIST.matcher(shape).replaceAll("IN (?)");
+        shape = VALUES_ROWS.matcher(shape).replaceAll("$1");
+        return shape.length() > MAX_SHAPE_LENGTH ? shape.substring(0, MAX_SHAPE_LENGTH) + "…" : shape;
+    }
+}
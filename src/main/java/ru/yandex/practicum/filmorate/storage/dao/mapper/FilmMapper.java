@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.storage.dao.mapper;
 import org.springframework.jdbc.core.RowMapper;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.dao.ReferenceDataCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -10,13 +11,17 @@ import java.util.HashSet;
 
 
 public class FilmMapper implements RowMapper<Film> {
+    private final ReferenceDataCache referenceData;
+
+    public FilmMapper(ReferenceDataCache referenceData) {
+        this.referenceData = referenceData;
+    }
 
     @Override
     public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
         Film film = new Film();
-        Mpa mpa = new Mpa();
-        mpa.setId(rs.getInt("mpa_id"));
-        mpa.setName(rs.getString("mpa_name"));
+        int mpaId = rs.getInt("rating_id");
+        Mpa mpa = rs.wasNull() ? new Mpa() : referenceData.findMpa(mpaId).orElseGet(() -> unknownMpa(mpaId));
         film.setId(rs.getInt("id"));
         film.setName(rs.getString("name"));
         film.setReleaseDate(rs.getDate("release_date").toLocalDate());
@@ -24,6 +29,13 @@ public class FilmMapper implements RowMapper<Film> {
         film.setMpa(mpa);
         film.setDescription(rs.getString("description"));
         film.setGenres(new HashSet<>());
+        film.restoreLikesCount(rs.getInt("likes_count"));
         return film;
     }
+
+    private static Mpa unknownMpa(int mpaId) {
+        Mpa mpa = new Mpa();
+        mpa.setId(mpaId);
+        return mpa;
+    }
 }
@@ -5,6 +5,7 @@ import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
 
 public class UserMapper implements RowMapper<User> {
 
@@ -14,7 +15,7 @@ public class UserMapper implements RowMapper<User> {
         user.setId(rs.getInt("id"));
         user.setName(rs.getString("name"));
         user.setEmail(rs.getString("email"));
-        user.setBirthday(rs.getDate("birthday").toLocalDate());
+        user.setBirthday(rs.getObject("birthday", LocalDate.class));
         user.setLogin(rs.getString("login"));
         return user;
     }
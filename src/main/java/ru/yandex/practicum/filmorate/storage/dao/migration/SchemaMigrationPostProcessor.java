@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.storage.dao.migration;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Применяет миграции сразу после создания DataSource, до того как его получит любой другой бин,
+ * поэтому хранилищам не нужно ждать инициализации схемы.
+ */
+@Component
+public class SchemaMigrationPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource) {
+            new SchemaMigrator(dataSource, SchemaMigrator.DEFAULT_LOCATION).migrate();
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,160 @@
+package ru.yandex.practicum.filmorate.storage.dao.migration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Версионные миграции схемы: скрипты {@code V<версия>__<описание>.sql} применяются по возрастанию версии,
+ * каждая ровно один раз. Применённые версии с контрольной суммой скрипта записываются в schema_history.
+ * Если база уже на последней версии, скрипты не выполняются. Изменение уже применённого скрипта
+ * останавливает запуск: такую правку нужно оформлять новой миграцией.
+ * H2 фиксирует транзакцию на каждом DDL, поэтому при сбое посреди скрипта часть изменений может остаться —
+ * скрипты по возможности пишутся с IF NOT EXISTS.
+ */
+public class SchemaMigrator {
+    public static final String DEFAULT_LOCATION = "classpath:db/migration/V*__*.sql";
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+
+    private final DataSource dataSource;
+    private final String location;
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    public SchemaMigrator(DataSource dataSource, String location) {
+        this.dataSource = dataSource;
+        this.location = location;
+    }
+
+    /**
+     * @return число применённых миграций
+     */
+    public int migrate() {
+        List<Migration> migrations = findMigrations();
+        try (Connection connection = dataSource.getConnection()) {
+            createHistoryTable(connection);
+            Map<Integer, Integer> appliedChecksums = appliedChecksums(connection);
+            int applied = 0;
+            for (Migration migration : migrations) {
+                Integer appliedChecksum = appliedChecksums.get(migration.version());
+                if (appliedChecksum == null) {
+                    apply(connection, migration);
+                    applied++;
+                } else if (appliedChecksum != migration.checksum()) {
+                    throw new IllegalStateException("Миграция V" + migration.version()
+                            + " изменена после применения: правки схемы оформляются новой миграцией");
+                }
+            }
+            int headVersion = migrations.isEmpty() ? 0 : migrations.getLast().version();
+            if (applied == 0) {
+                logger.info("Схема базы актуальна, версия {}", headVersion);
+            } else {
+                logger.info("Применено миграций: {}, версия схемы {}", applied, headVersion);
+            }
+            return applied;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось применить миграции схемы", e);
+        }
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        long startedAt = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            ScriptUtils.executeSqlScript(connection, new EncodedResource(migration.script(), StandardCharsets.UTF_8));
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO schema_history (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)")) {
+                statement.setInt(1, migration.version());
+                statement.setString(2, migration.description());
+                statement.setInt(3, migration.checksum());
+                statement.setLong(4, (System.nanoTime() - startedAt) / 1_000_000);
+                statement.executeUpdate();
+            }
+            connection.commit();
+        } catch (RuntimeException | SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        logger.info("Применена миграция V{} ({}) за {} мс", migration.version(), migration.description(),
+                (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    private static void createHistoryTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_history (" +
+                    "version INTEGER PRIMARY KEY, " +
+                    "description VARCHAR(200) NOT NULL, " +
+                    "checksum INTEGER NOT NULL, " +
+                    "installed_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL, " +
+                    "execution_ms BIGINT NOT NULL)");
+        }
+    }
+
+    private static Map<Integer, Integer> appliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, Integer> checksums = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT version, checksum FROM schema_history")) {
+            while (rs.next()) {
+                checksums.put(rs.getInt("version"), rs.getInt("checksum"));
+            }
+        }
+        return checksums;
+    }
+
+    private List<Migration> findMigrations() {
+        try {
+            List<Migration> migrations = new ArrayList<>();
+            for (Resource script : new PathMatchingResourcePatternResolver().getResources(location)) {
+                Matcher matcher = SCRIPT_NAME.matcher(script.getFilename());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                migrations.add(new Migration(Integer.parseInt(matcher.group(1)),
+                        matcher.group(2).replace('_', ' '), checksum(script), script));
+            }
+            migrations.sort(Comparator.comparingInt(Migration::version));
+            for (int i = 1; i < migrations.size(); i++) {
+                if (migrations.get(i).version() == migrations.get(i - 1).version()) {
+                    throw new IllegalStateException("Две миграции с версией V" + migrations.get(i).version());
+                }
+            }
+            return migrations;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать миграции из " + location, e);
+        }
+    }
+
+    // Переводы строк нормализуются, чтобы checkout с CRLF не менял контрольную сумму
+    private static int checksum(Resource script) throws IOException {
+        String content = script.getContentAsString(StandardCharsets.UTF_8).replace("\r\n", "\n");
+        CRC32 crc = new CRC32();
+        crc.update(content.getBytes(StandardCharsets.UTF_8));
+        return (int) crc.getValue();
+    }
+
+    private record Migration(int version, String description, int checksum, Resource script) {
+    }
+}
@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.storage.dao.routing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Простая репликация для локального запуска с двумя встроенными H2: по расписанию копирует все таблицы
+ * основной базы в реплику. Чтение идёт из одного снимка основной базы, запись в реплику — одной
+ * транзакцией, поэтому читатели реплики видят либо старое, либо новое согласованное состояние.
+ * Копируется всё целиком, так что годится только для небольших баз разработки и тестов.
+ */
+public class H2Replicator implements ReplicaWatermark {
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ReplicaReadPolicy policy;
+    private volatile Instant consistentAsOf;
+    private static final Logger logger = LoggerFactory.getLogger(H2Replicator.class);
+
+    public H2Replicator(ReplicaRoutingDataSource dataSource, ReplicaReadPolicy policy) {
+        this.primary = dataSource.getPrimary();
+        this.replica = dataSource.getReplica();
+        this.policy = policy;
+        new SchemaMigrator(replica, SchemaMigrator.DEFAULT_LOCATION).migrate();
+        try (Connection connection = replica.getConnection(); Statement statement = connection.createStatement()) {
+            // Порядок копирования таблиц не согласован с внешними ключами, а пишет в реплику только репликатор
+            statement.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось подготовить реплику", e);
+        }
+        policy.setWatermark(this);
+    }
+
+    @Override
+    public Instant consistentAsOf() {
+        return consistentAsOf;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.datasource.replica.replicator.interval:PT1S}")
+    public synchronized void sync() {
+        Instant startedAt = policy.now();
+        long copiedRows = 0;
+        try (Connection source = primary.getConnection(); Connection target = replica.getConnection()) {
+            source.setAutoCommit(false);
+            source.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            source.setReadOnly(true);
+            target.setAutoCommit(false);
+            try {
+                for (String table : tables(source)) {
+                    copiedRows += copyTable(source, target, table);
+                }
+                target.commit();
+            } catch (SQLException e) {
+                target.rollback();
+                throw e;
+            } finally {
+                source.rollback();
+            }
+        } catch (SQLException e) {
+            logger.warn("Не удалось синхронизировать реплику: {}", e.getMessage());
+            return;
+        }
+        consistentAsOf = startedAt;
+        logger.debug("Реплика синхронизирована за {} мс, строк {}",
+                policy.now().toEpochMilli() - startedAt.toEpochMilli(), copiedRows);
+    }
+
+    private static List<String> tables(Connection source) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Statement statement = source.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT table_name FROM information_schema.tables " +
+                     "WHERE table_schema = 'PUBLIC' AND table_type = 'BASE TABLE' " +
+                     "AND table_name <> 'SCHEMA_HISTORY' ORDER BY table_name")) {
+            while (rs.next()) {
+                tables.add(rs.getString(1));
+            }
+        }
+        return tables;
+    }
+
+    private static long copyTable(Connection source, Connection target, String table) throws SQLException {
+        String quotedTable = "\"" + table.replace("\"", "\"\"") + "\"";
+        try (Statement delete = target.createStatement()) {
+            delete.executeUpdate("DELETE FROM " + quotedTable);
+        }
+        long rows = 0;
+        try (Statement select = source.createStatement();
+             ResultSet rs = select.executeQuery("SELECT * FROM " + quotedTable)) {
+            int columns = rs.getMetaData().getColumnCount();
+            String insert = "INSERT INTO " + quotedTable + " VALUES (" + "?, ".repeat(columns - 1) + "?)";
+            try (PreparedStatement ps = target.prepareStatement(insert)) {
+                while (rs.next()) {
+                    for (int i = 1; i <= columns; i++) {
+                        ps.setObject(i, rs.getObject(i));
+                    }
+                    ps.addBatch();
+                    if (++rows % INSERT_BATCH_SIZE == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.storage.dao.routing;
+
+import java.time.Instant;
+
+/**
+ * Сведения о клиенте текущего HTTP-запроса, нужные для чтения своих записей: изменяет ли запрос данные
+ * и когда клиент в последний раз что-то записал. Вне HTTP-запроса контекста нет.
+ */
+public final class ReadYourWritesContext {
+    private static final ThreadLocal<ReadYourWritesContext> current = new ThreadLocal<>();
+
+    private final boolean mutating;
+    private final Instant lastWrite;
+
+    private ReadYourWritesContext(boolean mutating, Instant lastWrite) {
+        this.mutating = mutating;
+        this.lastWrite = lastWrite;
+    }
+
+    public static void begin(boolean mutating, Instant lastWrite) {
+        current.set(new ReadYourWritesContext(mutating, lastWrite));
+    }
+
+    public static void clear() {
+        current.remove();
+    }
+
+    static ReadYourWritesContext current() {
+        return current.get();
+    }
+
+    boolean isMutating() {
+        return mutating;
+    }
+
+    Instant getLastWrite() {
+        return lastWrite;
+    }
+}
@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.storage.dao.routing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Запоминает у клиента время его последней успешной записи в cookie, чтобы следующие чтения шли с основной базы,
+ * пока реплика её не получила. Время ставится после обработки запроса, то есть после фиксации записи,
+ * поэтому ответ изменяющего запроса буферизуется до установки cookie.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    public static final String LAST_WRITE_COOKIE = "filmorate-last-write";
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+    private final ReplicaReadPolicy policy;
+
+    public ReadYourWritesFilter(ReplicaReadPolicy policy) {
+        this.policy = policy;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean mutating = !SAFE_METHODS.contains(request.getMethod());
+        ReadYourWritesContext.begin(mutating, lastWrite(request));
+        try {
+            if (!mutating) {
+                chain.doFilter(request, response);
+                return;
+            }
+            ContentCachingResponseWrapper bufferedResponse = new ContentCachingResponseWrapper(response);
+            chain.doFilter(request, bufferedResponse);
+            if (bufferedResponse.getStatus() < HttpServletResponse.SC_BAD_REQUEST) {
+                Cookie cookie = new Cookie(LAST_WRITE_COOKIE, String.valueOf(policy.now().toEpochMilli()));
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                // Запись старше max-lag реплика уже получила, иначе чтения всё равно уйдут на основную базу
+                cookie.setMaxAge((int) policy.getMaxLag().toSeconds() + 1);
+                response.addCookie(cookie);
+            }
+            bufferedResponse.copyBodyToResponse();
+        } finally {
+            ReadYourWritesContext.clear();
+        }
+    }
+
+    private static Instant lastWrite(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, LAST_WRITE_COOKIE);
+        if (cookie == null) {
+            return null;
+        }
+        try {
+            return Instant.ofEpochMilli(Long.parseLong(cookie.getValue()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.storage.dao.routing;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Решает, куда направить соединение. На реплику идут только чтения в транзакции readOnly вне изменяющего
+ * HTTP-запроса, и только если реплика отстаёт не больше max-lag и уже содержит последнюю запись клиента.
+ * Если отставание реплики не измеряется, считается, что оно не больше max-lag: после записи клиент читает
+ * с основной базы в течение max-lag.
+ */
+public class ReplicaReadPolicy implements MeterBinder {
+    private final Duration maxLag;
+    private final Clock clock;
+    private volatile ReplicaWatermark watermark;
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder laggingReads = new LongAdder();
+    private final LongAdder stickyReads = new LongAdder();
+
+    public enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    public ReplicaReadPolicy(Duration maxLag) {
+        this(maxLag, Clock.systemUTC());
+    }
+
+    public ReplicaReadPolicy(Duration maxLag, Clock clock) {
+        this.maxLag = maxLag;
+        this.clock = clock;
+    }
+
+    public void setWatermark(ReplicaWatermark watermark) {
+        this.watermark = watermark;
+    }
+
+    public Duration getMaxLag() {
+        return maxLag;
+    }
+
+    public Instant now() {
+        return clock.instant();
+    }
+
+    public Target route() {
+        ReadYourWritesContext context = ReadYourWritesContext.current();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || context != null && context.isMutating()) {
+            writes.increment();
+            return Target.PRIMARY;
+        }
+        Instant now = clock.instant();
+        Instant lastWrite = context == null ? null : context.getLastWrite();
+        ReplicaWatermark currentWatermark = watermark;
+        if (currentWatermark == null) {
+            if (lastWrite != null && !now.isAfter(lastWrite.plus(maxLag))) {
+                stickyReads.increment();
+                return Target.PRIMARY;
+            }
+        } else {
+            Instant consistentAsOf = currentWatermark.consistentAsOf();
+            if (consistentAsOf == null || now.isAfter(consistentAsOf.plus(maxLag))) {
+                laggingReads.increment();
+                return Target.PRIMARY;
+            }
+            if (lastWrite != null && consistentAsOf.isBefore(lastWrite)) {
+                stickyReads.increment();
+                return Target.PRIMARY;
+            }
+        }
+        replicaReads.increment();
+        return Target.REPLICA;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindRoute(registry, writes, "primary", "write");
+        bindRoute(registry, laggingReads, "primary", "replica-lag");
+        bindRoute(registry, stickyReads, "primary", "read-your-writes");
+        bindRoute(registry, replicaReads, "replica", "read");
+    }
+
+    public long getReplicaReadCount() {
+        return replicaReads.sum();
+    }
+
+    private static void bindRoute(MeterRegistry registry, LongAdder counter, String target, String reason) {
+        FunctionCounter.builder("filmorate.datasource.routes", counter, LongAdder::sum)
+                .tag("target", target)
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
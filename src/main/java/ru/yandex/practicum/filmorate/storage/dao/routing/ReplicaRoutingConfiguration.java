@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.storage.dao.routing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Чтение с реплики: spring.datasource остаётся основной базой, реплика задаётся filmorate.datasource.replica.*.
+ * Единственный DataSource приложения — {@link ReplicaRoutingDataSource}, поэтому миграции, метрики
+ * и JdbcTemplate работают с ним как с обычной базой. Для локального запуска replicator.enabled=true
+ * включает {@link H2Replicator}, который держит вторую встроенную H2 в синхронизации с основной.
+ */
+@Configuration
+@ConditionalOnProperty(name = "filmorate.datasource.replica.enabled", havingValue = "true")
+public class ReplicaRoutingConfiguration {
+
+    @Bean
+    public ReplicaReadPolicy replicaReadPolicy(@Value("${filmorate.datasource.replica.max-lag:PT2S}") Duration maxLag) {
+        return new ReplicaReadPolicy(maxLag);
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource dataSource(DataSourceProperties primaryProperties, ReplicaReadPolicy policy,
+                                               @Value("${filmorate.datasource.replica.url}") String url,
+                                               @Value("${filmorate.datasource.replica.username:}") String username,
+                                               @Value("${filmorate.datasource.replica.password:}") String password) {
+        DataSource primary = primaryProperties.initializeDataSourceBuilder().build();
+        DataSource replica = DataSourceBuilder.create()
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        return new ReplicaRoutingDataSource(primary, replica, policy);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(ReplicaReadPolicy policy) {
+        return new ReadYourWritesFilter(policy);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "filmorate.datasource.replica.replicator.enabled", havingValue = "true")
+    public H2Replicator h2Replicator(DataSource dataSource, ReplicaReadPolicy policy) throws Exception {
+        return new H2Replicator(dataSource.unwrap(ReplicaRoutingDataSource.class), policy);
+    }
+}
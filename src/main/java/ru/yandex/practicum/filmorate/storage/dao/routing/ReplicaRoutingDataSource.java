@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.storage.dao.routing;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * DataSource с основной базой и репликой. Физическое соединение берётся лениво, при первом запросе:
+ * к этому моменту транзакция уже помечена readOnly, и {@link ReplicaReadPolicy} может выбрать реплику.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+    private final DataSource primary;
+    private final DataSource replica;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaReadPolicy policy) {
+        this.primary = primary;
+        this.replica = replica;
+        AbstractRoutingDataSource router = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return policy.route();
+            }
+        };
+        router.setTargetDataSources(Map.of(ReplicaReadPolicy.Target.PRIMARY, primary,
+                ReplicaReadPolicy.Target.REPLICA, replica));
+        router.setDefaultTargetDataSource(primary);
+        router.afterPropertiesSet();
+        setTargetDataSource(router);
+        afterPropertiesSet();
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public DataSource getReplica() {
+        return replica;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (DataSource dataSource : new DataSource[]{replica, primary}) {
+            if (dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
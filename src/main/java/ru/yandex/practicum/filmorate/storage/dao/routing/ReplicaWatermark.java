@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.storage.dao.routing;
+
+import java.time.Instant;
+
+/**
+ * Момент, по состоянию на который реплика содержит все изменения основной базы.
+ */
+@FunctionalInterface
+public interface ReplicaWatermark {
+    /**
+     * @return момент согласованности реплики или {@code null}, если он неизвестен
+     */
+    Instant consistentAsOf();
+}
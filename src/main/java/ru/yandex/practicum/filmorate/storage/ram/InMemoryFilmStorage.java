@@ -1,37 +1,115 @@
 package ru.yandex.practicum.filmorate.storage.ram;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.LikesIndex;
+import ru.yandex.practicum.filmorate.storage.ram.persistence.BinaryFormat;
+import ru.yandex.practicum.filmorate.storage.ram.persistence.RamPersistence;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+/**
+ * Хранилище фильмов в памяти: фильмы лежат в ConcurrentHashMap по id, изменения одного фильма
+ * (лайки и обновление) выполняются под блокировкой его полосы, чтение идёт без блокировок.
+ * Используется при filmorate.storage.mode=ram. Если задан filmorate.storage.ram.directory, каждое изменение
+ * сначала записывается в журнал и только потом применяется в памяти, поэтому незаписанное изменение
+ * никто не видит. Периодически снимается снапшот, а при старте состояние восстанавливается из снапшота
+ * и журнала; индекс лайков и рейтинг после восстановления строятся за один проход.
+ */
 @Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "ram")
 public class InMemoryFilmStorage implements FilmStorage {
-    private final List<Film> films = new ArrayList<>();
-    private static final AtomicInteger idGenerator = new AtomicInteger(0);
+    private final Map<Integer, Film> films = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<FilmRank, Film> leaderboard = new ConcurrentSkipListMap<>(FilmRank.ORDER);
+    private final Object[] likeLocks = new Object[LIKE_LOCK_STRIPES];
+    private volatile LikesIndex likesIndex = new LikesIndex();
+    private final RamPersistence persistence;
+    private static final int LIKE_LOCK_STRIPES = 64;
+    private static final int RECOMMENDATION_NEIGHBOURS = 50;
+    private static final byte PUT_FILM = 1;
+    private static final byte ADD_LIKE = 2;
+    private static final byte REMOVE_LIKE = 3;
+    private final AtomicInteger idGenerator = new AtomicInteger(0);
     private static final Logger logger = LoggerFactory.getLogger(InMemoryFilmStorage.class);
 
+    public InMemoryFilmStorage() {
+        this("");
+    }
+
+    @Autowired
+    public InMemoryFilmStorage(@Value("${filmorate.storage.ram.directory:}") String directory) {
+        for (int i = 0; i < likeLocks.length; i++) {
+            likeLocks[i] = new Object();
+        }
+        if (directory.isBlank()) {
+            persistence = null;
+            return;
+        }
+        persistence = new RamPersistence(Path.of(directory), "films");
+        try {
+            persistence.recover(this::readSnapshot, this::replay);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось восстановить фильмы из " + directory, e);
+        }
+        rebuildIndexes();
+        logger.info("Фильмы восстановлены: {} фильмов, {} лайков", films.size(), likesIndex.getLikeCount());
+    }
+
     @Override
     public Film addFilm(Film film) {
         logger.debug("Попытка добавления фильма: {}", film);
         film.setId(generateId());
-        films.add(film);
+        synchronized (likeLock(film.getId())) {
+            journal(PUT_FILM, out -> writeFilm(out, film), () -> putFilm(film));
+        }
         logger.info("Фильм добавлен с ID: {}", film.getId());
         return film;
     }
 
+    @Override
+    public List<Integer> addFilms(List<Film> filmsToAdd) {
+        logger.debug("Попытка пакетного добавления {} фильмов", filmsToAdd.size());
+        return filmsToAdd.stream()
+                .map(film -> addFilm(film).getId())
+                .toList();
+    }
+
     @Override
     public Film updateFilm(Film filmForUpdate) {
         logger.debug("Попытка обновления фильма с ID: {}", filmForUpdate.getId());
-        Film currentFilm = getFilm(filmForUpdate.getId());
-        filmForUpdate.setLikedUsers(currentFilm.getLikedUsers());
-        films.replaceAll(film -> filmForUpdate.getId() == film.getId() ? filmForUpdate : film);
+        synchronized (likeLock(filmForUpdate.getId())) {
+            getFilm(filmForUpdate.getId());
+            journal(PUT_FILM, out -> writeFilm(out, filmForUpdate), () -> putFilm(filmForUpdate));
+        }
         logger.info("Фильм с ID {} обновлён", filmForUpdate.getId());
         return filmForUpdate;
     }
@@ -39,44 +117,312 @@ public class InMemoryFilmStorage implements FilmStorage {
     @Override
     public List<Film> getFilmsList() {
         logger.info("Получение списка фильмов");
-        return films;
+        return filmsAfter(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        logger.info("Получение страницы фильмов после id {}, размер страницы {}", afterId, limit);
+        return filmsAfter(afterId, limit);
+    }
+
+    @Override
+    public void forEachFilm(Consumer<Film> action) {
+        logger.info("Выгрузка каталога фильмов");
+        filmsAfter(0, Integer.MAX_VALUE).forEach(action);
     }
 
     @Override
     public Film getFilm(int id) {
         logger.info("Поиск фильма с ID: {}", id);
-        return films
-                .stream()
-                .filter(film -> film.getId() == id)
-                .findFirst()
-                .orElseThrow(() -> {
-                    logger.error("Фильм не найден с ID: {}", id);
-                    return new NotFoundException("Film not found with id: " + id);
-                });
+        Film film = films.get(id);
+        if (film == null) {
+            logger.error("Фильм не найден с ID: {}", id);
+            throw new NotFoundException("Film not found with id: " + id);
+        }
+        return film;
     }
 
     @Override
-    public void addLike(int filmId, int userId) {
-        Film film = getFilm(filmId);
-        film.addLikedUser(userId);
+    public boolean addLike(int filmId, int userId) {
+        synchronized (likeLock(filmId)) {
+            if (getFilm(filmId).getLikedUsers().contains(userId)) {
+                return false;
+            }
+            journal(ADD_LIKE, out -> writeLike(out, filmId, userId), () -> applyLike(filmId, userId));
+            return true;
+        }
     }
 
     @Override
-    public void removeLike(int filmId, int userId) {
-        Film film = getFilm(filmId);
-        film.removeLikedUser(userId);
+    public boolean removeLike(int filmId, int userId) {
+        synchronized (likeLock(filmId)) {
+            if (!getFilm(filmId).getLikedUsers().contains(userId)) {
+                return false;
+            }
+            journal(REMOVE_LIKE, out -> writeLike(out, filmId, userId), () -> applyUnlike(filmId, userId));
+            return true;
+        }
+    }
+
+    @Override
+    public void applyLikeChanges(List<LikeChange> changes) {
+        logger.debug("Применение пачки из {} изменений лайков", changes.size());
+        for (LikeChange change : changes) {
+            try {
+                if (change.liked()) {
+                    addLike(change.filmId(), change.userId());
+                } else {
+                    removeLike(change.filmId(), change.userId());
+                }
+            } catch (NotFoundException e) {
+                logger.warn("Изменение лайка пропущено: {}", e.getMessage());
+            }
+        }
     }
 
     @Override
     public List<Film> getPopularFilms(int filmsCount) {
-        return getFilmsList()
-                .stream()
-                .sorted((film, film1) -> Integer.compare(film1.getLikesCount(), film.getLikesCount()))
-                .limit(filmsCount)
+        List<Film> popularFilms = new ArrayList<>(filmsCount);
+        Set<Integer> seenFilmIds = new HashSet<>();
+        for (Film film : leaderboard.values()) {
+            if (popularFilms.size() >= filmsCount) {
+                break;
+            }
+            if (seenFilmIds.add(film.getId())) {
+                popularFilms.add(film);
+            }
+        }
+        return popularFilms;
+    }
+
+    @Override
+    public List<Film> getRecommendedFilms(int userId, int limit) {
+        logger.info("Запрошены рекомендации фильмов для пользователя {}, не больше {}", userId, limit);
+        return Arrays.stream(likesIndex.recommendFilms(userId, limit, RECOMMENDATION_NEIGHBOURS, Long.MAX_VALUE))
+                .mapToObj(this::getFilm)
                 .toList();
     }
 
+    /**
+     * Снимает снапшот каталога, если включено сохранение на диск. Запись при этом не останавливается.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.storage.ram.snapshot-interval:PT10M}",
+            initialDelayString = "${filmorate.storage.ram.snapshot-interval:PT10M}")
+    public void snapshot() {
+        if (persistence == null) {
+            return;
+        }
+        try {
+            persistence.snapshot(this::writeSnapshot);
+        } catch (IOException e) {
+            logger.error("Не удалось записать снапшот фильмов", e);
+        }
+    }
+
+    /**
+     * @return {@code false}, если журнал закрыт для записи после сбоя диска и изменения отклоняются
+     */
+    public boolean isJournalWritable() {
+        return persistence == null || persistence.isWritable();
+    }
+
+    public long getJournalFailedBatchCount() {
+        return persistence == null ? 0 : persistence.getFailedBatchCount();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (persistence != null) {
+            persistence.close();
+        }
+    }
+
+    // Сохраняет уже накопленные лайки фильма, поэтому повторное применение записи журнала безопасно
+    private void putFilm(Film film) {
+        Film currentFilm = films.get(film.getId());
+        if (currentFilm != null) {
+            film.setLikedUsers(currentFilm.getLikedUsers());
+        }
+        films.put(film.getId(), film);
+        leaderboard.put(new FilmRank(film.getLikesCount(), film.getId()), film);
+        idGenerator.accumulateAndGet(film.getId(), Math::max);
+    }
+
+    private boolean applyLike(int filmId, int userId) {
+        Film film = getFilm(filmId);
+        int likesBefore = film.getLikesCount();
+        if (!film.addLikedUser(userId)) {
+            return false;
+        }
+        likesIndex.addLike(userId, filmId);
+        moveInLeaderboard(film, likesBefore);
+        return true;
+    }
+
+    private boolean applyUnlike(int filmId, int userId) {
+        Film film = getFilm(filmId);
+        int likesBefore = film.getLikesCount();
+        if (!film.removeLikedUser(userId)) {
+            return false;
+        }
+        likesIndex.removeLike(userId, filmId);
+        moveInLeaderboard(film, likesBefore);
+        return true;
+    }
+
+    // Изменение применяется только после записи в журнал и под его блокировкой, см. RamPersistence.write
+    private void journal(byte type, BinaryFormat.Writer body, Runnable apply) {
+        if (persistence == null) {
+            apply.run();
+            return;
+        }
+        persistence.write(BinaryFormat.record(out -> {
+            out.writeByte(type);
+            body.write(out);
+        }), apply);
+    }
+
+    private void replay(ByteBuffer record) {
+        byte type = record.get();
+        switch (type) {
+            case PUT_FILM -> putFilm(readFilm(record));
+            case ADD_LIKE -> getFilm(record.getInt()).addLikedUser(record.getInt());
+            case REMOVE_LIKE -> getFilm(record.getInt()).removeLikedUser(record.getInt());
+            default -> throw new IllegalStateException("Неизвестный тип записи журнала фильмов: " + type);
+        }
+    }
+
+    private void writeSnapshot(DataOutputStream out) throws IOException {
+        for (Film film : filmsAfter(0, Integer.MAX_VALUE)) {
+            int[] likedUsers = film.getLikedUsers().stream().mapToInt(Integer::intValue).toArray();
+            out.writeBoolean(true);
+            writeFilm(out, film);
+            out.writeInt(likedUsers.length);
+            for (int userId : likedUsers) {
+                out.writeInt(userId);
+            }
+        }
+        out.writeBoolean(false);
+    }
+
+    private void readSnapshot(ByteBuffer snapshot) {
+        while (snapshot.get() != 0) {
+            Film film = readFilm(snapshot);
+            int likesCount = snapshot.getInt();
+            Set<Integer> likedUsers = new HashSet<>(likesCount * 2);
+            for (int i = 0; i < likesCount; i++) {
+                likedUsers.add(snapshot.getInt());
+            }
+            film.setLikedUsers(likedUsers);
+            putFilm(film);
+        }
+    }
+
+    // Журнал при восстановлении меняет только сами фильмы, а рейтинг и индекс лайков строятся по итогу один раз
+    private void rebuildIndexes() {
+        leaderboard.clear();
+        long[] likes = new long[films.values().stream().mapToInt(Film::getLikesCount).sum()];
+        int likesCount = 0;
+        for (Film film : films.values()) {
+            leaderboard.put(new FilmRank(film.getLikesCount(), film.getId()), film);
+            for (int userId : film.getLikedUsers()) {
+                likes[likesCount++] = ((long) userId << 32) | film.getId();
+            }
+        }
+        Arrays.sort(likes, 0, likesCount);
+        LikesIndex.Builder builder = new LikesIndex.Builder();
+        for (int i = 0; i < likesCount; i++) {
+            builder.add((int) (likes[i] >>> 32), (int) likes[i]);
+        }
+        likesIndex = builder.build();
+    }
+
+    private static void writeLike(DataOutputStream out, int filmId, int userId) throws IOException {
+        out.writeInt(filmId);
+        out.writeInt(userId);
+    }
+
+    private static void writeFilm(DataOutputStream out, Film film) throws IOException {
+        out.writeInt(film.getId());
+        BinaryFormat.writeString(out, film.getName());
+        BinaryFormat.writeString(out, film.getDescription());
+        BinaryFormat.writeDate(out, film.getReleaseDate());
+        out.writeInt(film.getDuration());
+        Mpa mpa = film.getMpa();
+        out.writeBoolean(mpa != null);
+        if (mpa != null) {
+            out.writeInt(mpa.getId());
+            BinaryFormat.writeString(out, mpa.getName());
+        }
+        Set<Genre> genres = film.getGenres();
+        out.writeInt(genres == null ? -1 : genres.size());
+        if (genres != null) {
+            for (Genre genre : genres) {
+                out.writeInt(genre.getId());
+                BinaryFormat.writeString(out, genre.getName());
+            }
+        }
+    }
+
+    private static Film readFilm(ByteBuffer in) {
+        Film film = new Film();
+        film.setId(in.getInt());
+        film.setName(BinaryFormat.readString(in));
+        film.setDescription(BinaryFormat.readString(in));
+        film.setReleaseDate(BinaryFormat.readDate(in));
+        film.setDuration(in.getInt());
+        if (in.get() != 0) {
+            Mpa mpa = new Mpa();
+            mpa.setId(in.getInt());
+            mpa.setName(BinaryFormat.readString(in));
+            film.setMpa(mpa);
+        }
+        int genresCount = in.getInt();
+        if (genresCount >= 0) {
+            Set<Genre> genres = new LinkedHashSet<>();
+            for (int i = 0; i < genresCount; i++) {
+                Genre genre = new Genre();
+                genre.setId(in.getInt());
+                genre.setName(BinaryFormat.readString(in));
+                genres.add(genre);
+            }
+            film.setGenres(genres);
+        }
+        return film;
+    }
+
+    // Новая позиция добавляется до удаления старой, поэтому параллельное чтение может
+    // кратковременно увидеть фильм дважды; такой дубль отбрасывается в getPopularFilms
+    private void moveInLeaderboard(Film film, int likesBefore) {
+        leaderboard.put(new FilmRank(film.getLikesCount(), film.getId()), film);
+        leaderboard.remove(new FilmRank(likesBefore, film.getId()));
+    }
+
+    private Object likeLock(int filmId) {
+        return likeLocks[Math.floorMod(filmId, LIKE_LOCK_STRIPES)];
+    }
+
+    // id выдаются подряд и фильмы не удаляются, поэтому страница собирается обходом id после afterId
+    private List<Film> filmsAfter(int afterId, int limit) {
+        List<Film> page = new ArrayList<>(Math.min(limit, films.size()));
+        int lastId = idGenerator.get();
+        for (int id = Math.max(afterId, 0) + 1; id <= lastId && page.size() < limit; id++) {
+            Film film = films.get(id);
+            if (film != null) {
+                page.add(film);
+            }
+        }
+        return page;
+    }
+
     private int generateId() {
         return idGenerator.incrementAndGet();
     }
-}
\ No newline at end of file
+
+    private record FilmRank(int likesCount, int filmId) {
+        static final Comparator<FilmRank> ORDER = Comparator.comparingInt(FilmRank::likesCount)
+                .reversed()
+                .thenComparingInt(FilmRank::filmId);
+    }
+}
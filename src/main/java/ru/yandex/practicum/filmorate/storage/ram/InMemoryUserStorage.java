@@ -1,37 +1,94 @@
 package ru.yandex.practicum.filmorate.storage.ram;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.FriendWithMutualCount;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FriendshipGraph;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.ram.persistence.BinaryFormat;
+import ru.yandex.practicum.filmorate.storage.ram.persistence.RamPersistence;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
 
+/**
+ * Хранилище пользователей в памяти: пользователи лежат в ConcurrentHashMap по id. Обновление пользователя
+ * и изменение дружбы выполняются под блокировками полос затронутых пользователей, чтение идёт без блокировок.
+ * Используется при filmorate.storage.mode=ram; сохранение на диск включается так же, как
+ * в {@link InMemoryFilmStorage}, через filmorate.storage.ram.directory: изменение применяется
+ * только после записи в журнал, граф дружбы после восстановления строится за один проход.
+ */
 @Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "ram")
 public class InMemoryUserStorage implements UserStorage {
-    private final List<User> users = new ArrayList<>();
-    private static final AtomicInteger idGenerator = new AtomicInteger(0);
+    private final Map<Integer, User> users = new ConcurrentHashMap<>();
+    private volatile FriendshipGraph friendshipGraph = new FriendshipGraph();
+    private final Map<String, Integer> loginCounts = new ConcurrentHashMap<>();
+    private final Map<String, Integer> emailCounts = new ConcurrentHashMap<>();
+    private final Object[] userLocks = new Object[USER_LOCK_STRIPES];
+    private final AtomicInteger idGenerator = new AtomicInteger(0);
+    private final RamPersistence persistence;
+    private static final int USER_LOCK_STRIPES = 64;
+    private static final byte PUT_USER = 1;
+    private static final byte ADD_FRIEND = 2;
+    private static final byte REMOVE_FRIEND = 3;
+    private static final byte PUT_USERS = 4;
     private static final Logger logger = LoggerFactory.getLogger(InMemoryUserStorage.class);
 
     public InMemoryUserStorage() {
+        this("");
+    }
+
+    @Autowired
+    public InMemoryUserStorage(@Value("${filmorate.storage.ram.directory:}") String directory) {
+        for (int i = 0; i < userLocks.length; i++) {
+            userLocks[i] = new Object();
+        }
+        if (directory.isBlank()) {
+            persistence = null;
+            return;
+        }
+        persistence = new RamPersistence(Path.of(directory), "users");
+        try {
+            persistence.recover(this::readSnapshot, this::replay);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось восстановить пользователей из " + directory, e);
+        }
+        rebuildFriendshipGraph();
+        logger.info("Пользователи восстановлены: {} пользователей, {} связей дружбы",
+                users.size(), friendshipGraph.getEdgeCount());
     }
 
     @Override
     public User findUserById(int userId) {
-        return users.stream()
-                .filter(user -> user.getId() == userId)
-                .findFirst()
-                .orElseThrow(() -> {
-                    logger.error("User not found: {}", userId);
-                    return new NotFoundException("User not found with id: " + userId);
-                });
+        User user = users.get(userId);
+        if (user == null) {
+            logger.error("User not found: {}", userId);
+            throw new NotFoundException("User not found with id: " + userId);
+        }
+        return user;
     }
 
     @Override
@@ -39,18 +96,42 @@ public class InMemoryUserStorage implements UserStorage {
         logger.debug("Попытка добавления пользователя: {}", user);
         user.setId(generateId());
         setUsernameOnNull(user);
-        users.add(user);
+        synchronized (userLock(user.getId())) {
+            journal(PUT_USER, out -> writeUser(out, user), () -> putUser(user));
+        }
         logger.info("Пользователь добавлен с ID: {}", user.getId());
         return user;
     }
 
+    /**
+     * Пачка пишется в журнал одной записью и появляется в памяти только после её записи,
+     * поэтому при ошибке не добавляется никто.
+     */
+    @Override
+    public List<Integer> addUsers(List<User> usersToAdd) {
+        logger.debug("Попытка пакетного добавления {} пользователей", usersToAdd.size());
+        for (User user : usersToAdd) {
+            user.setId(generateId());
+            setUsernameOnNull(user);
+        }
+        journal(PUT_USERS, out -> {
+            out.writeInt(usersToAdd.size());
+            for (User user : usersToAdd) {
+                writeUser(out, user);
+            }
+        }, () -> usersToAdd.forEach(this::putUser));
+        logger.info("Пакетно добавлено {} пользователей", usersToAdd.size());
+        return usersToAdd.stream().map(User::getId).toList();
+    }
+
     @Override
     public User updateUser(User userForUpdate) {
         logger.debug("Попытка обновления пользователя с ID: {}", userForUpdate.getId());
-        User curUser = findUserById(userForUpdate.getId());
         setUsernameOnNull(userForUpdate);
-        userForUpdate.setFriends(curUser.getFriends());
-        users.replaceAll(user -> userForUpdate.getId() == user.getId() ? userForUpdate : user);
+        synchronized (userLock(userForUpdate.getId())) {
+            findUserById(userForUpdate.getId());
+            journal(PUT_USER, out -> writeUser(out, userForUpdate), () -> putUser(userForUpdate));
+        }
         logger.info("Пользователь с ID {} обновлён", userForUpdate.getId());
         return userForUpdate;
     }
@@ -58,47 +139,315 @@ public class InMemoryUserStorage implements UserStorage {
     @Override
     public List<User> getUsersList() {
         logger.info("Получение списка пользователей");
-        return users;
+        return usersAfter(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<User> getUsersPage(int afterId, int limit) {
+        logger.info("Получение страницы пользователей после id {}, размер страницы {}", afterId, limit);
+        return usersAfter(afterId, limit);
+    }
+
+    @Override
+    public boolean isLoginTaken(String login) {
+        return loginCounts.containsKey(login);
+    }
+
+    @Override
+    public boolean isEmailTaken(String email) {
+        return emailCounts.containsKey(email);
     }
 
     @Override
     public void addFriend(int userId, int friendId) {
         logger.info("Добавление друга {}Для пользователя{}", friendId, userId);
-        User currentUser = findUserById(userId);
-        User friend = findUserById(friendId);
-        currentUser.addFriend(friendId);
-        friend.addFriend(userId);
+        synchronized (firstLock(userId, friendId)) {
+            synchronized (secondLock(userId, friendId)) {
+                findUserById(userId);
+                findUserById(friendId);
+                journal(ADD_FRIEND, out -> writeFriendship(out, userId, friendId),
+                        () -> applyAddFriend(userId, friendId));
+            }
+        }
     }
 
     @Override
     public void removeFriend(int userId, int friendId) {
         logger.info("Удаление из списка друзей пользователя {} друга {}", userId, friendId);
-        User curUser = findUserById(userId);
-        User friend = findUserById(friendId);
-        curUser.removeFriend(friendId);
-        friend.removeFriend(userId);
+        synchronized (firstLock(userId, friendId)) {
+            synchronized (secondLock(userId, friendId)) {
+                findUserById(userId);
+                findUserById(friendId);
+                journal(REMOVE_FRIEND, out -> writeFriendship(out, userId, friendId),
+                        () -> applyRemoveFriend(userId, friendId));
+            }
+        }
     }
 
     @Override
     public List<User> getFriendsList(int curUserId) {
         logger.info("Запрошен список друзей пользователя {}", curUserId);
-        User curUser = findUserById(curUserId);
-        return getUsersList()
-                .stream()
-                .filter(user -> curUser.getFriends().contains(user.getId()))
-                .collect(Collectors.toList());
+        findUserById(curUserId);
+        return usersByIds(friendshipGraph.friendsOf(curUserId));
+    }
+
+    @Override
+    public List<FriendWithMutualCount> getFriendsWithMutualCounts(int userId) {
+        logger.info("Запрошен список друзей пользователя {} с числом общих друзей", userId);
+        findUserById(userId);
+        int[] friendIds = friendshipGraph.friendsOf(userId);
+        int[] mutualCounts = friendshipGraph.countCommonFriends(userId, friendIds);
+        List<FriendWithMutualCount> friends = new ArrayList<>(friendIds.length);
+        for (int i = 0; i < friendIds.length; i++) {
+            User friend = users.get(friendIds[i]);
+            if (friend != null) {
+                friends.add(new FriendWithMutualCount(friend, mutualCounts[i]));
+            }
+        }
+        return friends;
+    }
+
+    @Override
+    public Map<Integer, List<User>> getFriendsLists(Collection<Integer> userIds) {
+        logger.info("Запрошены списки друзей {} пользователей", userIds.size());
+        Map<Integer, List<User>> friendsByUserId = new HashMap<>();
+        for (int userId : userIds) {
+            List<User> friends = Objects.isNull(users.get(userId))
+                    ? List.of()
+                    : usersByIds(friendshipGraph.friendsOf(userId));
+            friendsByUserId.put(userId, friends);
+        }
+        return friendsByUserId;
     }
 
     @Override
     public List<User> getFriendsIntersect(int firstUserId, int secondUserId) {
         logger.info("Попытка получить пересечения друзей между пользователя с id {} и {}", firstUserId, secondUserId);
-        Set<Integer> firstUserFriends = new HashSet<>(findUserById(firstUserId).getFriends());
-        Set<Integer> secondUserFriends = new HashSet<>(findUserById(secondUserId).getFriends());
-        firstUserFriends.retainAll(secondUserFriends);
-        return getUsersList()
-                .stream()
-                .filter(user -> firstUserFriends.contains(user.getId()))
-                .collect(Collectors.toList());
+        findUserById(firstUserId);
+        findUserById(secondUserId);
+        return usersByIds(friendshipGraph.commonFriends(firstUserId, secondUserId));
+    }
+
+    @Override
+    public List<FriendSuggestion> getFriendSuggestions(int userId, int limit) {
+        logger.info("Запрошены рекомендации друзей для пользователя {}, не больше {}", userId, limit);
+        findUserById(userId);
+        FriendshipGraph.SuggestedFriends suggested = friendshipGraph.suggestFriends(userId, limit);
+        List<FriendSuggestion> suggestions = new ArrayList<>(suggested.userIds().length);
+        for (int i = 0; i < suggested.userIds().length; i++) {
+            User user = users.get(suggested.userIds()[i]);
+            if (user != null) {
+                suggestions.add(new FriendSuggestion(user, suggested.mutualFriends()[i]));
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Снимает снапшот пользователей, если включено сохранение на диск. Запись при этом не останавливается.
+     */
+    @Scheduled(fixedDelayString = "${filmorate.storage.ram.snapshot-interval:PT10M}",
+            initialDelayString = "${filmorate.storage.ram.snapshot-interval:PT10M}")
+    public void snapshot() {
+        if (persistence == null) {
+            return;
+        }
+        try {
+            persistence.snapshot(this::writeSnapshot);
+        } catch (IOException e) {
+            logger.error("Не удалось записать снапшот пользователей", e);
+        }
+    }
+
+    /**
+     * @return {@code false}, если журнал закрыт для записи после сбоя диска и изменения отклоняются
+     */
+    public boolean isJournalWritable() {
+        return persistence == null || persistence.isWritable();
+    }
+
+    public long getJournalFailedBatchCount() {
+        return persistence == null ? 0 : persistence.getFailedBatchCount();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (persistence != null) {
+            persistence.close();
+        }
+    }
+
+    // Сохраняет уже известных друзей пользователя, поэтому повторное применение записи журнала безопасно
+    private void putUser(User user) {
+        User currentUser = users.get(user.getId());
+        if (currentUser != null) {
+            user.setFriends(currentUser.getFriends());
+            countValue(loginCounts, currentUser.getLogin(), -1);
+            countValue(emailCounts, currentUser.getEmail(), -1);
+        }
+        countValue(loginCounts, user.getLogin(), 1);
+        countValue(emailCounts, user.getEmail(), 1);
+        users.put(user.getId(), user);
+        idGenerator.accumulateAndGet(user.getId(), Math::max);
+    }
+
+    private void applyAddFriend(int userId, int friendId) {
+        linkFriends(userId, friendId);
+        friendshipGraph.addFriend(userId, friendId);
+        friendshipGraph.addFriend(friendId, userId);
+    }
+
+    private void applyRemoveFriend(int userId, int friendId) {
+        unlinkFriends(userId, friendId);
+        friendshipGraph.removeFriend(userId, friendId);
+        friendshipGraph.removeFriend(friendId, userId);
+    }
+
+    private void linkFriends(int userId, int friendId) {
+        findUserById(userId).addFriend(friendId);
+        findUserById(friendId).addFriend(userId);
+    }
+
+    private void unlinkFriends(int userId, int friendId) {
+        findUserById(userId).removeFriend(friendId);
+        findUserById(friendId).removeFriend(userId);
+    }
+
+    // Журнал при восстановлении меняет только самих пользователей, а граф строится по итогу один раз
+    private void rebuildFriendshipGraph() {
+        FriendshipGraph.Builder builder = new FriendshipGraph.Builder();
+        for (User user : usersAfter(0, Integer.MAX_VALUE)) {
+            int[] friends = user.getFriends().stream().mapToInt(Integer::intValue).sorted().toArray();
+            for (int friendId : friends) {
+                builder.add(user.getId(), friendId);
+            }
+        }
+        friendshipGraph = builder.build();
+    }
+
+    // Логин и email в памяти не уникальны, поэтому хранится число пользователей с каждым значением
+    private static void countValue(Map<String, Integer> counts, String value, int delta) {
+        if (value != null) {
+            counts.merge(value, delta, (count, change) -> count + change == 0 ? null : count + change);
+        }
+    }
+
+    // Изменение применяется только после записи в журнал и под его блокировкой, см. RamPersistence.write
+    private void journal(byte type, BinaryFormat.Writer body, Runnable apply) {
+        if (persistence == null) {
+            apply.run();
+            return;
+        }
+        persistence.write(BinaryFormat.record(out -> {
+            out.writeByte(type);
+            body.write(out);
+        }), apply);
+    }
+
+    private void replay(ByteBuffer record) {
+        byte type = record.get();
+        switch (type) {
+            case PUT_USER -> putUser(readUser(record));
+            case ADD_FRIEND -> linkFriends(record.getInt(), record.getInt());
+            case REMOVE_FRIEND -> unlinkFriends(record.getInt(), record.getInt());
+            case PUT_USERS -> {
+                int usersCount = record.getInt();
+                for (int i = 0; i < usersCount; i++) {
+                    putUser(readUser(record));
+                }
+            }
+            default -> throw new IllegalStateException("Неизвестный тип записи журнала пользователей: " + type);
+        }
+    }
+
+    private void writeSnapshot(DataOutputStream out) throws IOException {
+        for (User user : usersAfter(0, Integer.MAX_VALUE)) {
+            int[] friends = user.getFriends().stream().mapToInt(Integer::intValue).toArray();
+            out.writeBoolean(true);
+            writeUser(out, user);
+            out.writeInt(friends.length);
+            for (int friendId : friends) {
+                out.writeInt(friendId);
+            }
+        }
+        out.writeBoolean(false);
+    }
+
+    private void readSnapshot(ByteBuffer snapshot) {
+        while (snapshot.get() != 0) {
+            User user = readUser(snapshot);
+            int friendsCount = snapshot.getInt();
+            Set<Integer> friends = new HashSet<>(friendsCount * 2);
+            for (int i = 0; i < friendsCount; i++) {
+                friends.add(snapshot.getInt());
+            }
+            user.setFriends(friends);
+            putUser(user);
+        }
+    }
+
+    private static void writeFriendship(DataOutputStream out, int userId, int friendId) throws IOException {
+        out.writeInt(userId);
+        out.writeInt(friendId);
+    }
+
+    private static void writeUser(DataOutputStream out, User user) throws IOException {
+        out.writeInt(user.getId());
+        BinaryFormat.writeString(out, user.getName());
+        BinaryFormat.writeString(out, user.getEmail());
+        BinaryFormat.writeString(out, user.getLogin());
+        BinaryFormat.writeDate(out, user.getBirthday());
+    }
+
+    private static User readUser(ByteBuffer in) {
+        User user = new User();
+        user.setId(in.getInt());
+        user.setName(BinaryFormat.readString(in));
+        user.setEmail(BinaryFormat.readString(in));
+        user.setLogin(BinaryFormat.readString(in));
+        user.setBirthday(BinaryFormat.readDate(in));
+        return user;
+    }
+
+    // id выдаются подряд и пользователи не удаляются, поэтому страница собирается обходом id после afterId
+    private List<User> usersAfter(int afterId, int limit) {
+        List<User> page = new ArrayList<>(Math.min(limit, users.size()));
+        int lastId = idGenerator.get();
+        for (int id = Math.max(afterId, 0) + 1; id <= lastId && page.size() < limit; id++) {
+            User user = users.get(id);
+            if (user != null) {
+                page.add(user);
+            }
+        }
+        return page;
+    }
+
+    private List<User> usersByIds(int[] userIds) {
+        List<User> found = new ArrayList<>(userIds.length);
+        for (int userId : userIds) {
+            User user = users.get(userId);
+            if (user != null) {
+                found.add(user);
+            }
+        }
+        return found;
+    }
+
+    private Object userLock(int userId) {
+        return userLocks[stripeOf(userId)];
+    }
+
+    // Полосы двух пользователей захватываются по возрастанию номера полосы, чтобы не было взаимной блокировки
+    private Object firstLock(int userId, int friendId) {
+        return userLocks[Math.min(stripeOf(userId), stripeOf(friendId))];
+    }
+
+    private Object secondLock(int userId, int friendId) {
+        return userLocks[Math.max(stripeOf(userId), stripeOf(friendId))];
+    }
+
+    private static int stripeOf(int userId) {
+        return Math.floorMod(userId, USER_LOCK_STRIPES);
     }
 
     private int generateId() {
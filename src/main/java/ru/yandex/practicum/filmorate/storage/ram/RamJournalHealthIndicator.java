@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage.ram;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Состояние журналов хранилищ в памяти для /actuator/health. Журнал, который после сбоя диска
+ * не удалось вернуть к последней целой записи, отклоняет изменения с 503 до следующего снапшота,
+ * и на это время приложение отдаёт DOWN.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.storage.mode", havingValue = "ram")
+public class RamJournalHealthIndicator implements HealthIndicator {
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+
+    public RamJournalHealthIndicator(InMemoryFilmStorage filmStorage, InMemoryUserStorage userStorage) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+    }
+
+    @Override
+    public Health health() {
+        boolean writable = filmStorage.isJournalWritable() && userStorage.isJournalWritable();
+        return (writable ? Health.up() : Health.down())
+                .withDetail("films.writable", filmStorage.isJournalWritable())
+                .withDetail("films.failedBatches", filmStorage.getJournalFailedBatchCount())
+                .withDetail("users.writable", userStorage.isJournalWritable())
+                .withDetail("users.failedBatches", userStorage.getJournalFailedBatchCount())
+                .build();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.storage.ram.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Компактная двоичная запись полей для снапшотов и журнала: строки — длина и UTF-8 (-1 для null),
+ * даты — номер дня от эпохи (Long.MIN_VALUE для null).
+ */
+public final class BinaryFormat {
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private BinaryFormat() {
+    }
+
+    public static byte[] record(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void writeDate(DataOutputStream out, LocalDate value) throws IOException {
+        out.writeLong(value == null ? NO_DATE : value.toEpochDay());
+    }
+
+    public static LocalDate readDate(ByteBuffer in) {
+        long epochDay = in.getLong();
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    @FunctionalInterface
+    public interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
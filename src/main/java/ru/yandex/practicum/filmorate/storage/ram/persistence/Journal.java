@@ -0,0 +1,302 @@
+package ru.yandex.practicum.filmorate.storage.ram.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений: записи только дописываются в конец файла через {@link FileChannel}.
+ * Формат записи — длина нагрузки (int), CRC32 нагрузки (int), сама нагрузка.
+ * Запись групповая: потоки ставят записи в очередь, фоновый поток пишет всё накопленное одним write
+ * и одним force, после чего будит всех, чьи записи попали в пачку. Пока идёт force, следующая пачка
+ * копится, поэтому при параллельной записи один fsync приходится на много изменений.
+ * Если пачка не записалась, её ожидающие получают ошибку, файл обрезается до конца последней
+ * записанной пачки и журнал принимает записи дальше. Если не удалось и обрезать файл, журнал
+ * закрывается для записи до переключения на новый файл, см. {@link #isBroken()}.
+ */
+public final class Journal implements Closeable {
+    private static final int HEADER_BYTES = 8;
+    private static final int READ_BUFFER_BYTES = 1 << 16;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingAvailable = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+    private final Thread writer;
+    private Batch pending = new Batch();
+    private long committedSize;
+    private volatile IOException failure;
+    private boolean closed;
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private static final Logger logger = LoggerFactory.getLogger(Journal.class);
+
+    Journal(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.committedSize = channel.position();
+        this.writer = Thread.ofPlatform()
+                .name("journal-" + path.getFileName())
+                .daemon()
+                .start(this::writeLoop);
+    }
+
+    /**
+     * Открывает журнал на дозапись. Файл должен быть предварительно проверен {@link #replay},
+     * иначе новые записи окажутся после оборванной.
+     */
+    public static Journal open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return new Journal(path, channel);
+    }
+
+    /**
+     * Передаёт нагрузку каждой целой записи в consumer. Чтение останавливается на первой оборванной
+     * или повреждённой записи, и файл обрезается до последней целой записи.
+     *
+     * @return число прочитанных записей
+     */
+    public static long replay(Path path, Consumer<ByteBuffer> consumer) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long records = 0;
+        long validLength = 0;
+        long fileLength = Files.size(path);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path), READ_BUFFER_BYTES))) {
+            while (validLength + HEADER_BYTES <= fileLength) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length < 0 || validLength + HEADER_BYTES + length > fileLength) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (checksum != checksum(payload)) {
+                    break;
+                }
+                consumer.accept(ByteBuffer.wrap(payload));
+                validLength += HEADER_BYTES + length;
+                records++;
+            }
+        } catch (EOFException e) {
+            logger.warn("Журнал {} закончился посреди записи", path);
+        }
+        if (validLength < fileLength) {
+            logger.warn("Журнал {} обрезан с {} до {} байт после последней целой записи", path, fileLength, validLength);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+        }
+        return records;
+    }
+
+    public Commit append(byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .putInt(payload.length)
+                .putInt(checksum(payload))
+                .put(payload)
+                .flip();
+        lock.lock();
+        try {
+            if (closed || failure != null) {
+                throw new ServiceUnavailableException("Журнал изменений недоступен для записи");
+            }
+            pending.records.add(record);
+            pendingAvailable.signal();
+            return new Commit(this, pending);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCommitCount() {
+        return commits.sum();
+    }
+
+    public long getFailedBatchCount() {
+        return failedBatches.sum();
+    }
+
+    /**
+     * @return {@code true}, если после ошибки записи файл не удалось вернуть к последней целой записи
+     * и журнал больше не принимает записи
+     */
+    public boolean isBroken() {
+        return failure != null;
+    }
+
+    /**
+     * Дописывает всё, что уже стоит в очереди, и закрывает файл.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            pendingAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        channel.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitCommitted(Batch batch) {
+        lock.lock();
+        try {
+            while (!batch.done) {
+                committed.awaitUninterruptibly();
+            }
+            if (batch.error != null) {
+                throw new ServiceUnavailableException("Не удалось записать изменение в журнал");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Batch batch;
+            lock.lock();
+            try {
+                while (pending.records.isEmpty() && !closed) {
+                    pendingAvailable.awaitUninterruptibly();
+                }
+                if (pending.records.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new Batch();
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            long writtenSize = committedSize;
+            try {
+                ByteBuffer[] buffers = batch.records.toArray(new ByteBuffer[0]);
+                long remaining = 0;
+                for (ByteBuffer buffer : buffers) {
+                    remaining += buffer.remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+                channel.force(false);
+                writtenSize = channel.position();
+            } catch (IOException e) {
+                error = e;
+            }
+            IOException unrecoverable = error == null ? null : rollBackTo(committedSize, error);
+
+            lock.lock();
+            try {
+                committedSize = writtenSize;
+                batch.done = true;
+                batch.error = error;
+                if (error == null) {
+                    commits.increment();
+                } else {
+                    failedBatches.increment();
+                }
+                if (unrecoverable != null) {
+                    failure = unrecoverable;
+                    pending.done = true;
+                    pending.error = unrecoverable;
+                }
+                committed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (unrecoverable != null) {
+                logger.error("Журнал {} закрыт для записи: не удалось вернуть файл к последней целой записи",
+                        path, unrecoverable);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Отрезает от файла часть несостоявшейся пачки, чтобы следующие записи шли сразу за последней
+     * записанной. Возвращает ошибку, если файл вернуть не удалось.
+     */
+    private IOException rollBackTo(long size, IOException cause) {
+        logger.error("Пачка записей в журнал {} не записана, файл возвращается к {} байт", path, size, cause);
+        try {
+            channel.truncate(size);
+            channel.position(size);
+            channel.force(false);
+            return null;
+        } catch (IOException e) {
+            e.addSuppressed(cause);
+            return e;
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Записи, которые фоновый поток пишет одним write и одним force, и результат этой записи.
+     */
+    private static final class Batch {
+        private final List<ByteBuffer> records = new ArrayList<>();
+        private boolean done;
+        private IOException error;
+    }
+
+    /**
+     * Запись, поставленная в очередь журнала. {@link #await()} возвращается, когда запись сброшена на диск,
+     * и бросает {@link ServiceUnavailableException}, если её пачка не записалась.
+     */
+    public static final class Commit {
+        private final Journal journal;
+        private final Batch batch;
+
+        private Commit(Journal journal, Batch batch) {
+            this.journal = journal;
+            this.batch = batch;
+        }
+
+        public void await() {
+            journal.awaitCommitted(batch);
+        }
+    }
+}
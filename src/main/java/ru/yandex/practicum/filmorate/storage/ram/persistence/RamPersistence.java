@@ -0,0 +1,199 @@
+package ru.yandex.practicum.filmorate.storage.ram.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Снапшоты и журнал одного хранилища в памяти. В каталоге лежат файлы {@code <name>-<поколение>.snapshot}
+ * и {@code <name>-<поколение>.journal}. Снапшот поколения N содержит состояние не раньше момента,
+ * когда начался журнал N, поэтому при старте достаточно загрузить последний снапшот и проиграть журналы
+ * начиная с его поколения. Записи журнала должны быть идемпотентными (положить сущность, добавить
+ * или убрать связь): снапшот пишется без остановки записи и может уже содержать часть изменений журнала.
+ * Изменение применяется в памяти, пока держится блокировка переключения журнала, поэтому всё, что попало
+ * в журнал N, уже видно снапшоту N+1 к моменту удаления журнала N.
+ * Снапшот читается через отображение файла в память, поэтому его размер ограничен 2 ГБ.
+ * Журнал, закрытый для записи после сбоя диска, заменяется новым при следующем снапшоте.
+ */
+public final class RamPersistence implements Closeable {
+    private static final int SNAPSHOT_MAGIC = 0x46524D53;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_BUFFER_BYTES = 1 << 16;
+
+    private final Path directory;
+    private final String name;
+    private final Pattern filePattern;
+    private final ReentrantReadWriteLock rotationLock = new ReentrantReadWriteLock();
+    private volatile Journal journal;
+    private long generation;
+    private volatile long failedBatchesOfClosedJournals;
+    private static final Logger logger = LoggerFactory.getLogger(RamPersistence.class);
+
+    public RamPersistence(Path directory, String name) {
+        this.directory = directory;
+        this.name = name;
+        this.filePattern = Pattern.compile(Pattern.quote(name) + "-(\\d+)\\.(snapshot|journal)");
+    }
+
+    /**
+     * Загружает последний снапшот, проигрывает журналы после него и открывает журнал на дозапись.
+     * Оборванная при сбое запись в конце журнала отбрасывается.
+     */
+    public void recover(Consumer<ByteBuffer> snapshotReader, Consumer<ByteBuffer> journalReplayer) throws IOException {
+        Files.createDirectories(directory);
+        long startedAt = System.nanoTime();
+        OptionalLong snapshotGeneration = latestGeneration("snapshot");
+        long fromGeneration = snapshotGeneration.orElse(0);
+        if (snapshotGeneration.isPresent()) {
+            readSnapshot(snapshotPath(fromGeneration), snapshotReader);
+        }
+        long replayed = 0;
+        long lastGeneration = fromGeneration;
+        for (long journalGeneration : generations("journal")) {
+            if (journalGeneration >= fromGeneration) {
+                replayed += Journal.replay(journalPath(journalGeneration), journalReplayer);
+                lastGeneration = Math.max(lastGeneration, journalGeneration);
+            }
+        }
+        generation = lastGeneration;
+        journal = Journal.open(journalPath(generation));
+        deleteGenerationsBefore(fromGeneration);
+        logger.info("Хранилище {} восстановлено за {} мс: снапшот {}, записей журнала {}", name,
+                (System.nanoTime() - startedAt) / 1_000_000,
+                snapshotGeneration.isPresent() ? fromGeneration : "нет", replayed);
+    }
+
+    /**
+     * Пишет запись в журнал, дожидается её сброса на диск и применяет изменение в памяти.
+     * Переключение журнала в {@link #snapshot} ждёт, пока все начатые так изменения будут применены.
+     */
+    public void write(byte[] record, Runnable apply) {
+        rotationLock.readLock().lock();
+        try {
+            journal.append(record).await();
+            apply.run();
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return {@code false}, если текущий журнал закрыт для записи после сбоя диска
+     */
+    public boolean isWritable() {
+        Journal current = journal;
+        return current != null && !current.isBroken();
+    }
+
+    public long getFailedBatchCount() {
+        Journal current = journal;
+        return failedBatchesOfClosedJournals + (current == null ? 0 : current.getFailedBatchCount());
+    }
+
+    /**
+     * Переключает запись на журнал следующего поколения, пишет снапшот этого поколения
+     * и удаляет файлы предыдущих поколений.
+     */
+    public synchronized void snapshot(BinaryFormat.Writer writer) throws IOException {
+        long startedAt = System.nanoTime();
+        long nextGeneration = generation + 1;
+        Journal previousJournal;
+        rotationLock.writeLock().lock();
+        try {
+            previousJournal = journal;
+            journal = Journal.open(journalPath(nextGeneration));
+            generation = nextGeneration;
+        } finally {
+            rotationLock.writeLock().unlock();
+        }
+        previousJournal.close();
+        failedBatchesOfClosedJournals += previousJournal.getFailedBatchCount();
+
+        Path snapshotPath = snapshotPath(nextGeneration);
+        Path temporaryPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), SNAPSHOT_BUFFER_BYTES));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            writer.write(out);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporaryPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE);
+        deleteGenerationsBefore(nextGeneration);
+        logger.info("Снапшот хранилища {} поколения {} записан за {} мс, {} байт", name, nextGeneration,
+                (System.nanoTime() - startedAt) / 1_000_000, Files.size(snapshotPath));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void readSnapshot(Path path, Consumer<ByteBuffer> snapshotReader) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (snapshot.getInt() != SNAPSHOT_MAGIC || snapshot.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Файл " + path + " не является снапшотом хранилища");
+            }
+            snapshotReader.accept(snapshot);
+        }
+    }
+
+    private OptionalLong latestGeneration(String kind) throws IOException {
+        List<Long> found = generations(kind);
+        return found.isEmpty() ? OptionalLong.empty() : OptionalLong.of(found.getLast());
+    }
+
+    private List<Long> generations(String kind) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .map(file -> filePattern.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .filter(matcher -> matcher.group(2).equals(kind))
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private void deleteGenerationsBefore(long keptGeneration) throws IOException {
+        for (String kind : List.of("snapshot", "journal")) {
+            for (long oldGeneration : generations(kind)) {
+                if (oldGeneration < keptGeneration) {
+                    Files.deleteIfExists(directory.resolve(name + "-" + oldGeneration + "." + kind));
+                }
+            }
+        }
+    }
+
+    private Path snapshotPath(long snapshotGeneration) {
+        return directory.resolve(name + "-" + snapshotGeneration + ".snapshot");
+    }
+
+    private Path journalPath(long journalGeneration) {
+        return directory.resolve(name + "-" + journalGeneration + ".journal");
+    }
+}
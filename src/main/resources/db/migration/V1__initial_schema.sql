@@ -34,9 +34,14 @@ CREATE TABLE IF NOT EXISTS film
     description  VARCHAR(200),
     release_date DATE,
     duration     INTEGER CHECK (duration > 0),
-    rating_id INTEGER REFERENCES rating(id)
+    rating_id INTEGER REFERENCES rating(id),
+    likes_count  INTEGER DEFAULT 0 NOT NULL
 );
 
+ALTER TABLE film ADD COLUMN IF NOT EXISTS likes_count INTEGER DEFAULT 0 NOT NULL;
+
+CREATE INDEX IF NOT EXISTS film_likes_count_idx ON film (likes_count DESC, id);
+
 CREATE TABLE IF NOT EXISTS film_genre_link(
     film_id INTEGER REFERENCES film(id),
     genre_id INTEGER REFERENCES genre(id)
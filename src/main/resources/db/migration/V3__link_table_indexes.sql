@@ -0,0 +1,18 @@
+-- Связь фильма с жанром могла задваиваться: у таблицы не было первичного ключа
+DELETE FROM film_genre_link
+WHERE _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM film_genre_link GROUP BY film_id, genre_id);
+
+DELETE FROM film_genre_link WHERE film_id IS NULL OR genre_id IS NULL;
+
+ALTER TABLE film_genre_link ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE film_genre_link ALTER COLUMN genre_id SET NOT NULL;
+ALTER TABLE film_genre_link ADD CONSTRAINT film_genre_link_pk PRIMARY KEY (film_id, genre_id);
+
+-- Фильмы жанра
+CREATE INDEX IF NOT EXISTS film_genre_link_genre_idx ON film_genre_link (genre_id, film_id);
+
+-- Лайки фильма: сверка likes_count и пересчёт рекомендаций
+CREATE INDEX IF NOT EXISTS likes_film_idx ON likes (film_id, user_id);
+
+-- Кто добавил пользователя в друзья
+CREATE INDEX IF NOT EXISTS friends_link_friend_idx ON friends_link (friend_id, user_id);
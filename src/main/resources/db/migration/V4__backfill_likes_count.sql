@@ -0,0 +1,4 @@
+-- Колонка likes_count добавлялась в V1 со значением 0 у существующих фильмов: счётчик заполняется по likes
+UPDATE film f
+SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)
+WHERE likes_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id);
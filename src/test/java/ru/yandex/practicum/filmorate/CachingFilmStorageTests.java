@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.yandex.practicum.filmorate.helpers.GenerateRandomizeInstances;
+import ru.yandex.practicum.filmorate.helpers.QueryCountingConfiguration;
+import ru.yandex.practicum.filmorate.helpers.QueryCountingDataSource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dao.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.DbFilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.DbUserStorage;
+import ru.yandex.practicum.filmorate.storage.dao.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrationPostProcessor;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({DbFilmStorage.class, DbUserStorage.class, ReferenceDataCache.class, QueryCountingConfiguration.class,
+        SchemaMigrationPostProcessor.class})
+class CachingFilmStorageTests {
+    private final DbFilmStorage dbFilmStorage;
+    private final DbUserStorage userStorage;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbc;
+    private final PlatformTransactionManager transactionManager;
+    private final ReferenceDataCache referenceData;
+
+    @Test
+    @Description("Повторное чтение фильма обслуживается кэшем без запросов к базе")
+    public void testRepeatedReadIsServedFromCache() {
+        CachingFilmStorage cache = new CachingFilmStorage(dbFilmStorage, 10, Duration.ofMinutes(1));
+        Film film = addFilm();
+
+        int firstReadQueries = countQueries(() -> cache.getFilm(film.getId()));
+        int secondReadQueries = countQueries(() -> cache.getFilm(film.getId()));
+
+        assertThat(firstReadQueries).isEqualTo(2);
+        assertThat(secondReadQueries).isZero();
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    @Description("Обновление фильма сбрасывает его запись в кэше")
+    public void testUpdateInvalidatesCachedFilm() {
+        CachingFilmStorage cache = new CachingFilmStorage(dbFilmStorage, 10, Duration.ofMinutes(1));
+        Film film = addFilm();
+        cache.getFilm(film.getId());
+        film.setName("Новое название");
+
+        cache.updateFilm(film);
+
+        assertThat(cache.getFilm(film.getId()).getName()).isEqualTo("Новое название");
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    @Description("Кэш отдаёт копии: изменение полученного фильма не меняет закэшированный")
+    public void testCachedFilmIsNotShared() {
+        CachingFilmStorage cache = new CachingFilmStorage(dbFilmStorage, 10, Duration.ofMinutes(1));
+        Film film = addFilm();
+        String name = film.getName();
+
+        Film loaded = cache.getFilm(film.getId());
+        loaded.setName("Изменено");
+        loaded.getMpa().setName("Изменено");
+        Film cached = cache.getFilm(film.getId());
+        cached.restoreLikesCount(100);
+
+        Film cachedAgain = cache.getFilm(film.getId());
+        assertThat(cachedAgain).isNotSameAs(cached);
+        assertThat(cachedAgain.getName()).isEqualTo(name);
+        assertThat(cachedAgain.getMpa().getName()).isEqualTo("G");
+        assertThat(cachedAgain.getLikesCount()).isZero();
+        assertThat(cache.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    @Description("Лайк сбрасывает закэшированный фильм, и следующее чтение видит новый счётчик")
+    public void testLikesKeepCachedCountFresh() {
+        CachingFilmStorage cache = new CachingFilmStorage(dbFilmStorage, 10, Duration.ofMinutes(1));
+        Film film = addFilm();
+        User user = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        User anotherUser = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        cache.getFilm(film.getId());
+
+        cache.addLike(film.getId(), user.getId());
+        cache.addLike(film.getId(), user.getId());
+        cache.addLike(film.getId(), anotherUser.getId());
+        cache.removeLike(film.getId(), anotherUser.getId());
+        assertThat(cache.getFilm(film.getId()).getLikesCount()).isEqualTo(1);
+
+        cache.applyLikeChanges(List.of(new LikeChange(film.getId(), anotherUser.getId(), true)));
+        assertThat(cache.getFilm(film.getId()).getLikesCount()).isEqualTo(2);
+        assertThat(cache.getFilm(film.getId()).getLikesCount()).isEqualTo(2);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Загрузка, начатая после записи лайка, кэширует верный счётчик, и он не поправляется повторно")
+    public void testLoadAfterLikeCommitIsNotAdjustedAgain() {
+        AtomicReference<Runnable> afterWrite = new AtomicReference<>(() -> { });
+        DbFilmStorage interleaved = new DbFilmStorage(jdbc, transactionManager, referenceData) {
+            @Override
+            public boolean addLike(int filmId, int userId) {
+                boolean added = super.addLike(filmId, userId);
+                afterWrite.get().run();
+                return added;
+            }
+
+            @Override
+            public boolean removeLike(int filmId, int userId) {
+                boolean removed = super.removeLike(filmId, userId);
+                afterWrite.get().run();
+                return removed;
+            }
+        };
+        CachingFilmStorage cache = new CachingFilmStorage(interleaved, 10, Duration.ofMinutes(1));
+        Film film = addFilm();
+        User user = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        afterWrite.set(() -> cache.getFilm(film.getId()));
+
+        cache.addLike(film.getId(), user.getId());
+        assertThat(cache.getFilm(film.getId()).getLikesCount()).isEqualTo(1);
+
+        cache.removeLike(film.getId(), user.getId());
+        assertThat(cache.getFilm(film.getId()).getLikesCount()).isZero();
+    }
+
+    @Test
+    @Description("При превышении размера вытесняется давно не читанный фильм, устаревшие записи перечитываются")
+    public void testEvictionAndExpiration() {
+        CachingFilmStorage cache = new CachingFilmStorage(dbFilmStorage, 2, Duration.ofMinutes(1));
+        Film first = addFilm();
+        Film second = addFilm();
+        Film third = addFilm();
+        cache.getFilm(first.getId());
+        cache.getFilm(second.getId());
+        cache.getFilm(first.getId());
+        cache.getFilm(third.getId());
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+        assertThat(countQueries(() -> cache.getFilm(first.getId()))).isZero();
+        assertThat(countQueries(() -> cache.getFilm(second.getId()))).isEqualTo(2);
+
+        CachingFilmStorage expiringCache = new CachingFilmStorage(dbFilmStorage, 10, Duration.ZERO);
+        expiringCache.getFilm(first.getId());
+        assertThat(countQueries(() -> expiringCache.getFilm(first.getId()))).isEqualTo(2);
+    }
+
+    private Film addFilm() {
+        Film film = GenerateRandomizeInstances.generateRandomFilm();
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return dbFilmStorage.addFilm(film);
+    }
+
+    private int countQueries(Runnable block) {
+        return QueryCountingDataSource.of(dataSource).count(block);
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.dao.DbFilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrationPostProcessor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({DbFilmStorage.class, ReferenceDataCache.class, SchemaMigrationPostProcessor.class})
+class DbFilmExportTests {
+    private static final int FILMS_COUNT = 300_000;
+    private static final int HEAP_SAMPLE_INTERVAL = 50_000;
+    private static final long MAX_HEAP_GROWTH_BYTES = 64L * 1024 * 1024;
+
+    private final DbFilmStorage filmStorage;
+    private final JdbcTemplate jdbc;
+
+    @BeforeEach
+    public void generateCatalog() {
+        jdbc.update("INSERT INTO film (name, description, release_date, duration, rating_id) " +
+                "SELECT 'Film ' || X, 'Description of film ' || X, DATEADD(DAY, MOD(X, 10000), DATE '1990-01-01'), " +
+                "MOD(X, 180) + 1, MOD(X, 5) + 1 FROM SYSTEM_RANGE(1, ?)", FILMS_COUNT);
+        jdbc.update("INSERT INTO film_genre_link (film_id, genre_id) SELECT id, MOD(id, 6) + 1 FROM film");
+        jdbc.update("INSERT INTO film_genre_link (film_id, genre_id) SELECT id, MOD(id + 3, 6) + 1 FROM film " +
+                "WHERE MOD(id, 2) = 0");
+    }
+
+    @Test
+    @Description("Выгрузка каталога отдаёт каждый фильм один раз по порядку и не накапливает фильмы в памяти")
+    public void testExportStreamsWholeCatalogWithFlatMemory() {
+        AtomicInteger exportedCount = new AtomicInteger();
+        AtomicInteger lastId = new AtomicInteger();
+        AtomicInteger filmsWithTwoGenres = new AtomicInteger();
+        AtomicLong peakHeapGrowth = new AtomicLong();
+        long baselineHeap = usedHeapAfterGc();
+
+        filmStorage.forEachFilm(film -> {
+            assertThat(film.getId()).isGreaterThan(lastId.get());
+            lastId.set(film.getId());
+            if (hasGenresInOrder(film)) {
+                filmsWithTwoGenres.incrementAndGet();
+            }
+            if (exportedCount.incrementAndGet() % HEAP_SAMPLE_INTERVAL == 0) {
+                peakHeapGrowth.accumulateAndGet(usedHeapAfterGc() - baselineHeap, Math::max);
+            }
+        });
+
+        assertThat(exportedCount.get()).isEqualTo(FILMS_COUNT);
+        assertThat(filmsWithTwoGenres.get()).isEqualTo(FILMS_COUNT / 2);
+        assertThat(peakHeapGrowth.get()).isLessThan(MAX_HEAP_GROWTH_BYTES);
+    }
+
+    private static boolean hasGenresInOrder(Film film) {
+        if (film.getGenres().size() != 2) {
+            return false;
+        }
+        int previousGenreId = 0;
+        for (var genre : film.getGenres()) {
+            assertThat(genre.getId()).isGreaterThan(previousGenreId);
+            previousGenreId = genre.getId();
+        }
+        return true;
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.helpers.GenerateRandomizeInstances;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.FriendWithMutualCount;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dao.DbUserStorage;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrationPostProcessor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Граф дружбы меняется только после фиксации транзакции, поэтому тесты работают без тестовой
+ * транзакции и сами удаляют записанные данные.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({DbUserStorage.class, SchemaMigrationPostProcessor.class})
+class DbFriendshipGraphTests {
+    private final DbUserStorage userStorage;
+    private final JdbcTemplate jdbc;
+    private final PlatformTransactionManager transactionManager;
+    private final AtomicInteger usersCount = new AtomicInteger();
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM friends_link");
+        jdbc.update("DELETE FROM users");
+    }
+
+    @Test
+    @Description("Общие друзья двух пользователей возвращаются по возрастанию id и меняются вместе с дружбой")
+    public void testFriendsIntersect() {
+        User first = addUser();
+        User second = addUser();
+        User commonFriend = addUser();
+        User anotherCommonFriend = addUser();
+        User onlyFirstFriend = addUser();
+        userStorage.addFriend(first.getId(), anotherCommonFriend.getId());
+        userStorage.addFriend(first.getId(), commonFriend.getId());
+        userStorage.addFriend(first.getId(), onlyFirstFriend.getId());
+        userStorage.addFriend(second.getId(), commonFriend.getId());
+        userStorage.addFriend(second.getId(), anotherCommonFriend.getId());
+
+        assertThat(userStorage.getFriendsIntersect(first.getId(), second.getId()))
+                .containsExactly(commonFriend, anotherCommonFriend);
+
+        userStorage.removeFriend(second.getId(), commonFriend.getId());
+        assertThat(userStorage.getFriendsIntersect(first.getId(), second.getId()))
+                .containsExactly(anotherCommonFriend);
+        assertThatThrownBy(() -> userStorage.getFriendsIntersect(first.getId(), 999999999))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("Пользователь с id = 999999999 не найден");
+    }
+
+    @Test
+    @Description("Друзья возвращаются по id вместе с числом общих друзей у каждого")
+    public void testFriendsWithMutualCounts() {
+        User user = addUser();
+        User friend = addUser();
+        User anotherFriend = addUser();
+        User lonelyFriend = addUser();
+        userStorage.addFriend(user.getId(), friend.getId());
+        userStorage.addFriend(user.getId(), anotherFriend.getId());
+        userStorage.addFriend(user.getId(), lonelyFriend.getId());
+        userStorage.addFriend(friend.getId(), anotherFriend.getId());
+        userStorage.addFriend(anotherFriend.getId(), friend.getId());
+        userStorage.addFriend(anotherFriend.getId(), lonelyFriend.getId());
+
+        assertThat(userStorage.getFriendsWithMutualCounts(user.getId())).containsExactly(
+                new FriendWithMutualCount(friend, 1),
+                new FriendWithMutualCount(anotherFriend, 2),
+                new FriendWithMutualCount(lonelyFriend, 0));
+        assertThat(userStorage.getFriendsWithMutualCounts(lonelyFriend.getId())).isEmpty();
+        assertThatThrownBy(() -> userStorage.getFriendsWithMutualCounts(999999999))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    @Description("Рекомендации друзей ранжируются по числу общих друзей и не включают текущих друзей")
+    public void testFriendSuggestions() {
+        User user = addUser();
+        User friend = addUser();
+        User anotherFriend = addUser();
+        User popularCandidate = addUser();
+        User candidate = addUser();
+        userStorage.addFriend(user.getId(), friend.getId());
+        userStorage.addFriend(user.getId(), anotherFriend.getId());
+        userStorage.addFriend(friend.getId(), anotherFriend.getId());
+        userStorage.addFriend(friend.getId(), user.getId());
+        userStorage.addFriend(friend.getId(), candidate.getId());
+        userStorage.addFriend(friend.getId(), popularCandidate.getId());
+        userStorage.addFriend(anotherFriend.getId(), popularCandidate.getId());
+
+        assertThat(userStorage.getFriendSuggestions(user.getId(), 10))
+                .containsExactly(new FriendSuggestion(popularCandidate, 2), new FriendSuggestion(candidate, 1));
+        assertThat(userStorage.getFriendSuggestions(user.getId(), 1))
+                .containsExactly(new FriendSuggestion(popularCandidate, 2));
+        assertThatThrownBy(() -> userStorage.getFriendSuggestions(999999999, 10))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    @Description("Дружба из откаченной транзакции не попадает в граф, из зафиксированной попадает")
+    public void testGraphFollowsCommittedFriendships() {
+        User first = addUser();
+        User second = addUser();
+        User commonFriend = addUser();
+        userStorage.addFriend(first.getId(), commonFriend.getId());
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            userStorage.addFriend(second.getId(), commonFriend.getId());
+            assertThat(userStorage.getFriendsIntersect(first.getId(), second.getId())).isEmpty();
+            status.setRollbackOnly();
+        });
+        assertThat(userStorage.getFriendsIntersect(first.getId(), second.getId())).isEmpty();
+
+        transaction.executeWithoutResult(status -> userStorage.addFriend(second.getId(), commonFriend.getId()));
+        assertThat(userStorage.getFriendsIntersect(first.getId(), second.getId())).containsExactly(commonFriend);
+    }
+
+    // Случайные логины могут совпасть, а данные здесь фиксируются, поэтому логин и email делаются уникальными
+    private User addUser() {
+        User user = GenerateRandomizeInstances.generateRandomUser();
+        int number = usersCount.incrementAndGet();
+        user.setLogin("friend" + number);
+        user.setEmail("friend" + number + "@mail.ru");
+        return userStorage.addUser(user);
+    }
+}
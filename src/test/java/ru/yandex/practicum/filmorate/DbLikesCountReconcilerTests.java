@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.helpers.GenerateRandomizeInstances;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dao.DbFilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.DbMpaStorage;
+import ru.yandex.practicum.filmorate.storage.dao.DbUserStorage;
+import ru.yandex.practicum.filmorate.storage.dao.LikesCountReconciler;
+import ru.yandex.practicum.filmorate.storage.dao.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrationPostProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сверка идёт параллельно с записью лайков в отдельных транзакциях, поэтому тест работает без тестовой
+ * транзакции и сам удаляет записанные данные.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({DbFilmStorage.class, DbUserStorage.class, DbMpaStorage.class, ReferenceDataCache.class,
+        LikesCountReconciler.class, SchemaMigrationPostProcessor.class})
+class DbLikesCountReconcilerTests {
+    private final DbFilmStorage filmStorage;
+    private final DbUserStorage userStorage;
+    private final DbMpaStorage mpaStorage;
+    private final LikesCountReconciler likesCountReconciler;
+    private final JdbcTemplate jdbc;
+    private final AtomicInteger usersCount = new AtomicInteger();
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM film_genre_link");
+        jdbc.update("DELETE FROM film");
+        jdbc.update("DELETE FROM users");
+    }
+
+    @Test
+    @Description("Сверка, идущая параллельно с лайками, не затирает их изменения устаревшим подсчётом")
+    public void testReconcileDoesNotOverwriteConcurrentLikes() throws Exception {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            films.add(addFilmWithMpa());
+        }
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            users.add(addUser());
+        }
+        int iterations = 100;
+        AtomicBoolean liking = new AtomicBoolean(true);
+        AtomicInteger fixedFilms = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(users.size() + 1);
+        try {
+            Future<?> reconciling = executor.submit(() -> {
+                while (liking.get()) {
+                    fixedFilms.addAndGet(likesCountReconciler.reconcile());
+                }
+                return null;
+            });
+            List<Future<?>> likers = new ArrayList<>();
+            for (User user : users) {
+                likers.add(executor.submit(() -> {
+                    for (int j = 0; j < iterations; j++) {
+                        Film film = films.get(j % films.size());
+                        if (j % 2 == 0) {
+                            filmStorage.addLike(film.getId(), user.getId());
+                        } else {
+                            filmStorage.removeLike(film.getId(), user.getId());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> liker : likers) {
+                liker.get(1, TimeUnit.MINUTES);
+            }
+            liking.set(false);
+            reconciling.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(fixedFilms.get()).isZero();
+        for (Film film : films) {
+            int likes = jdbc.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?", Integer.class,
+                    film.getId());
+            assertThat(filmStorage.getFilm(film.getId()).getLikesCount()).isEqualTo(likes);
+        }
+    }
+
+    private Film addFilmWithMpa() {
+        Film film = GenerateRandomizeInstances.generateRandomFilm();
+        film.setMpa(mpaStorage.getMpa(1));
+        return filmStorage.addFilm(film);
+    }
+
+    // Данные здесь фиксируются, поэтому логин и email делаются уникальными
+    private User addUser() {
+        User user = GenerateRandomizeInstances.generateRandomUser();
+        int number = usersCount.incrementAndGet();
+        user.setLogin("reconciled" + number);
+        user.setEmail("reconciled" + number + "@mail.ru");
+        return userStorage.addUser(user);
+    }
+}
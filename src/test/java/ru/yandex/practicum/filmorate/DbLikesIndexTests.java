@@ -0,0 +1,204 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.helpers.GenerateRandomizeInstances;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.dao.DbFilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.DbMpaStorage;
+import ru.yandex.practicum.filmorate.storage.dao.DbUserStorage;
+import ru.yandex.practicum.filmorate.storage.dao.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrationPostProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Индекс лайков меняется только после фиксации транзакции, поэтому тесты работают без тестовой
+ * транзакции и сами удаляют записанные данные.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({DbFilmStorage.class, DbUserStorage.class, DbMpaStorage.class, ReferenceDataCache.class,
+        SchemaMigrationPostProcessor.class})
+class DbLikesIndexTests {
+    private final DbFilmStorage filmStorage;
+    private final DbUserStorage userStorage;
+    private final DbMpaStorage mpaStorage;
+    private final JdbcTemplate jdbc;
+    private final PlatformTransactionManager transactionManager;
+    private final AtomicInteger usersCount = new AtomicInteger();
+
+    @AfterEach
+    void cleanUp() {
+        jdbc.update("DELETE FROM likes");
+        jdbc.update("DELETE FROM film_genre_link");
+        jdbc.update("DELETE FROM film");
+        jdbc.update("DELETE FROM friends_link");
+        jdbc.update("DELETE FROM users");
+    }
+
+    @Test
+    @Description("Рекомендации берутся из лайков похожих пользователей, без уже лайкнутых фильмов")
+    public void testRecommendedFilms() {
+        Film commonFilm = addFilmWithMpa();
+        Film closeNeighbourFilm = addFilmWithMpa();
+        Film farNeighbourFilm = addFilmWithMpa();
+        Film alreadyLikedFilm = addFilmWithMpa();
+        User user = addUser();
+        User closeNeighbour = addUser();
+        User farNeighbour = addUser();
+        filmStorage.addLike(commonFilm.getId(), user.getId());
+        filmStorage.addLike(alreadyLikedFilm.getId(), user.getId());
+        filmStorage.addLike(commonFilm.getId(), closeNeighbour.getId());
+        filmStorage.addLike(alreadyLikedFilm.getId(), closeNeighbour.getId());
+        filmStorage.addLike(closeNeighbourFilm.getId(), closeNeighbour.getId());
+        filmStorage.addLike(commonFilm.getId(), farNeighbour.getId());
+        filmStorage.addLike(farNeighbourFilm.getId(), farNeighbour.getId());
+
+        assertThat(filmStorage.getRecommendedFilms(user.getId(), 10))
+                .extracting(Film::getId)
+                .containsExactly(closeNeighbourFilm.getId(), farNeighbourFilm.getId());
+
+        filmStorage.removeLike(closeNeighbourFilm.getId(), closeNeighbour.getId());
+        filmStorage.applyLikeChanges(List.of(new LikeChange(farNeighbourFilm.getId(), user.getId(), true)));
+        assertThat(filmStorage.getRecommendedFilms(user.getId(), 10)).isEmpty();
+    }
+
+    @Test
+    @Description("Лайк из откаченной транзакции не попадает в индекс, из зафиксированной попадает")
+    public void testIndexFollowsCommittedLikes() {
+        Film commonFilm = addFilmWithMpa();
+        Film neighbourFilm = addFilmWithMpa();
+        User user = addUser();
+        User neighbour = addUser();
+        filmStorage.addLike(commonFilm.getId(), user.getId());
+        filmStorage.addLike(commonFilm.getId(), neighbour.getId());
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            filmStorage.addLike(neighbourFilm.getId(), neighbour.getId());
+            assertThat(filmStorage.getRecommendedFilms(user.getId(), 10)).isEmpty();
+            status.setRollbackOnly();
+        });
+        assertThat(filmStorage.getRecommendedFilms(user.getId(), 10)).isEmpty();
+
+        transaction.executeWithoutResult(status -> filmStorage.applyLikeChanges(
+                List.of(new LikeChange(neighbourFilm.getId(), neighbour.getId(), true))));
+        assertThat(filmStorage.getRecommendedFilms(user.getId(), 10))
+                .extracting(Film::getId)
+                .containsExactly(neighbourFilm.getId());
+    }
+
+    @Test
+    @Description("Параллельные лайки и их отмена оставляют индекс и счётчик в согласии с таблицей лайков")
+    public void testConcurrentLikesKeepIndexInCommitOrder() throws Exception {
+        Film commonFilm = addFilmWithMpa();
+        Film toggledFilm = addFilmWithMpa();
+        User user = addUser();
+        User neighbour = addUser();
+        filmStorage.addLike(commonFilm.getId(), user.getId());
+        filmStorage.addLike(commonFilm.getId(), neighbour.getId());
+        int threads = 8;
+        int iterations = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                boolean liking = i % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < iterations; j++) {
+                        if (liking || j % 3 == 0) {
+                            filmStorage.addLike(toggledFilm.getId(), neighbour.getId());
+                        } else {
+                            filmStorage.removeLike(toggledFilm.getId(), neighbour.getId());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int likes = jdbc.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?", Integer.class,
+                toggledFilm.getId());
+        assertThat(filmStorage.getFilm(toggledFilm.getId()).getLikesCount()).isEqualTo(likes);
+        assertThat(filmStorage.getRecommendedFilms(user.getId(), 10))
+                .extracting(Film::getId)
+                .isEqualTo(likes == 0 ? List.of() : List.of(toggledFilm.getId()));
+    }
+
+    @Test
+    @Description("Лайк, который параллельно зафиксировала другая транзакция, считается уже поставленным")
+    public void testDuplicateConcurrentLikeIsAlreadyLiked() throws Exception {
+        Film film = addFilmWithMpa();
+        User user = addUser();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch inserted = new CountDownLatch(1);
+            Future<?> otherInstance = executor.submit(() -> transaction.executeWithoutResult(status -> {
+                jdbc.update("INSERT INTO likes (user_id, film_id) VALUES (?, ?)", user.getId(), film.getId());
+                inserted.countDown();
+                sleep(300);
+            }));
+            assertThat(inserted.await(10, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(filmStorage.addLike(film.getId(), user.getId())).isFalse();
+            otherInstance.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(filmStorage.getFilm(film.getId()).getLikesCount()).isZero();
+    }
+
+    private Film addFilmWithMpa() {
+        Film film = GenerateRandomizeInstances.generateRandomFilm();
+        film.setMpa(mpaStorage.getMpa(1));
+        return filmStorage.addFilm(film);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Случайные логины могут совпасть, а данные здесь фиксируются, поэтому логин и email делаются уникальными
+    private User addUser() {
+        User user = GenerateRandomizeInstances.generateRandomUser();
+        int number = usersCount.incrementAndGet();
+        user.setLogin("liker" + number);
+        user.setEmail("liker" + number + "@mail.ru");
+        return userStorage.addUser(user);
+    }
+}
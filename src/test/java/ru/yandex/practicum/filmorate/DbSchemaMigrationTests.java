@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrationPostProcessor;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrator;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import(SchemaMigrationPostProcessor.class)
+class DbSchemaMigrationTests {
+    private final JdbcTemplate jdbc;
+    private final DataSource dataSource;
+
+    @Test
+    @Description("Миграции применяются по порядку один раз, повторный запуск на актуальной схеме ничего не выполняет")
+    public void testMigrationsAppliedOnceInOrder() {
+        List<Integer> versions = jdbc.queryForList("SELECT version FROM schema_history ORDER BY version", Integer.class);
+
+        assertThat(versions).containsExactly(1, 2, 3, 4);
+        assertThat(new SchemaMigrator(dataSource, SchemaMigrator.DEFAULT_LOCATION).migrate()).isZero();
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM genre", Integer.class)).isEqualTo(6);
+    }
+
+    @Test
+    @Description("Изменённый после применения скрипт останавливает миграцию")
+    public void testChangedMigrationIsRejected() {
+        SchemaMigrator changed = new SchemaMigrator(dataSource, "classpath:db/changed-migration/V*__*.sql");
+
+        assertThatThrownBy(changed::migrate)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("V1");
+    }
+
+    @Test
+    @Description("Связь фильма с жанром не задваивается")
+    public void testFilmGenreLinkHasPrimaryKey() {
+        jdbc.update("INSERT INTO film (name, description, release_date, duration, rating_id) " +
+                "VALUES ('Фильм', 'Описание', DATE '2000-01-01', 100, 1)");
+        Integer filmId = jdbc.queryForObject("SELECT MAX(id) FROM film", Integer.class);
+        jdbc.update("INSERT INTO film_genre_link (film_id, genre_id) VALUES (?, 1)", filmId);
+
+        assertThatThrownBy(() -> jdbc.update("INSERT INTO film_genre_link (film_id, genre_id) VALUES (?, 1)", filmId))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    @Description("Горячие запросы идут по индексам, а не полным проходом по таблице")
+    public void testHotQueriesUseIndexes() {
+        assertUsesIndex("SELECT f.* FROM film f ORDER BY f.likes_count DESC, f.id LIMIT 10",
+                "FILM_LIKES_COUNT_IDX");
+        assertUsesIndex("SELECT fgl.film_id, fgl.genre_id FROM film_genre_link fgl " +
+                "WHERE fgl.film_id IN (1, 2, 3) ORDER BY fgl.film_id, fgl.genre_id", "PRIMARY_KEY");
+        assertUsesIndex("SELECT film_id FROM film_genre_link WHERE genre_id = 1", "FILM_GENRE_LINK_GENRE_IDX");
+        assertUsesIndex("SELECT user_id FROM likes WHERE film_id = 1", "LIKES_FILM_IDX");
+        assertUsesIndex("SELECT user_id FROM friends_link WHERE friend_id = 1", "FRIENDS_LINK_FRIEND_IDX");
+        assertUsesIndex("SELECT u.* FROM friends_link fl JOIN users u ON u.id = fl.friend_id " +
+                "WHERE fl.user_id = 1 ORDER BY u.id", "PRIMARY_KEY");
+    }
+
+    private void assertUsesIndex(String query, String indexName) {
+        String plan = jdbc.queryForObject("EXPLAIN " + query, String.class);
+
+        assertThat(plan).as(plan).containsIgnoringCase(indexName).doesNotContainIgnoringCase("tableScan");
+    }
+}
@@ -0,0 +1,342 @@
+package ru.yandex.practicum.filmorate;
+
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.helpers.GenerateRandomizeInstances;
+import ru.yandex.practicum.filmorate.helpers.QueryCountingConfiguration;
+import ru.yandex.practicum.filmorate.helpers.QueryCountingDataSource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.dao.DbFilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.DbUserStorage;
+import ru.yandex.practicum.filmorate.storage.dao.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrationPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Число запросов к базе у методов FilmStorage и UserStorage. У каждого метода есть бюджет: метод выполняется
+ * на маленьком и большом наборе данных, и число запросов не должно превышать бюджет и расти вместе с данными.
+ * Новый метод хранилища без бюджета здесь роняет сборку. Отдельные тесты проверяют точное число запросов
+ * в сценариях, которые бюджетом не покрываются.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({DbFilmStorage.class, DbUserStorage.class, ReferenceDataCache.class, QueryCountingConfiguration.class,
+        SchemaMigrationPostProcessor.class})
+class DbStorageQueryCountTests {
+    private static final int SMALL_DATA_SIZE = 20;
+    private static final int LARGE_DATA_SIZE = 500;
+
+    private final DbFilmStorage filmStorage;
+    private final DbUserStorage userStorage;
+    private final QueryCountingDataSource queryCounter;
+    private final Map<String, Operation> operations = new LinkedHashMap<>();
+    private final List<User> users = new ArrayList<>();
+    private final List<Film> films = new ArrayList<>();
+    private int generatedCount;
+
+    @Autowired
+    DbStorageQueryCountTests(DbFilmStorage filmStorage, DbUserStorage userStorage, DataSource dataSource) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.queryCounter = QueryCountingDataSource.of(dataSource);
+
+        budget("addFilm", 4, () -> () -> filmStorage.addFilm(newFilm()));
+        budget("addFilms", 4, () -> {
+            List<Film> batch = Stream.generate(this::newFilm).limit(users.size() / 10).toList();
+            return () -> filmStorage.addFilms(batch);
+        });
+        budget("updateFilm", 5, () -> {
+            Film hubFilm = filmStorage.getFilm(hubFilm().getId());
+            hubFilm.setName("Обновлённый фильм");
+            return () -> filmStorage.updateFilm(hubFilm);
+        });
+        budget("getFilmsList", 2, () -> filmStorage::getFilmsList);
+        budget("getFilmsPage", 2, () -> () -> filmStorage.getFilmsPage(0, films.size()));
+        budget("forEachFilm", 2, () -> () -> filmStorage.forEachFilm(film -> { }));
+        budget("getFilm", 2, () -> () -> filmStorage.getFilm(hubFilm().getId()));
+        budget("addLike", 2, () -> {
+            User user = addUser();
+            return () -> filmStorage.addLike(hubFilm().getId(), user.getId());
+        });
+        budget("checksLikeUser", 0, () -> filmStorage::checksLikeUser);
+        budget("removeLike", 2, () -> () -> filmStorage.removeLike(hubFilm().getId(), users.getLast().getId()));
+        budget("applyLikeChanges", 3, () -> {
+            List<LikeChange> changes = users.stream()
+                    .map(user -> new LikeChange(films.get(1).getId(), user.getId(), true))
+                    .toList();
+            return () -> filmStorage.applyLikeChanges(changes);
+        });
+        budget("getPopularFilms", 2, () -> () -> filmStorage.getPopularFilms(films.size()));
+        budget("getRecommendedFilms", 3, () -> () -> filmStorage.getRecommendedFilms(users.get(1).getId(), 10));
+
+        budget("findUserById", 1, () -> () -> userStorage.findUserById(hubUser().getId()));
+        budget("addUser", 2, () -> () -> userStorage.addUser(newUser()));
+        budget("addUsers", 2, () -> {
+            List<User> batch = Stream.generate(this::newUser).limit(users.size() / 10).toList();
+            return () -> userStorage.addUsers(batch);
+        });
+        budget("updateUser", 3, () -> {
+            User hubUser = userStorage.findUserById(hubUser().getId());
+            hubUser.setName("Обновлённый пользователь");
+            return () -> userStorage.updateUser(hubUser);
+        });
+        budget("getUsersList", 1, () -> userStorage::getUsersList);
+        budget("getUsersPage", 1, () -> () -> userStorage.getUsersPage(0, users.size()));
+        budget("isLoginTaken", 1, () -> () -> userStorage.isLoginTaken(hubUser().getLogin()));
+        budget("isEmailTaken", 1, () -> () -> userStorage.isEmailTaken(hubUser().getEmail()));
+        budget("addFriend", 1, () -> {
+            User user = addUser();
+            return () -> userStorage.addFriend(hubUser().getId(), user.getId());
+        });
+        budget("removeFriend", 1, () -> () -> userStorage.removeFriend(hubUser().getId(), users.getLast().getId()));
+        budget("getFriendsList", 2, () -> () -> userStorage.getFriendsList(hubUser().getId()));
+        budget("getFriendsWithMutualCounts", 2, () -> () -> userStorage.getFriendsWithMutualCounts(hubUser().getId()));
+        budget("getFriendsLists", 1, () -> {
+            List<Integer> userIds = users.stream().map(User::getId).toList();
+            return () -> userStorage.getFriendsLists(userIds);
+        });
+        budget("getFriendsIntersect", 1,
+                () -> () -> userStorage.getFriendsIntersect(hubUser().getId(), users.get(1).getId()));
+        budget("getFriendSuggestions", 2, () -> () -> userStorage.getFriendSuggestions(users.get(1).getId(), 10));
+    }
+
+    @Test
+    @Description("У каждого публичного метода FilmStorage и UserStorage есть бюджет запросов")
+    public void testEveryStorageMethodHasBudget() {
+        Set<String> storageMethods = new TreeSet<>();
+        for (Class<?> storage : List.of(FilmStorage.class, UserStorage.class)) {
+            Stream.of(storage.getMethods()).map(Method::getName).forEach(storageMethods::add);
+        }
+
+        assertThat(operations.keySet()).containsExactlyInAnyOrderElementsOf(storageMethods);
+    }
+
+    @Test
+    @Description("Методы хранилищ укладываются в бюджет запросов, и он не растёт вместе с объёмом данных")
+    public void testStorageMethodsStayWithinBudgetAtTwoDataSizes() {
+        grow(SMALL_DATA_SIZE);
+        Map<String, QueryCountingDataSource.Usage> small = measureAll();
+        grow(LARGE_DATA_SIZE);
+        Map<String, QueryCountingDataSource.Usage> large = measureAll();
+
+        SoftAssertions softly = new SoftAssertions();
+        operations.forEach((name, operation) -> {
+            softly.assertThat(small.get(name).count()).as("%s на %d записях: %s", name, SMALL_DATA_SIZE,
+                    small.get(name).statements()).isLessThanOrEqualTo(operation.budget());
+            softly.assertThat(large.get(name).count()).as("%s на %d записях: %s", name, LARGE_DATA_SIZE,
+                    large.get(name).statements()).isEqualTo(small.get(name).count());
+        });
+        softly.assertAll();
+    }
+
+    @Test
+    @Description("Количество запросов при получении списка фильмов не зависит от размера каталога")
+    public void testFilmsListQueryCountDoesNotGrowWithCatalog() {
+        addFilms(10);
+        int smallCatalogQueries = countQueries(filmStorage::getFilmsList);
+        addFilms(1200);
+        int largeCatalogQueries = countQueries(filmStorage::getFilmsList);
+
+        assertThat(smallCatalogQueries).isEqualTo(2);
+        assertThat(largeCatalogQueries).isEqualTo(smallCatalogQueries);
+    }
+
+    @Test
+    @Description("Количество запросов при получении популярных фильмов не зависит от их числа")
+    public void testPopularFilmsQueryCountDoesNotGrowWithCount() {
+        addFilms(50);
+        int fewFilmsQueries = countQueries(() -> filmStorage.getPopularFilms(5));
+        int manyFilmsQueries = countQueries(() -> filmStorage.getPopularFilms(50));
+
+        assertThat(fewFilmsQueries).isEqualTo(2);
+        assertThat(manyFilmsQueries).isEqualTo(fewFilmsQueries);
+    }
+
+    @Test
+    @Description("Проверка жанров и рейтинга при добавлении фильма не обращается к базе данных")
+    public void testAddFilmQueryCountDoesNotDependOnGenres() {
+        Film oneGenreFilm = GenerateRandomizeInstances.generateRandomFilm();
+        oneGenreFilm.setMpa(mpa(1));
+        oneGenreFilm.setGenres(Set.of(genre(1)));
+        Film fiveGenresFilm = GenerateRandomizeInstances.generateRandomFilm();
+        fiveGenresFilm.setMpa(mpa(2));
+        fiveGenresFilm.setGenres(Set.of(genre(1), genre(2), genre(3), genre(4), genre(5)));
+        addFilms(1);
+
+        int oneGenreQueries = countQueries(() -> filmStorage.addFilm(oneGenreFilm));
+        int fiveGenresQueries = countQueries(() -> filmStorage.addFilm(fiveGenresFilm));
+
+        assertThat(oneGenreQueries).isEqualTo(4);
+        assertThat(fiveGenresQueries).isEqualTo(oneGenreQueries);
+    }
+
+    @Test
+    @Description("Лайк и его отмена выполняются без предварительной загрузки фильма и пользователя")
+    public void testLikeMutationsQueryCount() {
+        addFilms(1);
+        int filmId = filmStorage.getPopularFilms(1).getFirst().getId();
+        User user = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+
+        assertThat(countQueries(() -> filmStorage.addLike(filmId, user.getId()))).isEqualTo(2);
+        assertThat(countQueries(() -> filmStorage.addLike(filmId, user.getId()))).isEqualTo(1);
+        assertThat(countQueries(() -> filmStorage.removeLike(filmId, user.getId()))).isEqualTo(2);
+    }
+
+    @Test
+    @Description("Добавление и удаление друга выполняются одним запросом")
+    public void testFriendMutationsQueryCount() {
+        User user = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        User friend = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+
+        assertThat(countQueries(() -> userStorage.addFriend(user.getId(), friend.getId()))).isEqualTo(1);
+        assertThat(countQueries(() -> userStorage.addFriend(user.getId(), friend.getId()))).isEqualTo(1);
+        assertThat(countQueries(() -> userStorage.removeFriend(user.getId(), friend.getId()))).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Списки друзей для страницы пользователей загружаются одним запросом независимо от её размера")
+    public void testFriendsListsQueryCountDoesNotGrowWithUsers() {
+        List<User> users = addUsersWithFriends(10);
+        List<Integer> userIds = users.stream().map(User::getId).toList();
+        int fewUsersQueries = countQueries(() -> userStorage.getFriendsLists(userIds));
+        List<Integer> allUserIds = addUsersWithFriends(1200).stream().map(User::getId).toList();
+        int manyUsersQueries = countQueries(() -> userStorage.getFriendsLists(allUserIds));
+
+        assertThat(fewUsersQueries).isEqualTo(1);
+        assertThat(manyUsersQueries).isEqualTo(fewUsersQueries);
+        Map<Integer, List<User>> friendsByUserId = userStorage.getFriendsLists(userIds);
+        assertThat(friendsByUserId).containsOnlyKeys(userIds);
+        assertThat(friendsByUserId.get(users.get(2).getId()))
+                .containsExactly(users.get(0), users.get(1));
+        assertThat(friendsByUserId.get(users.get(0).getId())).isEmpty();
+    }
+
+    private void budget(String method, int maxQueries, Preparation preparation) {
+        operations.put(method, new Operation(maxQueries, preparation));
+    }
+
+    private Map<String, QueryCountingDataSource.Usage> measureAll() {
+        Map<String, QueryCountingDataSource.Usage> usages = new LinkedHashMap<>();
+        operations.forEach((name, operation) ->
+                usages.put(name, queryCounter.measure(operation.preparation().prepare())));
+        return usages;
+    }
+
+    // Первый пользователь дружит со всеми, первый фильм лайкают все: запросы к ним растут вместе с данными
+    private void grow(int size) {
+        while (users.size() < size) {
+            User user = addUser();
+            if (users.size() > 1) {
+                userStorage.addFriend(hubUser().getId(), user.getId());
+                userStorage.addFriend(user.getId(), hubUser().getId());
+            }
+            Film film = filmStorage.addFilm(newFilm());
+            films.add(film);
+            filmStorage.addLike(hubFilm().getId(), user.getId());
+            filmStorage.addLike(film.getId(), user.getId());
+        }
+    }
+
+    private User hubUser() {
+        return users.getFirst();
+    }
+
+    private Film hubFilm() {
+        return films.getFirst();
+    }
+
+    private User addUser() {
+        User user = userStorage.addUser(newUser());
+        users.add(user);
+        return user;
+    }
+
+    private User newUser() {
+        User user = GenerateRandomizeInstances.generateRandomUser();
+        generatedCount++;
+        user.setLogin("budget" + generatedCount);
+        user.setEmail("budget" + generatedCount + "@example.com");
+        return user;
+    }
+
+    private Film newFilm() {
+        Film film = GenerateRandomizeInstances.generateRandomFilm();
+        film.setMpa(mpa(1));
+        film.setGenres(Set.of(genre(1)));
+        return film;
+    }
+
+    private List<User> addUsersWithFriends(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = GenerateRandomizeInstances.generateRandomUser();
+            user.setLogin("user" + count + "_" + i);
+            user.setEmail("user" + count + "_" + i + "@example.com");
+            userStorage.addUser(user);
+            if (users.size() >= 2) {
+                userStorage.addFriend(user.getId(), users.get(0).getId());
+                userStorage.addFriend(user.getId(), users.get(1).getId());
+            }
+            users.add(user);
+        }
+        return users;
+    }
+
+    private void addFilms(int count) {
+        for (int i = 0; i < count; i++) {
+            Film film = GenerateRandomizeInstances.generateRandomFilm();
+            film.setMpa(mpa(1));
+            film.setGenres(Set.of(genre(1), genre(2)));
+            filmStorage.addFilm(film);
+        }
+    }
+
+    private int countQueries(Runnable block) {
+        return queryCounter.count(block);
+    }
+
+    private static Mpa mpa(int id) {
+        Mpa mpa = new Mpa();
+        mpa.setId(id);
+        return mpa;
+    }
+
+    private static Genre genre(int id) {
+        Genre genre = new Genre();
+        genre.setId(id);
+        return genre;
+    }
+
+    /**
+     * Подготовка данных вне подсчёта; возвращает блок, запросы которого считаются.
+     */
+    @FunctionalInterface
+    private interface Preparation {
+        Runnable prepare();
+    }
+
+    private record Operation(int budget, Preparation preparation) {
+    }
+}
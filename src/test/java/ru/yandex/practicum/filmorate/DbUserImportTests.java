@@ -0,0 +1,165 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.helpers.GenerateRandomizeInstances;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserImportReport;
+import ru.yandex.practicum.filmorate.service.UserImportService;
+import ru.yandex.practicum.filmorate.storage.dao.DbUserStorage;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrationPostProcessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@Import({DbUserStorage.class, SchemaMigrationPostProcessor.class})
+class DbUserImportTests {
+    private static final int GENERATED_USERS_COUNT = 100_000;
+    private static final long MAX_HEAP_GROWTH_BYTES = 64L * 1024 * 1024;
+
+    private final DbUserStorage userStorage;
+    private final JdbcTemplate jdbc;
+    private final UserImportService importService;
+
+    @Autowired
+    DbUserImportTests(DbUserStorage userStorage, JdbcTemplate jdbc) {
+        this.userStorage = userStorage;
+        this.jdbc = jdbc;
+        this.importService = new UserImportService(userStorage,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper().findAndRegisterModules());
+    }
+
+    @Test
+    @Description("CSV с кавычками импортируется, ошибочные строки попадают в отчёт и не мешают остальным")
+    public void testCsvImportReportsFailedRows() {
+        User existing = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        String csv = """
+                email,login,birthday,name
+                anna@mail.ru,anna,1990-05-01,"Анна ""Аня"", Петрова"
+                bad-email,boris,1991-01-01,Борис
+                vera@mail.ru,vera,not-a-date,Вера
+                dup@mail.ru,anna,1992-01-01,Повтор логина
+                taken@mail.ru,%s,1993-01-01,Занятый логин
+                gleb@mail.ru,gleb,,
+                lonely,field
+                """.formatted(existing.getLogin());
+
+        UserImportReport report = importService.importUsers(stream(csv), UserImportService.TEXT_CSV);
+
+        assertThat(report.imported()).isEqualTo(2);
+        assertThat(report.failed()).isEqualTo(5);
+        assertThat(report.errors()).extracting(UserImportReport.RowError::row).containsExactly(2L, 3L, 4L, 5L, 7L);
+        assertThat(report.errors().get(1).message()).contains("дата рождения");
+        User anna = userStorage.getUsersList().stream().filter(user -> user.getLogin().equals("anna")).findFirst()
+                .orElseThrow();
+        assertThat(anna.getName()).isEqualTo("Анна \"Аня\", Петрова");
+        assertThat(anna.getBirthday()).isEqualTo(LocalDate.of(1990, 5, 1));
+        assertThat(userStorage.isLoginTaken("gleb")).isTrue();
+        assertThatThrownBy(() -> importService.importUsers(stream("login,phone\n"), UserImportService.TEXT_CSV))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    @Description("Разделители входят в ограничение длины строки, лишние поля отклоняют строку, а не копятся")
+    public void testCsvLimitsSeparatorsAndFields() {
+        String csv = "login,email\n" +
+                ",".repeat(200_000) + "\n" +
+                "ivan,ivan@mail.ru,лишнее,ещё,и ещё\n" +
+                "olga,olga@mail.ru\n";
+
+        UserImportReport report = importService.importUsers(stream(csv), UserImportService.TEXT_CSV);
+
+        assertThat(report.imported()).isEqualTo(1);
+        assertThat(report.errors()).extracting(UserImportReport.RowError::row).containsExactly(1L, 2L);
+        assertThat(report.errors().get(0).message()).contains("длиннее");
+        assertThat(report.errors().get(1).message()).contains("получено: 5");
+        assertThatThrownBy(() -> importService.importUsers(stream("login,email,name,birthday,login\n"),
+                UserImportService.TEXT_CSV))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    @Description("NDJSON читается построчно, некорректный JSON отклоняет только свою строку")
+    public void testNdjsonImport() {
+        String ndjson = """
+                {"login":"dima","email":"dima@mail.ru","name":"Дима","birthday":"2000-02-02"}
+                {"login":"egor","email":
+
+                {"login":"zhenya","email":"zhenya@mail.ru","birthday":"2001-03-03"}
+                """;
+
+        UserImportReport report = importService.importUsers(stream(ndjson), MediaType.APPLICATION_NDJSON);
+
+        assertThat(report.imported()).isEqualTo(2);
+        assertThat(report.errors()).extracting(UserImportReport.RowError::row).containsExactly(2L);
+        assertThat(userStorage.isEmailTaken("zhenya@mail.ru")).isTrue();
+    }
+
+    @Test
+    @Description("Большой файл импортируется пачками без роста памяти вместе с размером файла")
+    public void testLargeImportKeepsMemoryFlat() {
+        long baselineHeap = usedHeapAfterGc();
+
+        UserImportReport report = importService.importUsers(new GeneratedCsv(GENERATED_USERS_COUNT),
+                UserImportService.TEXT_CSV);
+
+        assertThat(report.imported()).isEqualTo(GENERATED_USERS_COUNT);
+        assertThat(report.failed()).isZero();
+        assertThat(jdbc.queryForObject("select count(*) from users", Integer.class)).isEqualTo(GENERATED_USERS_COUNT);
+        assertThat(usedHeapAfterGc() - baselineHeap).isLessThan(MAX_HEAP_GROWTH_BYTES);
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * CSV, который генерируется по мере чтения и целиком в памяти не существует.
+     */
+    private static final class GeneratedCsv extends InputStream {
+        private final int rowsCount;
+        private int nextRow;
+        private byte[] current = "login,email,birthday\n".getBytes(StandardCharsets.UTF_8);
+        private int position;
+
+        GeneratedCsv(int rowsCount) {
+            this.rowsCount = rowsCount;
+        }
+
+        @Override
+        public int read() {
+            if (position == current.length) {
+                if (nextRow == rowsCount) {
+                    return -1;
+                }
+                nextRow++;
+                current = ("user" + nextRow + ",user" + nextRow + "@mail.ru,1990-01-01\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                position = 0;
+            }
+            return current[position++];
+        }
+    }
+}
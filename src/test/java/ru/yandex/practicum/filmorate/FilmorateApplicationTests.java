@@ -7,18 +7,25 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Description;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.exception.DatabaseValidationException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.helpers.GenerateRandomizeInstances;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendWithMutualCount;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeChange;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.dao.DbFilmStorage;
 import ru.yandex.practicum.filmorate.storage.dao.DbGenreStorage;
 import ru.yandex.practicum.filmorate.storage.dao.DbMpaStorage;
 import ru.yandex.practicum.filmorate.storage.dao.DbUserStorage;
+import ru.yandex.practicum.filmorate.storage.dao.LikesCountReconciler;
+import ru.yandex.practicum.filmorate.storage.dao.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrationPostProcessor;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -28,12 +35,15 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 @JdbcTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({DbUserStorage.class, DbFilmStorage.class, DbMpaStorage.class, DbGenreStorage.class})
+@Import({DbUserStorage.class, DbFilmStorage.class, DbMpaStorage.class, DbGenreStorage.class, ReferenceDataCache.class,
+        LikesCountReconciler.class, SchemaMigrationPostProcessor.class})
 class FilmorateApplicationTests {
     private final DbUserStorage userStorage;
     private final DbFilmStorage filmStorage;
     private final DbMpaStorage mpaStorage;
     private final DbGenreStorage genreStorage;
+    private final LikesCountReconciler likesCountReconciler;
+    private final JdbcTemplate jdbc;
 
     @Test
     @Description("Проверка, что добавленный пользователь аналогичен тому, что возвращается по запросу")
@@ -69,6 +79,20 @@ class FilmorateApplicationTests {
         assertThat(users).isEmpty();
     }
 
+    @Test
+    @Description("Постраничное получение пользователей отдаёт записи по возрастанию id без пропусков и повторов")
+    public void testUsersPage() {
+        User first = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        User second = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        User third = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+
+        List<User> firstPage = userStorage.getUsersPage(0, 2);
+        List<User> secondPage = userStorage.getUsersPage(firstPage.getLast().getId(), 2);
+
+        assertThat(firstPage).containsExactly(first, second);
+        assertThat(secondPage).containsExactly(third);
+    }
+
     @Test
     @Description("Проверим, что при добавлении пользователя добавляемый появляется в друзьях у добавляющего")
     public void testAddFriendToUser() {
@@ -112,6 +136,68 @@ class FilmorateApplicationTests {
                 .hasMessageContaining("Пользователь с id = 999999999 не найден");
     }
 
+    @Test
+    @Description("Повторное добавление в друзья не создаёт дубль и не падает, удаление несуществующего пользователя даёт 404")
+    public void testAddFriendIsIdempotent() {
+        User addedUser = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        User anotherUser = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        userStorage.addFriend(anotherUser.getId(), addedUser.getId());
+        userStorage.addFriend(anotherUser.getId(), addedUser.getId());
+
+        assertThat(userStorage.getFriendsList(anotherUser.getId())).containsExactly(addedUser);
+        assertThatThrownBy(() -> userStorage.removeFriend(999999999, addedUser.getId()))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("Пользователь с id = 999999999 не найден");
+    }
+
+    @Test
+    @Description("Число общих друзей видит ещё не закоммиченную дружбу так же, как и список друзей")
+    public void testMutualCountsMatchFriendsInSameTransaction() {
+        User user = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        User friend = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        User commonFriend = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        userStorage.addFriend(user.getId(), friend.getId());
+        userStorage.addFriend(user.getId(), commonFriend.getId());
+        userStorage.addFriend(friend.getId(), commonFriend.getId());
+
+        assertThat(userStorage.getFriendsWithMutualCounts(user.getId())).containsExactly(
+                new FriendWithMutualCount(friend, 1),
+                new FriendWithMutualCount(commonFriend, 0));
+    }
+
+    @Test
+    @Description("Занятость логина и email видна сразу после добавления и обновления пользователя")
+    public void testLoginAndEmailAvailability() {
+        User user = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        String oldLogin = user.getLogin();
+
+        assertThat(userStorage.isLoginTaken(oldLogin)).isTrue();
+        assertThat(userStorage.isEmailTaken(user.getEmail())).isTrue();
+        assertThat(userStorage.isLoginTaken(oldLogin + "_free")).isFalse();
+        assertThat(userStorage.isEmailTaken("free_" + user.getEmail())).isFalse();
+
+        user.setLogin(oldLogin + "_renamed");
+        userStorage.updateUser(user);
+        assertThat(userStorage.isLoginTaken(oldLogin + "_renamed")).isTrue();
+        assertThat(userStorage.isLoginTaken(oldLogin)).isFalse();
+    }
+
+    @Test
+    @Description("Занятый логин или email при добавлении и обновлении пользователя даёт ошибку валидации")
+    public void testDuplicateLoginOrEmailIsRejected() {
+        User user = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        User duplicate = GenerateRandomizeInstances.generateRandomUser();
+        duplicate.setLogin(user.getLogin());
+
+        assertThatThrownBy(() -> userStorage.addUser(duplicate))
+                .isInstanceOf(DatabaseValidationException.class);
+
+        User another = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        another.setEmail(user.getEmail());
+        assertThatThrownBy(() -> userStorage.updateUser(another))
+                .isInstanceOf(DatabaseValidationException.class);
+    }
+
     @Test
     @Description("Проверим, что выбрасывается исключение при добавлении в друзья самого себя")
     public void testThrowExceptionOnAddedToFriendsItself() {
@@ -157,6 +243,45 @@ class FilmorateApplicationTests {
                 .isEqualTo(film);
     }
 
+    @Test
+    @Description("Пакетно добавляем фильмы: возвращаются id в порядке запроса, жанры сохраняются")
+    public void addFilmsBatch() {
+        Genre genre = genreStorage.getGenre(1);
+        Genre genre2 = genreStorage.getGenre(2);
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            Film film = GenerateRandomizeInstances.generateRandomFilm();
+            film.setMpa(mpaStorage.getMpa(1 + i % 5));
+            film.setGenres(i % 2 == 0 ? Set.of(genre, genre2) : Set.of());
+            films.add(film);
+        }
+
+        List<Integer> filmIds = filmStorage.addFilms(films);
+
+        assertThat(filmIds).hasSize(films.size()).isSorted().doesNotHaveDuplicates();
+        assertThat(filmStorage.getFilm(filmIds.getFirst()).getGenres()).containsExactly(genre, genre2);
+        assertThat(filmStorage.getFilm(filmIds.get(1)).getGenres()).isEmpty();
+        assertThat(filmStorage.getFilm(filmIds.getLast()))
+                .extracting(Film::getName, Film::getDuration)
+                .containsExactly(films.getLast().getName(), films.getLast().getDuration());
+    }
+
+    @Test
+    @Description("Пакетное добавление с несуществующим жанром не добавляет ни одного фильма")
+    public void addFilmsBatchWithIncorrectGenre() {
+        Film film = GenerateRandomizeInstances.generateRandomFilm();
+        film.setMpa(mpaStorage.getMpa(1));
+        Film filmWithIncorrectGenre = GenerateRandomizeInstances.generateRandomFilm();
+        Genre genre = new Genre();
+        genre.setId(999);
+        filmWithIncorrectGenre.setGenres(Set.of(genre));
+
+        assertThatThrownBy(() -> filmStorage.addFilms(List.of(film, filmWithIncorrectGenre)))
+                .isInstanceOf(DatabaseValidationException.class)
+                .hasMessageContaining("Жанр с id 999 не найден в базе данных.");
+        assertThat(filmStorage.getFilmsPage(0, 1)).isEmpty();
+    }
+
     @Test
     @Description("Добавляем фильм с несуществующим рейтингом")
     public void addFilmWithIncorrectMpa() {
@@ -215,6 +340,27 @@ class FilmorateApplicationTests {
         assertThat(film.getId()).isEqualTo(getFilm.getId());
     }
 
+    @Test
+    @Description("Постраничное получение фильмов отдаёт записи по возрастанию id вместе с жанрами")
+    public void testFilmsPage() {
+        Genre genre = genreStorage.getGenre(1);
+        Mpa mpa = mpaStorage.getMpa(1);
+        List<Integer> addedIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Film film = GenerateRandomizeInstances.generateRandomFilm();
+            film.setGenres(Set.of(genre));
+            film.setMpa(mpa);
+            addedIds.add(filmStorage.addFilm(film).getId());
+        }
+
+        List<Film> firstPage = filmStorage.getFilmsPage(addedIds.getFirst() - 1, 2);
+        List<Film> secondPage = filmStorage.getFilmsPage(firstPage.getLast().getId(), 2);
+
+        assertThat(firstPage).extracting(Film::getId).containsExactly(addedIds.get(0), addedIds.get(1));
+        assertThat(secondPage).extracting(Film::getId).containsExactly(addedIds.get(2));
+        assertThat(firstPage).allSatisfy(film -> assertThat(film.getGenres()).containsExactly(genre));
+    }
+
     @Test
     public void testGetFilm_NotFound() {
         assertThatThrownBy(() -> filmStorage.getFilm(-1))
@@ -237,6 +383,103 @@ class FilmorateApplicationTests {
         assertThat(thisFilm.getLikesCount()).isEqualTo(0);
     }
 
+    @Test
+    @Description("Популярные фильмы и список фильмов возвращаются вместе с жанрами")
+    public void testPopularFilmsContainGenres() {
+        Film film = GenerateRandomizeInstances.generateRandomFilm();
+        Genre genre = genreStorage.getGenre(1);
+        Genre genre2 = genreStorage.getGenre(2);
+        film.setGenres(Set.of(genre, genre2));
+        film.setMpa(mpaStorage.getMpa(1));
+        Film addedFilm = filmStorage.addFilm(film);
+
+        List<Film> popularFilms = filmStorage.getPopularFilms(10);
+        assertThat(popularFilms)
+                .filteredOn(popularFilm -> popularFilm.getId() == addedFilm.getId())
+                .singleElement()
+                .satisfies(popularFilm -> assertThat(popularFilm.getGenres()).containsExactly(genre, genre2));
+        assertThat(filmStorage.getFilmsList())
+                .filteredOn(listedFilm -> listedFilm.getId() == addedFilm.getId())
+                .singleElement()
+                .satisfies(listedFilm -> assertThat(listedFilm.getGenres()).containsExactly(genre, genre2));
+    }
+
+    @Test
+    @Description("Популярные фильмы упорядочены по счётчику лайков, который меняется вместе с лайками")
+    public void testPopularFilmsOrderedByLikesCount() {
+        Film lessLiked = addFilmWithMpa();
+        Film mostLiked = addFilmWithMpa();
+        User firstUser = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        User secondUser = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        filmStorage.addLike(mostLiked.getId(), firstUser.getId());
+        filmStorage.addLike(mostLiked.getId(), secondUser.getId());
+        filmStorage.addLike(lessLiked.getId(), firstUser.getId());
+        filmStorage.removeLike(lessLiked.getId(), secondUser.getId());
+
+        assertThat(filmStorage.getPopularFilms(2))
+                .extracting(Film::getId)
+                .containsExactly(mostLiked.getId(), lessLiked.getId());
+        assertThat(likesCountOf(mostLiked.getId())).isEqualTo(2);
+        assertThat(likesCountOf(lessLiked.getId())).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Сверка счётчиков лайков исправляет только разошедшиеся с таблицей likes значения")
+    public void testLikesCountReconciliationFixesDrift() {
+        Film film = addFilmWithMpa();
+        Film anotherFilm = addFilmWithMpa();
+        User user = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        filmStorage.addLike(film.getId(), user.getId());
+        filmStorage.addLike(anotherFilm.getId(), user.getId());
+        jdbc.update("UPDATE film SET likes_count = 42 WHERE id = ?", film.getId());
+
+        assertThat(likesCountReconciler.reconcile()).isEqualTo(1);
+        assertThat(likesCountOf(film.getId())).isEqualTo(1);
+        assertThat(likesCountOf(anotherFilm.getId())).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Пачка изменений лайков учитывает повторы и отмены, пропуская несуществующих пользователей")
+    public void testApplyLikeChanges() {
+        Film film = addFilmWithMpa();
+        Film anotherFilm = addFilmWithMpa();
+        User firstUser = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        User secondUser = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        filmStorage.addLike(anotherFilm.getId(), firstUser.getId());
+        filmStorage.addLike(film.getId(), firstUser.getId());
+
+        filmStorage.applyLikeChanges(List.of(
+                new LikeChange(film.getId(), firstUser.getId(), true),
+                new LikeChange(film.getId(), secondUser.getId(), true),
+                new LikeChange(film.getId(), -1, true),
+                new LikeChange(anotherFilm.getId(), firstUser.getId(), false),
+                new LikeChange(anotherFilm.getId(), secondUser.getId(), false)));
+
+        assertThat(likesCountOf(film.getId())).isEqualTo(2);
+        assertThat(likesCountOf(anotherFilm.getId())).isEqualTo(0);
+        assertThat(likesCountReconciler.reconcile()).isZero();
+    }
+
+    @Test
+    @Description("Повторный лайк не меняет счётчик, лайк несуществующего пользователя или фильму даёт 404")
+    public void testAddLikeIsIdempotentAndChecksReferences() {
+        Film film = addFilmWithMpa();
+        User user = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        filmStorage.addLike(film.getId(), user.getId());
+        filmStorage.addLike(film.getId(), user.getId());
+
+        assertThat(likesCountOf(film.getId())).isEqualTo(1);
+        assertThatThrownBy(() -> filmStorage.addLike(film.getId(), 999999999))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("Пользователь с id = 999999999 не найден");
+        assertThatThrownBy(() -> filmStorage.addLike(999999999, user.getId()))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("Film not found with id: 999999999");
+        assertThatThrownBy(() -> filmStorage.removeLike(999999999, user.getId()))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("Film not found with id: 999999999");
+    }
+
     @Test
     public void testAddFilmWithIncorrectMpa() {
         Film film = GenerateRandomizeInstances.generateRandomFilm();
@@ -269,4 +512,13 @@ class FilmorateApplicationTests {
                 .hasMessageContaining("Жанр с id 999 не найден в базе данных.");
     }
 
-}
\ No newline at end of file
+    private Film addFilmWithMpa() {
+        Film film = GenerateRandomizeInstances.generateRandomFilm();
+        film.setMpa(mpaStorage.getMpa(1));
+        return filmStorage.addFilm(film);
+    }
+
+    private int likesCountOf(int filmId) {
+        return jdbc.queryForObject("SELECT likes_count FROM film WHERE id = ?", Integer.class, filmId);
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Description;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.dao.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrationPostProcessor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import(SchemaMigrationPostProcessor.class)
+class ReferenceDataCacheTests {
+    private final JdbcTemplate jdbc;
+
+    @Test
+    @Description("Новый жанр виден только после явного перечитывания справочников")
+    public void testRefreshReloadsReferenceData() {
+        ReferenceDataCache cache = new ReferenceDataCache(jdbc);
+        assertThat(cache.getGenres()).hasSize(6);
+        jdbc.update("INSERT INTO genre (name) VALUES ('Вестерн')");
+        Integer genreId = jdbc.queryForObject("SELECT id FROM genre WHERE name = 'Вестерн'", Integer.class);
+
+        assertThat(cache.findGenre(genreId)).isEmpty();
+        cache.refresh();
+
+        assertThat(cache.getGenres()).hasSize(7);
+        assertThat(cache.findGenre(genreId)).map(Genre::getName).contains("Вестерн");
+    }
+
+    @Test
+    @Description("Попадания и промахи считаются и публикуются в метриках")
+    public void testHitAndMissMetrics() {
+        ReferenceDataCache cache = new ReferenceDataCache(jdbc);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+
+        cache.findGenre(1);
+        cache.findMpa(1);
+        cache.findMpa(999);
+
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(registry.get("filmorate.reference.cache.requests").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(2);
+        assertThat(registry.get("filmorate.reference.cache.requests").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("filmorate.reference.cache.size").tag("table", "genre")
+                .gauge().value()).isEqualTo(6);
+    }
+
+    @Test
+    @Description("Изменение полученного жанра не затрагивает кэш")
+    public void testReturnedValuesAreCopies() {
+        ReferenceDataCache cache = new ReferenceDataCache(jdbc);
+
+        cache.findGenre(1).orElseThrow().setName("Изменено");
+        cache.getMpaList().getFirst().setName("Изменено");
+
+        assertThat(cache.findGenre(1)).map(Genre::getName).contains("Комедия");
+        assertThat(cache.getMpaList().getFirst().getName()).isEqualTo("G");
+    }
+}
@@ -0,0 +1,188 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ram.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.ram.InMemoryUserStorage;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Детерминированный набор данных для бенчмарков хранилищ: size фильмов и size пользователей с id от 1,
+ * у каждого пользователя до LIKES_PER_USER лайков со смещением к фильмам с маленькими id (есть явные хиты)
+ * и до FRIENDS_PER_USER друзей. При одном size и SEED данные совпадают от запуска к запуску,
+ * поэтому результаты разных коммитов сравнимы.
+ */
+final class BenchmarkDataset {
+    static final long SEED = 42;
+    static final int LIKES_PER_USER = 5;
+    static final int FRIENDS_PER_USER = 10;
+    private static final int MPA_COUNT = 5;
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final LocalDate FIRST_RELEASE = LocalDate.of(1950, 1, 1);
+
+    private final int size;
+    // Пары связей подряд: [userId, filmId, userId, filmId, ...] и [userId, friendId, ...]
+    private final int[] likes;
+    private final int[] friendships;
+    private final int[] likesCounts;
+
+    BenchmarkDataset(int size) {
+        this.size = size;
+        SplittableRandom random = new SplittableRandom(SEED);
+        this.likesCounts = new int[size + 1];
+        this.likes = generatePairs(random, LIKES_PER_USER, true);
+        this.friendships = generatePairs(random, FRIENDS_PER_USER, false);
+        for (int i = 1; i < likes.length; i += 2) {
+            likesCounts[likes[i]]++;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    Film film(int id) {
+        Film film = new Film();
+        film.setName("Фильм " + id);
+        film.setDescription("Описание фильма " + id);
+        film.setReleaseDate(FIRST_RELEASE.plusDays(id % 25_000));
+        film.setDuration(60 + id % 120);
+        Mpa mpa = new Mpa();
+        mpa.setId(1 + id % MPA_COUNT);
+        film.setMpa(mpa);
+        return film;
+    }
+
+    User user(int id) {
+        User user = new User();
+        user.setName("Пользователь " + id);
+        user.setLogin("user" + id);
+        user.setEmail("user" + id + "@example.com");
+        user.setBirthday(LocalDate.of(1970, 1, 1).plusDays(id % 15_000));
+        return user;
+    }
+
+    void fill(InMemoryFilmStorage storage) {
+        List<Film> films = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            films.add(film(id));
+        }
+        for (int i = 0; i < likes.length; i += 2) {
+            films.get(likes[i + 1] - 1).addLikedUser(likes[i]);
+        }
+        storage.addFilms(films);
+    }
+
+    void fill(InMemoryUserStorage storage) {
+        for (int id = 1; id <= size; id++) {
+            storage.addUser(user(id));
+        }
+        for (int i = 0; i < friendships.length; i += 2) {
+            storage.addFriend(friendships[i], friendships[i + 1]);
+        }
+    }
+
+    /**
+     * Пакетно заливает набор в пустую базу со схемой из миграций.
+     */
+    void fill(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO users (id, name, email, login, birthday) VALUES (?, ?, ?, ?, ?)")) {
+                for (int id = 1; id <= size; id++) {
+                    User user = user(id);
+                    ps.setInt(1, id);
+                    ps.setString(2, user.getName());
+                    ps.setString(3, user.getEmail());
+                    ps.setString(4, user.getLogin());
+                    ps.setDate(5, Date.valueOf(user.getBirthday()));
+                    addBatch(ps, id);
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO film " +
+                    "(id, name, description, release_date, duration, rating_id, likes_count) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (int id = 1; id <= size; id++) {
+                    Film film = film(id);
+                    ps.setInt(1, id);
+                    ps.setString(2, film.getName());
+                    ps.setString(3, film.getDescription());
+                    ps.setDate(4, Date.valueOf(film.getReleaseDate()));
+                    ps.setInt(5, film.getDuration());
+                    ps.setInt(6, film.getMpa().getId());
+                    ps.setInt(7, likesCounts[id]);
+                    addBatch(ps, id);
+                }
+                ps.executeBatch();
+            }
+            insertPairs(connection, "INSERT INTO likes (user_id, film_id) VALUES (?, ?)", likes);
+            insertPairs(connection, "INSERT INTO friends_link (user_id, friend_id) VALUES (?, ?)", friendships);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (size + 1));
+                statement.execute("ALTER TABLE film ALTER COLUMN id RESTART WITH " + (size + 1));
+            }
+            connection.commit();
+        }
+    }
+
+    private int[] generatePairs(SplittableRandom random, int perUser, boolean skewed) {
+        int[] pairs = new int[size * perUser * 2];
+        int[] chosen = new int[perUser];
+        int length = 0;
+        for (int userId = 1; userId <= size; userId++) {
+            int chosenCount = 0;
+            for (int attempt = 0; attempt < perUser; attempt++) {
+                double position = random.nextDouble();
+                int target = 1 + (int) (size * (skewed ? position * position : position));
+                if (target == userId && !skewed || contains(chosen, chosenCount, target)) {
+                    continue;
+                }
+                chosen[chosenCount++] = target;
+                pairs[length++] = userId;
+                pairs[length++] = target;
+            }
+        }
+        return Arrays.copyOf(pairs, length);
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void insertPairs(Connection connection, String sql, int[] pairs) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < pairs.length; i += 2) {
+                ps.setInt(1, pairs[i]);
+                ps.setInt(2, pairs[i + 1]);
+                addBatch(ps, i / 2 + 1);
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static void addBatch(PreparedStatement ps, int rowNumber) throws SQLException {
+        ps.addBatch();
+        if (rowNumber % INSERT_BATCH_SIZE == 0) {
+            ps.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.dao.DbFilmStorage;
+import ru.yandex.practicum.filmorate.storage.dao.DbUserStorage;
+import ru.yandex.practicum.filmorate.storage.dao.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrator;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DbFilmStorage и DbUserStorage над встроенной H2 в памяти, заполненной {@link BenchmarkDataset}.
+ * Хранилища создаются контекстом Spring, как в приложении: с транзакционными прокси и загрузкой
+ * индексов в @PostConstruct.
+ */
+final class DbStorages implements AutoCloseable {
+    private static final AtomicInteger databaseCounter = new AtomicInteger();
+
+    private final HikariDataSource dataSource;
+    private final AnnotationConfigApplicationContext context;
+
+    DbStorages(BenchmarkDataset dataset) throws SQLException {
+        quietLogging();
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:benchmark" + databaseCounter.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        new SchemaMigrator(dataSource, SchemaMigrator.DEFAULT_LOCATION).migrate();
+        dataset.fill(dataSource);
+
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(DataSource.class, () -> dataSource);
+        context.registerBean(JdbcTemplate.class, () -> new JdbcTemplate(dataSource));
+        context.registerBean(PlatformTransactionManager.class, () -> new DataSourceTransactionManager(dataSource));
+        context.register(TransactionConfiguration.class, ReferenceDataCache.class, DbFilmStorage.class,
+                DbUserStorage.class);
+        context.refresh();
+    }
+
+    /**
+     * Хранилища пишут в лог на каждую операцию, в бенчмарке это замеряло бы консоль, а не базу.
+     */
+    static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    FilmStorage filmStorage() {
+        return context.getBean(FilmStorage.class);
+    }
+
+    UserStorage userStorage() {
+        return context.getBean(UserStorage.class);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        dataSource.close();
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class TransactionConfiguration {
+    }
+}
@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.ram.InMemoryFilmStorage;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути FilmStorage на DbFilmStorage и InMemoryFilmStorage: фильм по id, весь каталог, топ
+ * популярных и лайк. Данные — {@link BenchmarkDataset} на 1k, 100k и 1M фильмов и пользователей.
+ * Запуск всех размеров: mvn -Pbenchmark verify; для 1M нужна куча 8g.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class FilmStorageBenchmark {
+    @Param({"memory", "db"})
+    private String storageType;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private FilmStorage storage;
+    private DbStorages dbStorages;
+
+    @Setup
+    public void setUp() throws SQLException {
+        DbStorages.quietLogging();
+        BenchmarkDataset dataset = new BenchmarkDataset(size);
+        if (storageType.equals("db")) {
+            dbStorages = new DbStorages(dataset);
+            storage = dbStorages.filmStorage();
+        } else {
+            InMemoryFilmStorage memoryStorage = new InMemoryFilmStorage();
+            dataset.fill(memoryStorage);
+            storage = memoryStorage;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (dbStorages != null) {
+            dbStorages.close();
+        }
+    }
+
+    @Benchmark
+    public Film getFilm(RandomIds ids) {
+        return storage.getFilm(ids.next(size));
+    }
+
+    @Benchmark
+    public List<Film> getFilmsList() {
+        return storage.getFilmsList();
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return storage.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public boolean addLike(RandomIds ids) {
+        return storage.addLike(ids.next(size), ids.next(size));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FilmStorageBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
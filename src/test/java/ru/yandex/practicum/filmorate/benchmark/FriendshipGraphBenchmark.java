@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.yandex.practicum.filmorate.storage.FriendshipGraph;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает поиск общих друзей в FriendshipGraph (слияние отсортированных int[]) с прежним подходом
+ * InMemoryUserStorage — копированием двух HashSet<Integer> и retainAll, и замеряет построение рекомендаций
+ * друзей по друзьям друзей. При подготовке печатает оценку памяти графа и прирост кучи
+ * для тех же связей в HashSet<Integer>.
+ * Запуск с 1M пользователей и 20M связей требует -Xmx не меньше 8g.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class FriendshipGraphBenchmark {
+    @Param({"1000000"})
+    private int usersCount;
+
+    @Param({"20000000"})
+    private long edgesCount;
+
+    private FriendshipGraph graph;
+    private Set<Integer>[] boxedFriends;
+    private int[] firstUsers;
+    private int[] secondUsers;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        int friendsPerUser = (int) (edgesCount / usersCount);
+        long heapBeforeGraph = usedHeap();
+        FriendshipGraph.Builder builder = new FriendshipGraph.Builder();
+        int[] friends = new int[friendsPerUser];
+        for (int userId = 1; userId <= usersCount; userId++) {
+            for (int i = 0; i < friendsPerUser; i++) {
+                friends[i] = 1 + random.nextInt(usersCount);
+            }
+            Arrays.sort(friends);
+            int previous = 0;
+            for (int friendId : friends) {
+                if (friendId != previous && friendId != userId) {
+                    builder.add(userId, friendId);
+                    previous = friendId;
+                }
+            }
+        }
+        graph = builder.build();
+        long graphHeap = usedHeap() - heapBeforeGraph;
+
+        long heapBeforeBoxed = usedHeap();
+        @SuppressWarnings("unchecked")
+        Set<Integer>[] sets = new Set[usersCount + 1];
+        for (int userId = 1; userId <= usersCount; userId++) {
+            Set<Integer> set = new HashSet<>();
+            for (int friendId : graph.friendsOf(userId)) {
+                set.add(friendId);
+            }
+            sets[userId] = set;
+        }
+        boxedFriends = sets;
+        long boxedHeap = usedHeap() - heapBeforeBoxed;
+
+        System.out.printf("%nСвязей: %d, оценка памяти графа: %d МБ, прирост кучи графа: %d МБ, "
+                        + "прирост кучи HashSet<Integer>: %d МБ%n",
+                graph.getEdgeCount(), graph.estimateMemoryBytes() >> 20, graphHeap >> 20, boxedHeap >> 20);
+    }
+
+    @Setup(Level.Iteration)
+    public void pickUserPairs() {
+        SplittableRandom random = new SplittableRandom(7);
+        firstUsers = new int[1024];
+        secondUsers = new int[1024];
+        for (int i = 0; i < firstUsers.length; i++) {
+            firstUsers[i] = 1 + random.nextInt(usersCount);
+            secondUsers[i] = 1 + random.nextInt(usersCount);
+        }
+    }
+
+    @Benchmark
+    public int[] sortedMerge() {
+        int i = nextPair();
+        return graph.commonFriends(firstUsers[i], secondUsers[i]);
+    }
+
+    @Benchmark
+    public FriendshipGraph.SuggestedFriends suggestFriends() {
+        return graph.suggestFriends(firstUsers[nextPair()], 10);
+    }
+
+    @Benchmark
+    public Set<Integer> boxedRetainAll() {
+        int i = nextPair();
+        Set<Integer> common = new HashSet<>(boxedFriends[firstUsers[i]]);
+        common.retainAll(new HashSet<>(boxedFriends[secondUsers[i]]));
+        return common;
+    }
+
+    private int nextPair() {
+        next = (next + 1) & (firstUsers.length - 1);
+        return next;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FriendshipGraphBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
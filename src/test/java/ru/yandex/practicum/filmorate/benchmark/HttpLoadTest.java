@@ -0,0 +1,264 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.h2.jdbcx.JdbcDataSource;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrator;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Нагрузочный прогон всего стека: поднимает приложение на случайном порту над файлом H2, заранее заполненным
+ * {@link BenchmarkDataset}, и шлёт смесь запросов к FilmController и UserController с постоянной частотой
+ * из виртуальных потоков. Задержка считается от запланированного момента отправки, а не от фактического,
+ * поэтому очередь перед перегруженным сервером попадает в перцентили (поправка на coordinated omission).
+ * Логи приложения, включая журнал запросов Logbook, пишутся с обычными уровнями в application.log каталога
+ * прогона (logback-loadtest.xml) вместо консоли: замер включает стоимость журнала запросов, но не терминала.
+ * Запуск: mvn -Ploadtest verify. Настройки — системные свойства loadtest.*, см. {@link #main}.
+ */
+public class HttpLoadTest {
+    static final String DEFAULT_MIX = "25 GET /films/{film}; 20 GET /films/popular?count=10; "
+            + "5 GET /films?limit=50; 20 GET /users/{user}/friends; 10 GET /users/{user}/friends/common/{other}; "
+            + "5 GET /users/{user}/friends?withMutualCount=true; 10 PUT /films/{film}/like/{user}; "
+            + "5 PUT /users/{user}/friends/{other}";
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final int HISTOGRAM_PRECISION = 3;
+
+    private final URI baseUri;
+    private final List<Endpoint> mix;
+    private final int datasetSize;
+    private final HttpClient client;
+    private final Map<Endpoint, EndpointStats> stats = new LinkedHashMap<>();
+    private final int totalWeight;
+
+    HttpLoadTest(URI baseUri, List<Endpoint> mix, int datasetSize) {
+        this.baseUri = baseUri;
+        this.mix = mix;
+        this.datasetSize = datasetSize;
+        this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        for (Endpoint endpoint : mix) {
+            stats.put(endpoint, new EndpointStats());
+        }
+        this.totalWeight = mix.stream().mapToInt(Endpoint::weight).sum();
+    }
+
+    /**
+     * Свойства: loadtest.rate — запросов в секунду (500), loadtest.warmup (PT10S) и loadtest.duration (PT30S),
+     * loadtest.dataset-size — фильмов и пользователей в базе (10000), loadtest.mix — смесь
+     * «вес МЕТОД путь» через «;» с подстановками {film}, {user}, {other}, loadtest.directory — каталог
+     * для базы, логов приложения и результата в JSON (target/loadtest).
+     */
+    public static void main(String[] args) throws Exception {
+        int rate = Integer.getInteger("loadtest.rate", 500);
+        Duration warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT10S"));
+        Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+        int datasetSize = Integer.getInteger("loadtest.dataset-size", 10_000);
+        String mixProperty = System.getProperty("loadtest.mix", "");
+        List<Endpoint> mix = Endpoint.parseMix(mixProperty.isBlank() ? DEFAULT_MIX : mixProperty);
+        Path directory = Path.of(System.getProperty("loadtest.directory", "target/loadtest")).toAbsolutePath();
+
+        DbStorages.quietLogging();
+        String jdbcUrl = prepareDatabase(directory, datasetSize);
+        try (ConfigurableApplicationContext application = SpringApplication.run(FilmorateApplication.class,
+                "--server.port=0",
+                "--spring.datasource.url=" + jdbcUrl,
+                "--logging.config=classpath:logback-loadtest.xml",
+                "--logging.file.name=" + directory.resolve("application.log"))) {
+            String port = application.getEnvironment().getProperty("local.server.port");
+            HttpLoadTest loadTest = new HttpLoadTest(URI.create("http://localhost:" + port), mix, datasetSize);
+            List<Map<String, Object>> report = loadTest.run(rate, warmup, duration);
+            printReport(report, rate, duration);
+            Path resultFile = directory.resolve("loadtest-result.json");
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(resultFile.toFile(), report);
+            System.out.println("Результат сохранён в " + resultFile);
+        }
+    }
+
+    /**
+     * Шлёт запросы с интервалом 1/rate секунды по расписанию, не дожидаясь ответов. Запросы прогрева
+     * выполняются, но не учитываются. Возвращает отчёт по эндпоинтам и итоговую строку.
+     */
+    List<Map<String, Object>> run(int rate, Duration warmup, Duration duration) {
+        long intervalNanos = 1_000_000_000L / rate;
+        long startedAt = System.nanoTime();
+        long measuredFrom = startedAt + warmup.toNanos();
+        long finishedAt = measuredFrom + duration.toNanos();
+        SplittableRandom random = new SplittableRandom(BenchmarkDataset.SEED);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; ; i++) {
+                long intendedAt = startedAt + i * intervalNanos;
+                if (intendedAt >= finishedAt) {
+                    break;
+                }
+                long delay = intendedAt - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                Endpoint endpoint = pick(random);
+                URI uri = endpoint.uri(baseUri, random, datasetSize);
+                EndpointStats endpointStats = intendedAt >= measuredFrom ? stats.get(endpoint) : null;
+                executor.execute(() -> call(endpoint, uri, intendedAt, endpointStats));
+            }
+        }
+        return report(duration);
+    }
+
+    private void call(Endpoint endpoint, URI uri, long intendedAt, EndpointStats endpointStats) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .method(endpoint.method(), HttpRequest.BodyPublishers.noBody())
+                .timeout(REQUEST_TIMEOUT)
+                .build();
+        boolean failed;
+        try {
+            failed = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() >= 400;
+        } catch (IOException e) {
+            failed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        }
+        if (endpointStats != null) {
+            endpointStats.record(System.nanoTime() - intendedAt, failed);
+        }
+    }
+
+    private Endpoint pick(SplittableRandom random) {
+        int point = random.nextInt(totalWeight);
+        for (Endpoint endpoint : mix) {
+            point -= endpoint.weight();
+            if (point < 0) {
+                return endpoint;
+            }
+        }
+        return mix.getLast();
+    }
+
+    private List<Map<String, Object>> report(Duration duration) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        Histogram total = new Histogram(HISTOGRAM_PRECISION);
+        long totalErrors = 0;
+        for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+            Histogram latencies = entry.getValue().latencies.copy();
+            long errors = entry.getValue().errors.sum();
+            rows.add(row(entry.getKey().name(), latencies, errors, duration));
+            total.add(latencies);
+            totalErrors += errors;
+        }
+        rows.add(row("Итого", total, totalErrors, duration));
+        return rows;
+    }
+
+    private static Map<String, Object> row(String name, Histogram latencies, long errors, Duration duration) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("endpoint", name);
+        row.put("requests", latencies.getTotalCount());
+        row.put("errors", errors);
+        row.put("throughputPerSecond", latencies.getTotalCount() * 1000.0 / duration.toMillis());
+        row.put("p50Ms", millis(latencies.getValueAtPercentile(50)));
+        row.put("p99Ms", millis(latencies.getValueAtPercentile(99)));
+        row.put("p999Ms", millis(latencies.getValueAtPercentile(99.9)));
+        row.put("maxMs", millis(latencies.getMaxValue()));
+        return row;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static void printReport(List<Map<String, Object>> report, int rate, Duration duration) {
+        System.out.printf("%nЧастота %d запросов/с, замер %s%n", rate, duration);
+        System.out.printf("%-50s %9s %7s %9s %9s %9s %9s %9s%n",
+                "Эндпоинт", "Запросов", "Ошибок", "RPS", "p50, мс", "p99, мс", "p999, мс", "max, мс");
+        for (Map<String, Object> row : report) {
+            System.out.printf("%-50s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", row.get("endpoint"),
+                    row.get("requests"), row.get("errors"), row.get("throughputPerSecond"), row.get("p50Ms"),
+                    row.get("p99Ms"), row.get("p999Ms"), row.get("maxMs"));
+        }
+    }
+
+    /**
+     * Создаёт файл H2 заново и заполняет его: одинаковые данные при каждом прогоне.
+     */
+    private static String prepareDatabase(Path directory, int datasetSize) throws IOException, SQLException {
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().startsWith("filmorate.")).toList()) {
+                Files.delete(file);
+            }
+        }
+        String jdbcUrl = "jdbc:h2:file:" + directory.resolve("filmorate");
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(jdbcUrl);
+        dataSource.setUser("sa");
+        dataSource.setPassword("password");
+        new SchemaMigrator(dataSource, SchemaMigrator.DEFAULT_LOCATION).migrate();
+        new BenchmarkDataset(datasetSize).fill(dataSource);
+        return jdbcUrl;
+    }
+
+    /**
+     * Эндпоинт смеси: метод, шаблон пути и вес — доля запросов относительно суммы весов.
+     */
+    record Endpoint(int weight, String method, String pathTemplate) {
+        static List<Endpoint> parseMix(String mix) {
+            List<Endpoint> endpoints = new ArrayList<>();
+            for (String entry : mix.split(";")) {
+                String[] parts = entry.trim().split("\\s+");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Ожидается «вес МЕТОД путь», получено: " + entry);
+                }
+                endpoints.add(new Endpoint(Integer.parseInt(parts[0]), parts[1], parts[2]));
+            }
+            return endpoints;
+        }
+
+        String name() {
+            return method + " " + pathTemplate;
+        }
+
+        URI uri(URI baseUri, SplittableRandom random, int datasetSize) {
+            int userId = 1 + random.nextInt(datasetSize);
+            int otherId = 1 + (userId + random.nextInt(datasetSize - 1)) % datasetSize;
+            String path = pathTemplate
+                    .replace("{film}", String.valueOf(1 + random.nextInt(datasetSize)))
+                    .replace("{user}", String.valueOf(userId))
+                    .replace("{other}", String.valueOf(otherId));
+            return baseUri.resolve(path);
+        }
+    }
+
+    private static final class EndpointStats {
+        private final Histogram latencies = new ConcurrentHistogram(HISTOGRAM_PRECISION);
+        private final LongAdder errors = new LongAdder();
+
+        void record(long latencyNanos, boolean failed) {
+            latencies.recordValue(latencyNanos);
+            if (failed) {
+                errors.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ram.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.ram.InMemoryUserStorage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность записи в InMemoryFilmStorage и InMemoryUserStorage при восьми потоках:
+ * лайк с отменой, дружба с отменой и обновление фильма или пользователя. Заменяет порог операций
+ * в секунду, который раньше проверялся в модульных тестах хранилищ.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class InMemoryWritesBenchmark {
+    @Param({"1000", "100000"})
+    private int size;
+
+    private BenchmarkDataset dataset;
+    private InMemoryFilmStorage filmStorage;
+    private InMemoryUserStorage userStorage;
+
+    @Setup
+    public void setUp() {
+        DbStorages.quietLogging();
+        dataset = new BenchmarkDataset(size);
+        filmStorage = new InMemoryFilmStorage();
+        dataset.fill(filmStorage);
+        userStorage = new InMemoryUserStorage();
+        dataset.fill(userStorage);
+    }
+
+    @Benchmark
+    public boolean addAndRemoveLike(RandomIds ids) {
+        int filmId = ids.next(size);
+        int userId = ids.next(size);
+        filmStorage.addLike(filmId, userId);
+        return filmStorage.removeLike(filmId, userId);
+    }
+
+    @Benchmark
+    public Film updateFilm(RandomIds ids) {
+        int id = ids.next(size);
+        Film film = dataset.film(id);
+        film.setId(id);
+        return filmStorage.updateFilm(film);
+    }
+
+    @Benchmark
+    public void addAndRemoveFriend(RandomIds ids) {
+        int userId = ids.next(size);
+        int friendId = ids.next(size);
+        if (friendId == userId) {
+            friendId = friendId % size + 1;
+        }
+        userStorage.addFriend(userId, friendId);
+        userStorage.removeFriend(userId, friendId);
+    }
+
+    @Benchmark
+    public User updateUser(RandomIds ids) {
+        int id = ids.next(size);
+        User user = dataset.user(id);
+        user.setId(id);
+        return userStorage.updateUser(user);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InMemoryWritesBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
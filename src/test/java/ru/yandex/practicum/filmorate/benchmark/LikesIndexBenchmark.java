@@ -0,0 +1,153 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.yandex.practicum.filmorate.storage.LikesIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает рекомендации фильмов по LikesIndex (разреженные битмапы, AND и bitCount по словам)
+ * с тем же алгоритмом на HashSet<Integer>: пересечение лайков через retainAll со всеми,
+ * кто лайкнул хотя бы один фильм пользователя. Популярность фильмов неравномерная — чем меньше id,
+ * тем чаще фильм лайкают, поэтому у пользователей есть заметное пересечение.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class LikesIndexBenchmark {
+    private static final int NEIGHBOURS = 50;
+    private static final int LIMIT = 10;
+
+    @Param({"100000"})
+    private int usersCount;
+
+    @Param({"1000000"})
+    private int likesCount;
+
+    @Param({"20000"})
+    private int filmsCount;
+
+    private LikesIndex index;
+    private Set<Integer>[] boxedLikes;
+    private Map<Integer, List<Integer>> boxedLikers;
+    private int[] users;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        int likesPerUser = likesCount / usersCount;
+        LikesIndex.Builder builder = new LikesIndex.Builder();
+        @SuppressWarnings("unchecked")
+        Set<Integer>[] sets = new Set[usersCount + 1];
+        Map<Integer, List<Integer>> likers = new HashMap<>();
+        int[] films = new int[likesPerUser];
+        for (int userId = 1; userId <= usersCount; userId++) {
+            for (int i = 0; i < likesPerUser; i++) {
+                double skewed = random.nextDouble();
+                films[i] = 1 + (int) (skewed * skewed * skewed * filmsCount);
+            }
+            Arrays.sort(films);
+            Set<Integer> set = new HashSet<>();
+            int previous = 0;
+            for (int filmId : films) {
+                if (filmId != previous) {
+                    builder.add(userId, filmId);
+                    set.add(filmId);
+                    likers.computeIfAbsent(filmId, id -> new ArrayList<>()).add(userId);
+                    previous = filmId;
+                }
+            }
+            sets[userId] = set;
+        }
+        index = builder.build();
+        boxedLikes = sets;
+        boxedLikers = likers;
+        System.out.printf("%nЛайков: %d, оценка памяти индекса: %d МБ%n",
+                index.getLikeCount(), index.estimateMemoryBytes() >> 20);
+    }
+
+    @Setup(Level.Iteration)
+    public void pickUsers() {
+        SplittableRandom random = new SplittableRandom(7);
+        users = new int[1024];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = 1 + random.nextInt(usersCount);
+        }
+    }
+
+    @Benchmark
+    public int[] bitmapIndex() {
+        return index.recommendFilms(nextUser(), LIMIT, NEIGHBOURS, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public List<Integer> boxedRetainAll() {
+        int userId = nextUser();
+        Set<Integer> likes = boxedLikes[userId];
+        Set<Integer> candidates = new HashSet<>();
+        for (int filmId : likes) {
+            candidates.addAll(boxedLikers.get(filmId));
+        }
+        candidates.remove(userId);
+        Map<Integer, Double> similarities = new HashMap<>();
+        for (int candidateId : candidates) {
+            Set<Integer> common = new HashSet<>(likes);
+            common.retainAll(boxedLikes[candidateId]);
+            int union = likes.size() + boxedLikes[candidateId].size() - common.size();
+            similarities.put(candidateId, (double) common.size() / union);
+        }
+        Map<Integer, Double> scores = new HashMap<>();
+        similarities.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(NEIGHBOURS)
+                .forEach(neighbour -> boxedLikes[neighbour.getKey()].stream()
+                        .filter(filmId -> !likes.contains(filmId))
+                        .forEach(filmId -> scores.merge(filmId, neighbour.getValue(), Double::sum)));
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Double>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(LIMIT)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private int nextUser() {
+        next = (next + 1) & (users.length - 1);
+        return users[next];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LikesIndexBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
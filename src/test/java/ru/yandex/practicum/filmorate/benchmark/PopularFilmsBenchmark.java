@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.ram.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнивает чтение топа из инкрементального рейтинга InMemoryFilmStorage
+ * с прежней полной сортировкой каталога на каждый запрос.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PopularFilmsBenchmark {
+    @Param({"1000", "10000", "50000"})
+    private int filmsCount;
+
+    @Param({"10"})
+    private int topCount;
+
+    private InMemoryFilmStorage storage;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        storage = new InMemoryFilmStorage();
+        for (int i = 0; i < filmsCount; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("Description " + i);
+            film.setReleaseDate(LocalDate.of(2000, 1, 1).plusDays(i % 5000));
+            film.setDuration(90);
+            int likesCount = random.nextInt(20);
+            for (int userId = 1; userId <= likesCount; userId++) {
+                film.addLikedUser(userId);
+            }
+            storage.addFilm(film);
+        }
+    }
+
+    @Benchmark
+    public List<Film> leaderboardTop() {
+        return storage.getPopularFilms(topCount);
+    }
+
+    @Benchmark
+    public List<Film> fullSortTop() {
+        return storage.getFilmsList()
+                .stream()
+                .sorted((film, film1) -> Integer.compare(film1.getLikesCount(), film.getLikesCount()))
+                .limit(topCount)
+                .toList();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PopularFilmsBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
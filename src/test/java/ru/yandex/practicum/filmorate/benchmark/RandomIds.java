@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+
+/**
+ * Случайные id из [1, size] своей последовательностью на каждый поток, одинаковой от запуска к запуску.
+ */
+@State(Scope.Thread)
+public class RandomIds {
+    private final SplittableRandom random = new SplittableRandom(BenchmarkDataset.SEED);
+
+    int next(int size) {
+        return 1 + random.nextInt(size);
+    }
+}
@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.FriendWithMutualCount;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.ram.InMemoryUserStorage;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции с друзьями на DbUserStorage и InMemoryUserStorage: список друзей, друзья с числом общих,
+ * общие друзья двух пользователей, рекомендации и добавление с удалением друга.
+ * Данные — {@link BenchmarkDataset} на 1k, 100k и 1M пользователей.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class UserFriendsBenchmark {
+    @Param({"memory", "db"})
+    private String storageType;
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private UserStorage storage;
+    private DbStorages dbStorages;
+
+    @Setup
+    public void setUp() throws SQLException {
+        DbStorages.quietLogging();
+        BenchmarkDataset dataset = new BenchmarkDataset(size);
+        if (storageType.equals("db")) {
+            dbStorages = new DbStorages(dataset);
+            storage = dbStorages.userStorage();
+        } else {
+            InMemoryUserStorage memoryStorage = new InMemoryUserStorage();
+            dataset.fill(memoryStorage);
+            storage = memoryStorage;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (dbStorages != null) {
+            dbStorages.close();
+        }
+    }
+
+    @Benchmark
+    public List<User> getFriendsList(RandomIds ids) {
+        return storage.getFriendsList(ids.next(size));
+    }
+
+    @Benchmark
+    public List<FriendWithMutualCount> getFriendsWithMutualCounts(RandomIds ids) {
+        return storage.getFriendsWithMutualCounts(ids.next(size));
+    }
+
+    @Benchmark
+    public List<User> getFriendsIntersect(RandomIds ids) {
+        return storage.getFriendsIntersect(ids.next(size), ids.next(size));
+    }
+
+    @Benchmark
+    public List<FriendSuggestion> getFriendSuggestions(RandomIds ids) {
+        return storage.getFriendSuggestions(ids.next(size), 10);
+    }
+
+    @Benchmark
+    public void addAndRemoveFriend(RandomIds ids) {
+        int userId = ids.next(size);
+        int friendId = ids.next(size);
+        if (friendId == userId) {
+            friendId = friendId % size + 1;
+        }
+        storage.addFriend(userId, friendId);
+        storage.removeFriend(userId, friendId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UserFriendsBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
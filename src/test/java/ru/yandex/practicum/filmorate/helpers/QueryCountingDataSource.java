@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.helpers;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource для тестов, который считает выполненные запросы. Подключается {@link QueryCountingConfiguration},
+ * {@link #count} и {@link #measure} считают запросы, выполненные внутри блока.
+ */
+public class QueryCountingDataSource extends DelegatingDataSource {
+    private final AtomicInteger queryCount = new AtomicInteger();
+    private final List<String> statements = new ArrayList<>();
+
+    public QueryCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(super.getConnection(username, password));
+    }
+
+    public static QueryCountingDataSource of(DataSource dataSource) {
+        if (!(dataSource instanceof QueryCountingDataSource counter)) {
+            throw new IllegalStateException("DataSource не считает запросы, подключите QueryCountingConfiguration");
+        }
+        return counter;
+    }
+
+    public int count(Runnable block) {
+        return measure(block).count();
+    }
+
+    public Usage measure(Runnable block) {
+        reset();
+        block.run();
+        return new Usage(getQueryCount(), getStatements());
+    }
+
+    public int getQueryCount() {
+        return queryCount.get();
+    }
+
+    public synchronized List<String> getStatements() {
+        return List.copyOf(statements);
+    }
+
+    public void reset() {
+        queryCount.set(0);
+        synchronized (this) {
+            statements.clear();
+        }
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement && method.getReturnType().isInterface()) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                        return wrapStatement(statement, method.getReturnType(), sql);
+                    }
+                    return result;
+                });
+    }
+
+    private Object wrapStatement(Statement statement, Class<?> statementType, String preparedSql) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{statementType},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("execute")) {
+                        queryCount.incrementAndGet();
+                        String sql = preparedSql != null ? preparedSql
+                                : args != null && args.length > 0 ? String.valueOf(args[0]) : method.getName();
+                        synchronized (this) {
+                            statements.add(sql);
+                        }
+                    }
+                    return invoke(statement, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Число запросов, выполненных в блоке, и их тексты для сообщения об ошибке.
+     */
+    public record Usage(int count, List<String> statements) {
+    }
+}
@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.Description;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.helpers.GenerateRandomizeInstances;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ram.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.ram.InMemoryUserStorage;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FilmServiceTest {
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage();
+    private final FilmService filmService = new FilmService(filmStorage, new UserService(userStorage), Optional.empty());
+
+    @Test
+    @Description("Хранилище в памяти не знает пользователей, поэтому лайк несуществующего пользователя отклоняет сервис")
+    public void shouldRejectLikeFromUnknownUser() {
+        Film film = filmStorage.addFilm(GenerateRandomizeInstances.generateRandomFilm());
+        User user = userStorage.addUser(GenerateRandomizeInstances.generateRandomUser());
+
+        assertThatThrownBy(() -> filmService.addLike(film.getId(), user.getId() + 1))
+                .isInstanceOf(NotFoundException.class);
+        filmService.addLike(film.getId(), user.getId());
+
+        assertThat(filmStorage.getFilm(film.getId()).getLikedUsers()).containsExactly(user.getId());
+    }
+}
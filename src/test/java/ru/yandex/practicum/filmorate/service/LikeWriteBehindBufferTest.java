@@ -0,0 +1,192 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.Description;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.helpers.GenerateRandomizeInstances;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.ram.InMemoryFilmStorage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LikeWriteBehindBufferTest {
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
+
+    @Test
+    @Description("Команды для одной пары фильм-пользователь схлопываются до последнего состояния")
+    public void shouldCoalesceCommandsPerFilmAndUser() {
+        LikeWriteBehindBuffer buffer = buffer(100, LikeWriteBehindBuffer.Durability.ASYNC);
+        Film film = filmStorage.addFilm(GenerateRandomizeInstances.generateRandomFilm());
+        buffer.addLike(film.getId(), 1);
+        buffer.removeLike(film.getId(), 1);
+        buffer.addLike(film.getId(), 1);
+        buffer.addLike(film.getId(), 2);
+        buffer.removeLike(film.getId(), 3);
+
+        assertThat(buffer.getPendingCount()).isEqualTo(3);
+        assertThat(film.getLikesCount()).isZero();
+
+        buffer.flush();
+
+        assertThat(buffer.getPendingCount()).isZero();
+        assertThat(filmStorage.getFilm(film.getId()).getLikesCount()).isEqualTo(2);
+    }
+
+    @Test
+    @Description("При заполненной очереди новая команда отклоняется после таймаута ожидания")
+    public void shouldRejectCommandsWhenFull() {
+        LikeWriteBehindBuffer buffer = buffer(1, LikeWriteBehindBuffer.Durability.ASYNC);
+        Film film = filmStorage.addFilm(GenerateRandomizeInstances.generateRandomFilm());
+        buffer.addLike(film.getId(), 1);
+        buffer.removeLike(film.getId(), 1);
+
+        assertThatThrownBy(() -> buffer.addLike(film.getId(), 2))
+                .isInstanceOf(ServiceUnavailableException.class);
+
+        buffer.flush();
+        buffer.addLike(film.getId(), 2);
+        assertThat(buffer.getPendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    @Description("В режиме sync команда завершается только после записи пачки")
+    public void shouldWaitForFlushInSyncMode() throws Exception {
+        LikeWriteBehindBuffer buffer = buffer(100, LikeWriteBehindBuffer.Durability.SYNC);
+        Film film = filmStorage.addFilm(GenerateRandomizeInstances.generateRandomFilm());
+        CompletableFuture<Void> like = CompletableFuture.runAsync(() -> buffer.addLike(film.getId(), 1));
+        while (buffer.getPendingCount() == 0) {
+            Thread.onSpinWait();
+        }
+        assertThat(like).isNotDone();
+
+        buffer.flush();
+
+        like.get(5, TimeUnit.SECONDS);
+        assertThat(filmStorage.getFilm(film.getId()).getLikesCount()).isEqualTo(1);
+    }
+
+    @Test
+    @Description("При остановке буфер записывает накопленные команды и перестаёт принимать новые")
+    public void shouldDrainOnShutdown() {
+        LikeWriteBehindBuffer buffer = buffer(100, LikeWriteBehindBuffer.Durability.ASYNC);
+        Film film = filmStorage.addFilm(GenerateRandomizeInstances.generateRandomFilm());
+        buffer.addLike(film.getId(), 1);
+        buffer.addLike(-1, 1);
+
+        buffer.drain();
+
+        assertThat(buffer.getPendingCount()).isZero();
+        assertThat(filmStorage.getFilm(film.getId()).getLikesCount()).isEqualTo(1);
+        assertThatThrownBy(() -> buffer.addLike(film.getId(), 2))
+                .isInstanceOf(ServiceUnavailableException.class);
+    }
+
+    @Test
+    @Description("Отклонённое хранилищем изменение отбрасывается, остальные изменения пачки записываются")
+    public void shouldDropRejectedChangeAndWriteTheRest() {
+        Film film = filmStorage.addFilm(GenerateRandomizeInstances.generateRandomFilm());
+        Film rejectedFilm = filmStorage.addFilm(GenerateRandomizeInstances.generateRandomFilm());
+        FilmStorage rejectingStorage = new InMemoryFilmStorage() {
+            @Override
+            public void applyLikeChanges(List<LikeChange> changes) {
+                if (changes.stream().anyMatch(change -> change.filmId() == rejectedFilm.getId())) {
+                    throw new DataIntegrityViolationException("Нарушено ограничение");
+                }
+                filmStorage.applyLikeChanges(changes);
+            }
+        };
+        LikeWriteBehindBuffer buffer = new LikeWriteBehindBuffer(rejectingStorage, 100, Duration.ofMillis(20),
+                LikeWriteBehindBuffer.Durability.ASYNC, Duration.ofSeconds(5));
+        buffer.addLike(rejectedFilm.getId(), 1);
+        buffer.addLike(film.getId(), 1);
+
+        buffer.flush();
+
+        assertThat(buffer.getPendingCount()).isZero();
+        assertThat(filmStorage.getFilm(film.getId()).getLikesCount()).isEqualTo(1);
+        buffer.addLike(film.getId(), 2);
+        buffer.flush();
+        assertThat(filmStorage.getFilm(film.getId()).getLikesCount()).isEqualTo(2);
+    }
+
+    @Test
+    @Description("При временной ошибке изменения остаются в очереди до следующей записи")
+    public void shouldRequeueChangesOnTransientFailure() {
+        Film film = filmStorage.addFilm(GenerateRandomizeInstances.generateRandomFilm());
+        AtomicBoolean available = new AtomicBoolean(false);
+        FilmStorage unavailableStorage = new InMemoryFilmStorage() {
+            @Override
+            public void applyLikeChanges(List<LikeChange> changes) {
+                if (!available.get()) {
+                    throw new ServiceUnavailableException("Хранилище недоступно");
+                }
+                filmStorage.applyLikeChanges(changes);
+            }
+        };
+        LikeWriteBehindBuffer buffer = new LikeWriteBehindBuffer(unavailableStorage, 100, Duration.ofMillis(20),
+                LikeWriteBehindBuffer.Durability.ASYNC, Duration.ofSeconds(5));
+        buffer.addLike(film.getId(), 1);
+
+        buffer.flush();
+        assertThat(buffer.getPendingCount()).isEqualTo(1);
+
+        available.set(true);
+        buffer.flush();
+        assertThat(buffer.getPendingCount()).isZero();
+        assertThat(filmStorage.getFilm(film.getId()).getLikesCount()).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Остановка дожидается уже идущей записи пачки, а не берёт следующую параллельно")
+    public void shouldNotDrainWhileFlushIsRunning() throws Exception {
+        Film film = filmStorage.addFilm(GenerateRandomizeInstances.generateRandomFilm());
+        CountDownLatch flushStarted = new CountDownLatch(1);
+        CountDownLatch releaseFlush = new CountDownLatch(1);
+        List<LikeChange> written = new CopyOnWriteArrayList<>();
+        FilmStorage slowStorage = new InMemoryFilmStorage() {
+            @Override
+            public void applyLikeChanges(List<LikeChange> changes) {
+                flushStarted.countDown();
+                try {
+                    releaseFlush.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                written.addAll(changes);
+            }
+        };
+        LikeWriteBehindBuffer buffer = new LikeWriteBehindBuffer(slowStorage, 100, Duration.ofMillis(20),
+                LikeWriteBehindBuffer.Durability.ASYNC, Duration.ofSeconds(5));
+        buffer.addLike(film.getId(), 1);
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(buffer::flush);
+        flushStarted.await(5, TimeUnit.SECONDS);
+        buffer.removeLike(film.getId(), 1);
+
+        CompletableFuture<Void> drain = CompletableFuture.runAsync(buffer::drain);
+        Thread.sleep(50);
+        assertThat(drain).isNotDone();
+
+        releaseFlush.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+        drain.get(5, TimeUnit.SECONDS);
+        assertThat(written).containsExactly(new LikeChange(film.getId(), 1, true),
+                new LikeChange(film.getId(), 1, false));
+    }
+
+    private LikeWriteBehindBuffer buffer(int capacity, LikeWriteBehindBuffer.Durability durability) {
+        return new LikeWriteBehindBuffer(filmStorage, capacity, Duration.ofMillis(20), durability,
+                Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.Description;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BloomFilterTest {
+    private static final int PROBES_COUNT = 100_000;
+
+    @Test
+    @Description("Добавленные значения всегда находятся, доля ложных срабатываний близка к заданной")
+    public void shouldFindAllAddedValuesWithBoundedFalsePositives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user" + i + "@mail.ru");
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(filter.mightContain("user" + i + "@mail.ru")).isTrue();
+        }
+        assertThat(falsePositiveRate(filter)).isLessThan(0.02);
+    }
+
+    @Test
+    @Description("При переполнении добавляются новые сегменты: ничего не теряется, доля ложных срабатываний не растёт")
+    public void shouldGrowBeyondExpectedInsertions() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        for (int i = 0; i < 50_000; i++) {
+            filter.put("login" + i);
+        }
+
+        for (int i = 0; i < 50_000; i++) {
+            assertThat(filter.mightContain("login" + i)).isTrue();
+        }
+        assertThat(falsePositiveRate(filter)).isLessThan(0.02);
+        assertThatThrownBy(() -> new BloomFilter(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static double falsePositiveRate(BloomFilter filter) {
+        int falsePositives = 0;
+        for (int i = 0; i < PROBES_COUNT; i++) {
+            if (filter.mightContain("absent-" + i)) {
+                falsePositives++;
+            }
+        }
+        return (double) falsePositives / PROBES_COUNT;
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.Description;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FriendshipGraphTest {
+
+    @Test
+    @Description("Друзья хранятся отсортированными, повторное добавление и удаление отсутствующей связи ничего не меняют")
+    public void shouldKeepFriendsSortedAndIgnoreRepeats() {
+        FriendshipGraph graph = new FriendshipGraph();
+
+        assertThat(graph.addFriend(1, 5)).isTrue();
+        assertThat(graph.addFriend(1, 2)).isTrue();
+        assertThat(graph.addFriend(1, 9)).isTrue();
+        assertThat(graph.addFriend(1, 2)).isFalse();
+        assertThat(graph.removeFriend(1, 7)).isFalse();
+        assertThat(graph.removeFriend(1, 5)).isTrue();
+
+        assertThat(graph.friendsOf(1)).containsExactly(2, 9);
+        assertThat(graph.friendsOf(2)).isEmpty();
+        assertThat(graph.getEdgeCount()).isEqualTo(2);
+    }
+
+    @Test
+    @Description("Общие друзья находятся слиянием отсортированных списков")
+    public void shouldFindCommonFriends() {
+        FriendshipGraph graph = new FriendshipGraph();
+        for (int friendId : new int[]{3, 4, 7, 10, 12}) {
+            graph.addFriend(1, friendId);
+        }
+        for (int friendId : new int[]{2, 4, 10, 11, 12, 13}) {
+            graph.addFriend(2, friendId);
+        }
+
+        assertThat(graph.commonFriends(1, 2)).containsExactly(4, 10, 12);
+        assertThat(graph.commonFriends(2, 1)).containsExactly(4, 10, 12);
+        assertThat(graph.commonFriends(1, 100_000)).isEmpty();
+    }
+
+    @Test
+    @Description("Число общих друзей считается и слиянием списков, и двоичным поиском при сильно разной длине")
+    public void shouldCountCommonFriendsWithEachUser() {
+        FriendshipGraph graph = new FriendshipGraph();
+        for (int friendId : new int[]{2, 3, 4, 50}) {
+            graph.addFriend(1, friendId);
+        }
+        graph.addFriend(2, 3);
+        graph.addFriend(2, 4);
+        graph.addFriend(3, 9);
+        for (int friendId = 2; friendId < 10_000; friendId++) {
+            if (friendId != 50) {
+                graph.addFriend(50, friendId);
+            }
+        }
+
+        assertThat(graph.countCommonFriends(1, graph.friendsOf(1))).containsExactly(2, 0, 0, 3);
+        assertThat(graph.countCommonFriends(1, new int[]{100_000})).containsExactly(0);
+        assertThat(graph.countCommonFriends(7, new int[]{1, 2})).containsExactly(0, 0);
+    }
+
+    @Test
+    @Description("Граф растёт под большие id пользователей")
+    public void shouldGrowForLargeUserIds() {
+        FriendshipGraph graph = new FriendshipGraph();
+        graph.addFriend(1_000_000, 1);
+        graph.addFriend(5, 1_000_000);
+
+        assertThat(graph.friendsOf(1_000_000)).containsExactly(1);
+        assertThat(graph.friendsOf(5)).containsExactly(1_000_000);
+    }
+
+    @Test
+    @Description("Сборщик принимает связи только по возрастанию и даёт тот же граф, что и добавление по одной")
+    public void shouldBuildFromSortedEdges() {
+        FriendshipGraph graph = new FriendshipGraph.Builder()
+                .add(1, 2)
+                .add(1, 3)
+                .add(4, 1)
+                .add(2000, 3)
+                .build();
+
+        assertThat(graph.friendsOf(1)).containsExactly(2, 3);
+        assertThat(graph.friendsOf(2000)).containsExactly(3);
+        assertThat(graph.commonFriends(1, 2000)).containsExactly(3);
+        assertThat(graph.getEdgeCount()).isEqualTo(4);
+        assertThat(graph.addFriend(2000, 1)).isTrue();
+        assertThat(graph.friendsOf(2000)).containsExactly(1, 3);
+        assertThatThrownBy(() -> new FriendshipGraph.Builder().add(2, 1).add(1, 3))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @Description("Рекомендации упорядочены по числу общих друзей, затем по id, без самого пользователя и его друзей")
+    public void shouldSuggestFriendsOfFriendsByMutualCount() {
+        FriendshipGraph graph = new FriendshipGraph();
+        graph.addFriend(1, 2);
+        graph.addFriend(1, 3);
+        graph.addFriend(1, 4);
+        graph.addFriend(2, 1);
+        graph.addFriend(2, 3);
+        graph.addFriend(2, 10);
+        graph.addFriend(2, 11);
+        graph.addFriend(3, 10);
+        graph.addFriend(3, 12);
+        graph.addFriend(4, 10);
+        graph.addFriend(4, 11);
+
+        FriendshipGraph.SuggestedFriends suggested = graph.suggestFriends(1, 10);
+        assertThat(suggested.userIds()).containsExactly(10, 11, 12);
+        assertThat(suggested.mutualFriends()).containsExactly(3, 2, 1);
+
+        FriendshipGraph.SuggestedFriends top = graph.suggestFriends(1, 2);
+        assertThat(top.userIds()).containsExactly(10, 11);
+        assertThat(graph.suggestFriends(12, 10).userIds()).isEmpty();
+    }
+
+    @Test
+    @Description("Для пользователя с тысячами друзей обходятся все связи второго уровня")
+    public void shouldSuggestFriendsForHighDegreeUser() {
+        FriendshipGraph graph = new FriendshipGraph();
+        int friendsCount = 10_000;
+        for (int friendId = 2; friendId < 2 + friendsCount; friendId++) {
+            graph.addFriend(1, friendId);
+            graph.addFriend(friendId, 1);
+            graph.addFriend(friendId, 100_000 + friendId % 7);
+            if (friendId % 2 == 0) {
+                graph.addFriend(friendId, 200_000);
+            }
+        }
+
+        FriendshipGraph.SuggestedFriends suggested = graph.suggestFriends(1, 3);
+
+        assertThat(suggested.userIds()).containsExactly(200_000, 100_002, 100_003);
+        assertThat(suggested.mutualFriends()).containsExactly(friendsCount / 2, 1429, 1429);
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.Description;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LikesIndexTest {
+
+    @Test
+    @Description("Лайки хранятся в битмапе и списках лайкнувших, повторы и удаление отсутствующего ничего не меняют")
+    public void shouldAddAndRemoveLikes() {
+        LikesIndex index = new LikesIndex();
+
+        assertThat(index.addLike(1, 5)).isTrue();
+        assertThat(index.addLike(1, 70)).isTrue();
+        assertThat(index.addLike(3, 5)).isTrue();
+        assertThat(index.addLike(2, 5)).isTrue();
+        assertThat(index.addLike(1, 5)).isFalse();
+        assertThat(index.removeLike(1, 6)).isFalse();
+        assertThat(index.removeLike(1, 70)).isTrue();
+
+        assertThat(index.isLiked(1, 5)).isTrue();
+        assertThat(index.isLiked(1, 70)).isFalse();
+        assertThat(index.likersOf(5)).containsExactly(1, 2, 3);
+        assertThat(index.likersOf(70)).isEmpty();
+        assertThat(index.getLikeCount()).isEqualTo(3);
+    }
+
+    @Test
+    @Description("Фильмы похожих пользователей ранжируются по сумме сходства Жаккара, лайкнутые пропускаются")
+    public void shouldRecommendFilmsOfSimilarUsers() {
+        LikesIndex index = new LikesIndex();
+        for (int filmId : new int[]{1, 2, 3}) {
+            index.addLike(1, filmId);
+        }
+        for (int filmId : new int[]{1, 2, 3, 200}) {
+            index.addLike(2, filmId);
+        }
+        for (int filmId : new int[]{1, 100, 200, 300}) {
+            index.addLike(3, filmId);
+        }
+        for (int filmId : new int[]{500, 600}) {
+            index.addLike(4, filmId);
+        }
+
+        assertThat(index.recommendFilms(1, 10, 10, Long.MAX_VALUE)).containsExactly(200, 100, 300);
+        assertThat(index.recommendFilms(1, 1, 10, Long.MAX_VALUE)).containsExactly(200);
+        assertThat(index.recommendFilms(1, 10, 1, Long.MAX_VALUE)).containsExactly(200);
+        assertThat(index.recommendFilms(5, 10, 10, Long.MAX_VALUE)).isEmpty();
+    }
+
+    @Test
+    @Description("Сборщик принимает лайки только по возрастанию и даёт тот же индекс, что и добавление по одному")
+    public void shouldBuildFromSortedLikes() {
+        LikesIndex index = new LikesIndex.Builder()
+                .add(1, 3)
+                .add(1, 64)
+                .add(1, 5000)
+                .add(2, 64)
+                .add(2, 5000)
+                .build();
+
+        assertThat(index.likersOf(64)).containsExactly(1, 2);
+        assertThat(index.getLikeCount()).isEqualTo(5);
+        assertThat(index.recommendFilms(2, 10, 10, Long.MAX_VALUE)).containsExactly(3);
+        assertThat(index.addLike(2, 3)).isTrue();
+        assertThat(index.removeLike(1, 64)).isTrue();
+        assertThat(index.likersOf(3)).containsExactly(1, 2);
+        assertThat(index.recommendFilms(2, 10, 10, Long.MAX_VALUE)).isEmpty();
+        assertThatThrownBy(() -> new LikesIndex.Builder().add(1, 5).add(1, 3))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @Description("Список лайкнувших популярный фильм делится на части и остаётся отсортированным")
+    public void shouldKeepLikersOfPopularFilmSorted() {
+        LikesIndex index = new LikesIndex();
+        int likersCount = 5_000;
+        for (int userId = likersCount; userId >= 1; userId--) {
+            index.addLike(userId, 7);
+        }
+        for (int userId = 2; userId <= likersCount; userId += 2) {
+            index.removeLike(userId, 7);
+        }
+
+        int[] likers = index.likersOf(7);
+        assertThat(likers).hasSize(likersCount / 2).isSorted();
+        assertThat(likers[0]).isEqualTo(1);
+        assertThat(likers[likers.length - 1]).isEqualTo(likersCount - 1);
+        assertThat(index.getLikeCount()).isEqualTo(likersCount / 2);
+    }
+
+    @Test
+    @Description("Параллельные лайки одного и разных фильмов не теряются, битмапы и списки лайкнувших согласованы")
+    public void shouldKeepLikesConsistentUnderConcurrency() throws Exception {
+        LikesIndex index = new LikesIndex();
+        int threadsCount = 8;
+        int usersPerThread = 500;
+        int filmsCount = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(threadsCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threadsCount; thread++) {
+                int firstUserId = 1 + thread * usersPerThread;
+                futures.add(executor.submit(() -> {
+                    for (int userId = firstUserId; userId < firstUserId + usersPerThread; userId++) {
+                        for (int filmId = 1; filmId <= filmsCount; filmId++) {
+                            index.addLike(userId, filmId);
+                        }
+                        index.removeLike(userId, userId % filmsCount + 1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int usersCount = threadsCount * usersPerThread;
+        assertThat(index.getLikeCount()).isEqualTo((long) usersCount * (filmsCount - 1));
+        for (int filmId = 1; filmId <= filmsCount; filmId++) {
+            int[] likers = index.likersOf(filmId);
+            assertThat(likers).isSorted().hasSize(usersCount - usersCount / filmsCount);
+            for (int likerId : likers) {
+                assertThat(index.isLiked(likerId, filmId)).isTrue();
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate.storage.dao.instrumentation;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Description;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JdbcInstrumentationTest {
+    private static final String FIND_ITEM = "SELECT name FROM item WHERE id = ?";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final JdbcMetrics metrics = new JdbcMetrics(5, 200);
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:instrumentation;DB_CLOSE_DELAY=-1");
+        metrics.bindTo(registry);
+        jdbc = new JdbcTemplate(new InstrumentedDataSource(h2, metrics));
+        jdbc.execute("DROP TABLE IF EXISTS item");
+        jdbc.execute("CREATE TABLE item (id INTEGER PRIMARY KEY, name VARCHAR(50))");
+        jdbc.batchUpdate("INSERT INTO item (id, name) VALUES (?, ?)",
+                List.of(new Object[]{1, "a"}, new Object[]{2, "b"}, new Object[]{3, "c"}));
+    }
+
+    @Test
+    @Description("Литералы, списки IN и строки VALUES сворачиваются в одну форму запроса")
+    public void shouldNormalizeStatementShapes() {
+        assertThat(StatementShapes.normalize("SELECT *  FROM film\n WHERE id = 15 AND name = 'It''s'"))
+                .isEqualTo("SELECT * FROM film WHERE id = ? AND name = ?");
+        assertThat(StatementShapes.normalize("SELECT * FROM film_genre_link WHERE film_id IN (?, ?, ?)"))
+                .isEqualTo(StatementShapes.normalize("SELECT * FROM film_genre_link WHERE film_id in (?)"));
+        assertThat(StatementShapes.normalize("INSERT INTO likes VALUES (?, ?), (?, ?), (?, ?)"))
+                .isEqualTo("INSERT INTO likes VALUES (?, ?)");
+        assertThat(StatementShapes.normalize("SELECT v3 FROM t2")).isEqualTo("SELECT v3 FROM t2");
+    }
+
+    @Test
+    @Description("Для каждой формы запроса публикуются время выполнения и число строк")
+    public void shouldRecordLatencyAndRowsPerStatement() {
+        jdbc.queryForList("SELECT name FROM item ORDER BY id", String.class);
+        jdbc.queryForList("SELECT name FROM item WHERE id > 1", String.class);
+        jdbc.update("UPDATE item SET name = ? WHERE id <= ?", "z", 2);
+
+        String selectAll = "SELECT name FROM item ORDER BY id";
+        assertThat(registry.get("filmorate.jdbc.statements").tag("statement", selectAll).timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("filmorate.jdbc.statements").tag("statement", selectAll).timer().takeSnapshot()
+                .histogramCounts()).isEmpty();
+        assertThat(registry.get("filmorate.jdbc.rows").tag("statement", selectAll).summary().totalAmount())
+                .isEqualTo(3);
+        assertThat(registry.get("filmorate.jdbc.rows").tag("statement", "SELECT name FROM item WHERE id > ?")
+                .summary().totalAmount()).isEqualTo(2);
+        assertThat(registry.get("filmorate.jdbc.rows").tag("statement", "UPDATE item SET name = ? WHERE id <= ?")
+                .summary().totalAmount()).isEqualTo(2);
+        assertThat(registry.get("filmorate.jdbc.rows").tag("statement", "INSERT INTO item (id, name) VALUES (?, ?)")
+                .summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    @Description("Запрос, повторивший одну форму больше порога, помечается как N+1, пакетная загрузка — нет")
+    public void shouldDetectRepeatedStatementsWithinRequest() {
+        metrics.beginRequest();
+        for (int id = 1; id <= 3; id++) {
+            jdbc.queryForObject(FIND_ITEM, String.class, id);
+            jdbc.queryForObject(FIND_ITEM, String.class, id);
+        }
+        assertThat(metrics.endRequest("GET", "/items")).isEqualTo(FIND_ITEM);
+
+        metrics.beginRequest();
+        jdbc.queryForList("SELECT name FROM item WHERE id IN (1, 2, 3)", String.class);
+        assertThat(metrics.endRequest("GET", "/items/batch")).isNull();
+
+        assertThat(registry.get("filmorate.jdbc.n-plus-one").tag("uri", "/items").counter().count()).isEqualTo(1);
+        assertThat(registry.find("filmorate.jdbc.n-plus-one").tag("uri", "/items/batch").counter()).isNull();
+        assertThat(registry.get("filmorate.jdbc.request.statements").tag("uri", "/items").summary().totalAmount())
+                .isEqualTo(6);
+    }
+
+    @Test
+    @Description("При закрытии контекста обёртка с метриками закрывает пул соединений")
+    public void shouldClosePoolWithContext() {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:instrumentation-pool");
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBean(JdbcMetrics.class, () -> metrics);
+        context.registerBean(InstrumentedDataSourcePostProcessor.class);
+        context.registerBean(DataSource.class, () -> pool);
+        context.refresh();
+        assertThat(context.getBean(DataSource.class)).isInstanceOf(InstrumentedDataSource.class);
+
+        context.close();
+
+        assertThat(pool.isClosed()).isTrue();
+    }
+}
@@ -0,0 +1,155 @@
+package ru.yandex.practicum.filmorate.storage.dao.routing;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.Description;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.storage.dao.migration.SchemaMigrator;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplicaRoutingTest {
+    private static final AtomicInteger databaseCounter = new AtomicInteger();
+    private static final Duration MAX_LAG = Duration.ofSeconds(2);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T00:00:00Z"));
+    private final ReplicaReadPolicy policy = new ReplicaReadPolicy(MAX_LAG, clock);
+    private ReplicaRoutingDataSource dataSource;
+    private H2Replicator replicator;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate readOnly;
+    private int usersCount;
+
+    @BeforeEach
+    public void setUp() {
+        int database = databaseCounter.incrementAndGet();
+        dataSource = new ReplicaRoutingDataSource(h2("primary" + database), h2("replica" + database), policy);
+        new SchemaMigrator(dataSource, SchemaMigrator.DEFAULT_LOCATION).migrate();
+        replicator = new H2Replicator(dataSource, policy);
+        jdbc = new JdbcTemplate(dataSource);
+        readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReadYourWritesContext.clear();
+    }
+
+    @Test
+    @Description("Пока реплика ни разу не синхронизирована, чтения идут с основной базы")
+    public void shouldReadFromPrimaryUntilReplicaIsSynced() {
+        addUser();
+
+        assertThat(readUsersCount()).isEqualTo(1);
+        assertThat(policy.getReplicaReadCount()).isZero();
+    }
+
+    @Test
+    @Description("Чтение readOnly идёт с реплики и может отставать в пределах max-lag, запись — всегда в основную базу")
+    public void shouldReadStaleDataFromReplicaWithinLagTolerance() {
+        addUser();
+        replicator.sync();
+        clock.advance(Duration.ofMillis(100));
+        addUser();
+
+        assertThat(readUsersCount()).isEqualTo(1);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM users", Integer.class)).isEqualTo(2);
+        assertThat(policy.getReplicaReadCount()).isEqualTo(1);
+
+        clock.advance(MAX_LAG);
+        assertThat(readUsersCount()).isEqualTo(2);
+    }
+
+    @Test
+    @Description("После своей записи клиент читает с основной базы, пока реплика её не получит")
+    public void shouldReadOwnWritesFromPrimaryUntilReplicated() {
+        replicator.sync();
+        clock.advance(Duration.ofMillis(100));
+        addUser();
+        Instant lastWrite = clock.instant();
+        clock.advance(Duration.ofMillis(100));
+
+        ReadYourWritesContext.begin(false, lastWrite);
+        assertThat(readUsersCount()).isEqualTo(1);
+        assertThat(policy.getReplicaReadCount()).isZero();
+
+        replicator.sync();
+        assertThat(readUsersCount()).isEqualTo(1);
+        assertThat(policy.getReplicaReadCount()).isEqualTo(1);
+
+        ReadYourWritesContext.begin(true, null);
+        assertThat(readUsersCount()).isEqualTo(1);
+        assertThat(policy.getReplicaReadCount()).isEqualTo(1);
+    }
+
+    @Test
+    @Description("Репликатор копирует все таблицы вместе со связями")
+    public void shouldReplicateAllTables() {
+        int firstUser = addUser();
+        int secondUser = addUser();
+        jdbc.update("INSERT INTO friends_link (user_id, friend_id) VALUES (?, ?)", firstUser, secondUser);
+        jdbc.update("DELETE FROM friends_link WHERE user_id = ?", firstUser);
+        jdbc.update("INSERT INTO friends_link (user_id, friend_id) VALUES (?, ?)", secondUser, firstUser);
+        replicator.sync();
+
+        JdbcTemplate replica = new JdbcTemplate(dataSource.getReplica());
+        assertThat(replica.queryForList("SELECT user_id FROM friends_link", Integer.class)).containsExactly(secondUser);
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM genre", Integer.class)).isEqualTo(6);
+    }
+
+    private int addUser() {
+        usersCount++;
+        jdbc.update("INSERT INTO users (name, email, login, birthday) VALUES (?, ?, ?, DATE '1990-01-01')",
+                "user" + usersCount, "user" + usersCount + "@mail.ru", "user" + usersCount);
+        return jdbc.queryForObject("SELECT MAX(id) FROM users", Integer.class);
+    }
+
+    private int readUsersCount() {
+        return readOnly.execute(status -> jdbc.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+    }
+
+    private static JdbcDataSource h2(String name) {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        return h2;
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.storage.ram;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.Description;
+import ru.yandex.practicum.filmorate.helpers.GenerateRandomizeInstances;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryFilmStorageTest {
+    private static final int FILMS_COUNT = 50;
+    private static final int USERS_COUNT = 200;
+    private static final int THREADS_COUNT = 8;
+    private static final int OPERATIONS_PER_THREAD = 20_000;
+
+    @Test
+    @Description("Рейтинг популярных фильмов совпадает с полной сортировкой после лайков и их отмены")
+    public void shouldKeepLeaderboardInSyncWithLikes() {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        List<Film> films = addFilms(storage, 3);
+        storage.addLike(films.get(2).getId(), 1);
+        storage.addLike(films.get(2).getId(), 2);
+        storage.addLike(films.get(1).getId(), 1);
+        storage.addLike(films.get(0).getId(), 1);
+        storage.removeLike(films.get(0).getId(), 1);
+        storage.removeLike(films.get(0).getId(), 1);
+
+        assertThat(storage.getPopularFilms(3))
+                .extracting(Film::getId)
+                .containsExactly(films.get(2).getId(), films.get(1).getId(), films.get(0).getId());
+        assertThat(storage.getPopularFilms(1)).containsExactly(films.get(2));
+    }
+
+    @Test
+    @Description("Рейтинг остаётся согласованным при параллельных лайках и их отмене")
+    public void shouldKeepLeaderboardConsistentUnderConcurrentLikes() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        List<Film> films = addFilms(storage, FILMS_COUNT);
+        List<Future<?>> workers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT)) {
+            for (int i = 0; i < THREADS_COUNT; i++) {
+                workers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+                        int filmId = films.get(random.nextInt(FILMS_COUNT)).getId();
+                        int userId = random.nextInt(USERS_COUNT);
+                        if (random.nextInt(3) == 0) {
+                            storage.removeLike(filmId, userId);
+                        } else {
+                            storage.addLike(filmId, userId);
+                        }
+                        if (j % 1000 == 0) {
+                            assertThat(storage.getPopularFilms(10)).extracting(Film::getId).doesNotHaveDuplicates();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+
+        List<Integer> expectedOrder = films.stream()
+                .sorted(Comparator.comparingInt(Film::getLikesCount).reversed().thenComparingInt(Film::getId))
+                .map(Film::getId)
+                .toList();
+        assertThat(storage.getPopularFilms(FILMS_COUNT))
+                .extracting(Film::getId)
+                .containsExactlyElementsOf(expectedOrder);
+    }
+
+    @Test
+    @Description("Параллельные лайки и обновления фильмов не теряют изменений")
+    public void shouldNotLoseLikesUnderConcurrentUpdates() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage();
+        List<Film> films = addFilms(storage, FILMS_COUNT);
+        List<Callable<int[]>> workers = new ArrayList<>();
+        for (int i = 0; i < THREADS_COUNT; i++) {
+            int firstUserId = 1 + i * OPERATIONS_PER_THREAD;
+            workers.add(() -> {
+                int[] expectedLikes = new int[FILMS_COUNT];
+                // Каждый десяток операций работает с одним фильмом: обновление, восемь лайков и отмена последнего
+                for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+                    int filmIndex = (j / 10) % FILMS_COUNT;
+                    int filmId = films.get(filmIndex).getId();
+                    if (j % 10 == 0) {
+                        storage.updateFilm(renamed(storage.getFilm(filmId), "Фильм " + j));
+                    } else if (j % 10 == 9) {
+                        assertThat(storage.removeLike(filmId, firstUserId + j - 1)).isTrue();
+                        expectedLikes[filmIndex]--;
+                    } else {
+                        assertThat(storage.addLike(filmId, firstUserId + j)).isTrue();
+                        expectedLikes[filmIndex]++;
+                    }
+                }
+                return expectedLikes;
+            });
+        }
+
+        int[] expectedLikes = new int[FILMS_COUNT];
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT)) {
+            for (Future<int[]> worker : executor.invokeAll(workers)) {
+                int[] workerLikes = worker.get();
+                for (int i = 0; i < FILMS_COUNT; i++) {
+                    expectedLikes[i] += workerLikes[i];
+                }
+            }
+        }
+
+        for (int i = 0; i < FILMS_COUNT; i++) {
+            Film film = storage.getFilm(films.get(i).getId());
+            assertThat(film.getLikesCount()).isEqualTo(expectedLikes[i]);
+            assertThat(film.getLikedUsers()).hasSize(expectedLikes[i]);
+            assertThat(film.getName()).startsWith("Фильм ");
+        }
+        assertThat(storage.getFilmsList()).hasSize(FILMS_COUNT);
+    }
+
+    private static Film renamed(Film film, String name) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(name);
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        return copy;
+    }
+
+    private static List<Film> addFilms(InMemoryFilmStorage storage, int count) {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            films.add(storage.addFilm(GenerateRandomizeInstances.generateRandomFilm()));
+        }
+        return films;
+    }
+}
@@ -0,0 +1,297 @@
+package ru.yandex.practicum.filmorate.storage.ram;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.Description;
+import ru.yandex.practicum.filmorate.helpers.GenerateRandomizeInstances;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.ram.persistence.Journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryStoragePersistenceTest {
+    private static final int THREADS_COUNT = 8;
+    private static final int RECORDS_PER_THREAD = 500;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @Description("После перезапуска фильмы, их обновления и лайки восстанавливаются из журнала")
+    public void shouldRecoverFilmsFromJournal() throws IOException {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(directory.toString());
+        Film first = storage.addFilm(filmWithMpaAndGenres());
+        Film second = storage.addFilm(GenerateRandomizeInstances.generateRandomFilm());
+        storage.addLike(first.getId(), 10);
+        storage.addLike(first.getId(), 11);
+        storage.addLike(second.getId(), 10);
+        storage.removeLike(first.getId(), 11);
+        Film renamed = filmWithMpaAndGenres();
+        renamed.setId(second.getId());
+        renamed.setName("Новое название");
+        storage.updateFilm(renamed);
+        storage.close();
+
+        InMemoryFilmStorage recovered = new InMemoryFilmStorage(directory.toString());
+
+        assertThat(recovered.getFilm(first.getId())).usingRecursiveComparison().isEqualTo(first);
+        assertThat(recovered.getFilm(second.getId()).getName()).isEqualTo("Новое название");
+        assertThat(recovered.getFilm(second.getId()).getMpa()).isEqualTo(renamed.getMpa());
+        assertThat(recovered.getFilm(second.getId()).getGenres()).containsExactlyElementsOf(renamed.getGenres());
+        assertThat(recovered.getFilm(second.getId()).getLikedUsers()).containsExactly(10);
+        assertThat(recovered.getPopularFilms(10)).extracting(Film::getId).containsExactly(first.getId(), second.getId());
+        assertThat(recovered.addFilm(GenerateRandomizeInstances.generateRandomFilm()).getId()).isEqualTo(3);
+        recovered.close();
+    }
+
+    @Test
+    @Description("Состояние собирается из снапшота и журнала после него, файлы прошлых поколений удаляются")
+    public void shouldRecoverUsersFromSnapshotAndJournalTail() throws IOException {
+        InMemoryUserStorage storage = new InMemoryUserStorage(directory.toString());
+        List<User> users = addUsers(storage, 4);
+        storage.addFriend(users.get(0).getId(), users.get(1).getId());
+        storage.addFriend(users.get(0).getId(), users.get(2).getId());
+        storage.snapshot();
+        storage.removeFriend(users.get(0).getId(), users.get(1).getId());
+        storage.addFriend(users.get(2).getId(), users.get(3).getId());
+        storage.close();
+
+        assertThat(Files.exists(directory.resolve("users-1.snapshot"))).isTrue();
+        assertThat(Files.exists(directory.resolve("users-0.journal"))).isFalse();
+
+        InMemoryUserStorage recovered = new InMemoryUserStorage(directory.toString());
+
+        assertThat(recovered.getUsersList()).extracting(User::getLogin)
+                .containsExactlyElementsOf(users.stream().map(User::getLogin).toList());
+        assertThat(recovered.getFriendsList(users.get(0).getId())).extracting(User::getId)
+                .containsExactly(users.get(2).getId());
+        assertThat(recovered.getFriendsList(users.get(2).getId())).extracting(User::getId)
+                .containsExactly(users.get(0).getId(), users.get(3).getId());
+        assertThat(recovered.findUserById(users.get(1).getId()).getFriends()).isEmpty();
+        recovered.close();
+    }
+
+    @Test
+    @Description("Оборванная при сбое последняя запись журнала теряется, остальные восстанавливаются, запись продолжается")
+    public void shouldDropTornRecordAtJournalEnd() throws IOException {
+        InMemoryUserStorage storage = new InMemoryUserStorage(directory.toString());
+        List<User> users = addUsers(storage, 3);
+        storage.addFriend(users.get(0).getId(), users.get(1).getId());
+        storage.addFriend(users.get(0).getId(), users.get(2).getId());
+        storage.close();
+        Path journal = directory.resolve("users-0.journal");
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        InMemoryUserStorage recovered = new InMemoryUserStorage(directory.toString());
+        assertThat(recovered.getFriendsList(users.get(0).getId())).extracting(User::getId)
+                .containsExactly(users.get(1).getId());
+        recovered.addFriend(users.get(1).getId(), users.get(2).getId());
+        recovered.close();
+
+        InMemoryUserStorage restartedAgain = new InMemoryUserStorage(directory.toString());
+        assertThat(restartedAgain.getFriendsList(users.get(2).getId())).extracting(User::getId)
+                .containsExactly(users.get(1).getId());
+        restartedAgain.close();
+    }
+
+    @Test
+    @Description("Пачка пользователей восстанавливается целиком, а оборванная пачка не добавляет никого")
+    public void shouldRecoverUserBatchAllOrNothing() throws IOException {
+        InMemoryUserStorage storage = new InMemoryUserStorage(directory.toString());
+        User single = storage.addUser(GenerateRandomizeInstances.generateRandomUser());
+        List<Integer> batchIds = storage.addUsers(List.of(GenerateRandomizeInstances.generateRandomUser(),
+                GenerateRandomizeInstances.generateRandomUser()));
+        storage.close();
+
+        InMemoryUserStorage recovered = new InMemoryUserStorage(directory.toString());
+        assertThat(recovered.getUsersList()).extracting(User::getId)
+                .containsExactly(single.getId(), batchIds.get(0), batchIds.get(1));
+        recovered.addUsers(List.of(GenerateRandomizeInstances.generateRandomUser(),
+                GenerateRandomizeInstances.generateRandomUser()));
+        recovered.close();
+        Path journal = directory.resolve("users-0.journal");
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        InMemoryUserStorage restartedAgain = new InMemoryUserStorage(directory.toString());
+        assertThat(restartedAgain.getUsersList()).extracting(User::getId)
+                .containsExactly(single.getId(), batchIds.get(0), batchIds.get(1));
+        restartedAgain.close();
+    }
+
+    @Test
+    @Description("Запись с неверной контрольной суммой и всё после неё отбрасываются")
+    public void shouldStopReplayAtCorruptedRecord() throws IOException {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(directory.toString());
+        Film film = storage.addFilm(GenerateRandomizeInstances.generateRandomFilm());
+        storage.addLike(film.getId(), 1);
+        storage.addLike(film.getId(), 2);
+        storage.close();
+        Path journal = directory.resolve("films-0.journal");
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long lastByte = channel.size() - 1;
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, lastByte);
+            value.put(0, (byte) ~value.get(0));
+            channel.write(value.rewind(), lastByte);
+        }
+
+        InMemoryFilmStorage recovered = new InMemoryFilmStorage(directory.toString());
+
+        assertThat(recovered.getFilm(film.getId()).getLikedUsers()).containsExactly(1);
+        recovered.close();
+    }
+
+    @Test
+    @Description("Сбой после переключения журнала, но до записи снапшота: проигрываются оба журнала")
+    public void shouldRecoverWhenSnapshotWasNotWrittenAfterRotation() throws IOException {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(directory.toString());
+        Film film = storage.addFilm(GenerateRandomizeInstances.generateRandomFilm());
+        storage.addLike(film.getId(), 1);
+        Path firstJournal = directory.resolve("films-0.journal");
+        byte[] firstJournalBytes = Files.readAllBytes(firstJournal);
+        storage.snapshot();
+        storage.addLike(film.getId(), 2);
+        storage.close();
+        // Снапшот поколения 1 ещё не записан, а журнал поколения 0 ещё не удалён
+        Files.delete(directory.resolve("films-1.snapshot"));
+        Files.write(firstJournal, firstJournalBytes);
+
+        InMemoryFilmStorage recovered = new InMemoryFilmStorage(directory.toString());
+
+        assertThat(recovered.getFilm(film.getId()).getLikedUsers()).containsExactlyInAnyOrder(1, 2);
+        recovered.close();
+    }
+
+    @Test
+    @Description("Снапшоты во время параллельной записи не теряют подтверждённых изменений после перезапуска")
+    public void shouldNotLoseWritesAcknowledgedDuringSnapshot() throws Exception {
+        InMemoryFilmStorage storage = new InMemoryFilmStorage(directory.toString());
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < THREADS_COUNT; i++) {
+            films.add(storage.addFilm(GenerateRandomizeInstances.generateRandomFilm()));
+        }
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Callable<Void>> writers = new ArrayList<>();
+        for (Film film : films) {
+            writers.add(() -> {
+                for (int userId = 1; userId <= RECORDS_PER_THREAD; userId++) {
+                    storage.addLike(film.getId(), userId);
+                }
+                return null;
+            });
+        }
+        int snapshots = 0;
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT)) {
+            List<Future<Void>> results = new ArrayList<>();
+            writers.forEach(writer -> results.add(executor.submit(writer)));
+            executor.execute(() -> {
+                for (Future<Void> result : results) {
+                    try {
+                        result.get();
+                    } catch (Exception e) {
+                        break;
+                    }
+                }
+                writing.set(false);
+            });
+            while (writing.get()) {
+                storage.snapshot();
+                snapshots++;
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        }
+        storage.close();
+
+        InMemoryFilmStorage recovered = new InMemoryFilmStorage(directory.toString());
+
+        assertThat(snapshots).isPositive();
+        for (Film film : films) {
+            assertThat(recovered.getFilm(film.getId()).getLikedUsers()).as("лайки фильма %d", film.getId())
+                    .hasSize(RECORDS_PER_THREAD);
+        }
+        recovered.close();
+    }
+
+    @Test
+    @Description("Параллельные записи попадают в журнал пачками: сбросов на диск меньше, чем записей, и ни одна не теряется")
+    public void shouldGroupConcurrentAppendsIntoFewerCommits() throws Exception {
+        Path path = directory.resolve("group.journal");
+        Journal journal = Journal.open(path);
+        List<Callable<Void>> writers = new ArrayList<>();
+        for (int i = 0; i < THREADS_COUNT; i++) {
+            int writerIndex = i;
+            writers.add(() -> {
+                for (int j = 0; j < RECORDS_PER_THREAD; j++) {
+                    journal.append(ByteBuffer.allocate(8).putInt(writerIndex).putInt(j).array()).await();
+                }
+                return null;
+            });
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT)) {
+            for (Future<Void> result : executor.invokeAll(writers)) {
+                result.get();
+            }
+        }
+        long commits = journal.getCommitCount();
+        journal.close();
+
+        int[] lastRecordByWriter = new int[THREADS_COUNT];
+        long records = Journal.replay(path, record -> {
+            int writerIndex = record.getInt();
+            assertThat(record.getInt()).isEqualTo(lastRecordByWriter[writerIndex]++);
+        });
+
+        assertThat(records).isEqualTo((long) THREADS_COUNT * RECORDS_PER_THREAD);
+        assertThat(commits).isLessThan(records);
+    }
+
+    private static Film filmWithMpaAndGenres() {
+        Film film = GenerateRandomizeInstances.generateRandomFilm();
+        Mpa mpa = new Mpa();
+        mpa.setId(3);
+        mpa.setName("PG-13");
+        film.setMpa(mpa);
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (int id : new int[]{2, 1}) {
+            Genre genre = new Genre();
+            genre.setId(id);
+            genre.setName("Жанр " + id);
+            genres.add(genre);
+        }
+        film.setGenres(genres);
+        return film;
+    }
+
+    private static List<User> addUsers(InMemoryUserStorage storage, int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(storage.addUser(GenerateRandomizeInstances.generateRandomUser()));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.storage.ram;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.Description;
+import ru.yandex.practicum.filmorate.helpers.GenerateRandomizeInstances;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryUserStorageTest {
+    private static final int USERS_COUNT = 200;
+    private static final int THREADS_COUNT = 8;
+    private static final int OPERATIONS_PER_THREAD = 20_000;
+
+    @Test
+    @Description("Пользователи ищутся по id, страницы и список идут по возрастанию id")
+    public void shouldFindUsersByIdAndPageInIdOrder() {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        List<User> users = addUsers(storage, 5);
+
+        assertThat(storage.findUserById(users.get(3).getId())).isSameAs(users.get(3));
+        assertThat(storage.getUsersList()).containsExactlyElementsOf(users);
+        assertThat(storage.getUsersPage(users.get(1).getId(), 2)).containsExactly(users.get(2), users.get(3));
+        assertThat(storage.getUsersPage(users.get(4).getId(), 2)).isEmpty();
+    }
+
+    @Test
+    @Description("Логин освобождается после смены, пока его не использует другой пользователь")
+    public void shouldTrackTakenLoginsAndEmails() {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        List<User> users = addUsers(storage, 2);
+        User renamed = renamed(users.get(0), users.get(0).getName());
+        String oldLogin = renamed.getLogin();
+        renamed.setLogin(oldLogin + "_renamed");
+        storage.updateUser(renamed);
+
+        assertThat(storage.isLoginTaken(oldLogin)).isFalse();
+        assertThat(storage.isLoginTaken(oldLogin + "_renamed")).isTrue();
+        assertThat(storage.isEmailTaken(users.get(1).getEmail())).isTrue();
+        assertThat(storage.isEmailTaken("free_" + users.get(1).getEmail())).isFalse();
+    }
+
+    @Test
+    @Description("Параллельные изменения дружбы и обновления пользователей не теряют изменений")
+    public void shouldNotLoseFriendshipsUnderConcurrentUpdates() throws Exception {
+        InMemoryUserStorage storage = new InMemoryUserStorage();
+        List<User> users = addUsers(storage, USERS_COUNT);
+        List<Callable<Set<Long>>> workers = new ArrayList<>();
+        for (int i = 0; i < THREADS_COUNT; i++) {
+            // Каждый поток меняет только свои пары, поэтому ожидаемое состояние пар известно без синхронизации
+            List<User[]> ownPairs = new ArrayList<>();
+            for (int first = 0; first < USERS_COUNT; first++) {
+                for (int second = first + 1; second < USERS_COUNT; second++) {
+                    if ((first + second) % THREADS_COUNT == i) {
+                        ownPairs.add(new User[]{users.get(first), users.get(second)});
+                    }
+                }
+            }
+            workers.add(() -> {
+                Set<Long> expectedPairs = new HashSet<>();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < OPERATIONS_PER_THREAD; j++) {
+                    User[] pair = ownPairs.get(random.nextInt(ownPairs.size()));
+                    boolean reversed = random.nextBoolean();
+                    User first = reversed ? pair[1] : pair[0];
+                    User second = reversed ? pair[0] : pair[1];
+                    if (j % 10 == 0) {
+                        storage.updateUser(renamed(storage.findUserById(first.getId()), "Пользователь " + j));
+                    } else if (random.nextInt(3) == 0) {
+                        storage.removeFriend(first.getId(), second.getId());
+                        expectedPairs.remove(pairOf(first.getId(), second.getId()));
+                    } else {
+                        storage.addFriend(first.getId(), second.getId());
+                        expectedPairs.add(pairOf(first.getId(), second.getId()));
+                    }
+                }
+                return expectedPairs;
+            });
+        }
+
+        Set<Long> expectedPairs = new HashSet<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS_COUNT)) {
+            for (Future<Set<Long>> worker : executor.invokeAll(workers)) {
+                expectedPairs.addAll(worker.get());
+            }
+        }
+
+        for (User user : users) {
+            Set<Integer> expectedFriends = new HashSet<>();
+            for (User other : users) {
+                if (expectedPairs.contains(pairOf(user.getId(), other.getId()))) {
+                    expectedFriends.add(other.getId());
+                }
+            }
+            assertThat(storage.findUserById(user.getId()).getFriends()).isEqualTo(expectedFriends);
+            assertThat(storage.getFriendsList(user.getId()))
+                    .extracting(User::getId)
+                    .containsExactlyElementsOf(expectedFriends.stream().sorted().toList());
+        }
+    }
+
+    private static long pairOf(int firstUserId, int secondUserId) {
+        return ((long) Math.min(firstUserId, secondUserId) << 32) | Math.max(firstUserId, secondUserId);
+    }
+
+    private static User renamed(User user, String name) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setName(name);
+        copy.setEmail(user.getEmail());
+        copy.setLogin(user.getLogin());
+        copy.setBirthday(user.getBirthday());
+        return copy;
+    }
+
+    private static List<User> addUsers(InMemoryUserStorage storage, int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(storage.addUser(GenerateRandomizeInstances.generateRandomUser()));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,182 @@
+package ru.yandex.practicum.filmorate.storage.ram.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.Description;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    @Description("Несостоявшаяся пачка отклоняется, файл возвращается к последней целой записи, запись продолжается")
+    public void shouldRecoverAfterFailedBatch() throws IOException {
+        Path path = directory.resolve("recover.journal");
+        FailingChannel channel = new FailingChannel(path);
+        Journal journal = new Journal(path, channel);
+
+        journal.append(record(1)).await();
+        channel.failedForces.set(1);
+        assertThatThrownBy(() -> journal.append(record(2)).await())
+                .isInstanceOf(ServiceUnavailableException.class);
+        journal.append(record(3)).await();
+        journal.close();
+
+        assertThat(journal.isBroken()).isFalse();
+        assertThat(journal.getFailedBatchCount()).isEqualTo(1);
+        assertThat(replay(path)).containsExactly(1, 3);
+    }
+
+    @Test
+    @Description("Если файл не удалось вернуть к последней целой записи, журнал сразу отклоняет записи")
+    public void shouldFailFastWhenFileCannotBeRolledBack() throws IOException {
+        Path path = directory.resolve("broken.journal");
+        FailingChannel channel = new FailingChannel(path);
+        Journal journal = new Journal(path, channel);
+
+        journal.append(record(1)).await();
+        channel.failedForces.set(1);
+        channel.failTruncate = true;
+        assertThatThrownBy(() -> journal.append(record(2)).await())
+                .isInstanceOf(ServiceUnavailableException.class);
+
+        assertThat(journal.isBroken()).isTrue();
+        assertThatThrownBy(() -> journal.append(record(3)))
+                .isInstanceOf(ServiceUnavailableException.class);
+        journal.close();
+    }
+
+    private static byte[] record(int value) {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    private static List<Integer> replay(Path path) throws IOException {
+        List<Integer> values = new ArrayList<>();
+        Journal.replay(path, record -> values.add(record.getInt()));
+        return values;
+    }
+
+    /**
+     * Канал файла, у которого по требованию падают несколько ближайших force и все truncate; остальное делегируется настоящему каналу.
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        private final AtomicInteger failedForces = new AtomicInteger();
+        private volatile boolean failTruncate;
+
+        FailingChannel(Path path) throws IOException {
+            delegate = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.READ);
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failedForces.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+                throw new IOException("Сбой диска при force");
+            }
+            delegate.force(metaData);
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            if (failTruncate) {
+                throw new IOException("Сбой диска при truncate");
+            }
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return delegate.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage.ram.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.Description;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RamPersistenceTest {
+    private static final long SNAPSHOT_WAIT_MILLIS = 300;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @Description("Снапшот ждёт, пока записанное в старый журнал изменение применится, и не теряет его после удаления журнала")
+    public void shouldWaitForAppliedWriteBeforeRotatingJournal() throws Exception {
+        List<Integer> state = new CopyOnWriteArrayList<>();
+        RamPersistence persistence = open(state);
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Void> write = CompletableFuture.runAsync(() -> persistence.write(record(1), () -> {
+            applying.countDown();
+            awaitUninterruptibly(release);
+            state.add(1);
+        }));
+        applying.await();
+        CompletableFuture<Void> snapshot = CompletableFuture.runAsync(() -> snapshot(persistence, state));
+
+        assertThatThrownBy(() -> snapshot.get(SNAPSHOT_WAIT_MILLIS, TimeUnit.MILLISECONDS))
+                .isInstanceOf(TimeoutException.class);
+        release.countDown();
+        write.get();
+        snapshot.get();
+        persistence.close();
+
+        List<Integer> recovered = new CopyOnWriteArrayList<>();
+        open(recovered).close();
+        assertThat(recovered).containsExactly(1);
+    }
+
+    private RamPersistence open(List<Integer> state) throws IOException {
+        RamPersistence persistence = new RamPersistence(directory, "values");
+        persistence.recover(snapshot -> {
+            int count = snapshot.getInt();
+            for (int i = 0; i < count; i++) {
+                state.add(snapshot.getInt());
+            }
+        }, record -> state.add(record.getInt()));
+        return persistence;
+    }
+
+    private static void snapshot(RamPersistence persistence, List<Integer> state) {
+        try {
+            persistence.snapshot(out -> {
+                List<Integer> values = List.copyOf(state);
+                out.writeInt(values.size());
+                for (int value : values) {
+                    out.writeInt(value);
+                }
+            });
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] record(int value) {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,2 @@
+-- Правка уже применённой миграции
+CREATE TABLE IF NOT EXISTS users (id INTEGER PRIMARY KEY);